@@ -0,0 +1,363 @@
+package app.lovable.ossyncprint;
+
+/**
+ * Codificação de códigos de barras para GS k m n d1...dn (função B)
+ *
+ * CODE128: escolhe os subconjuntos A/B/C com o menor número de símbolos
+ * (programação dinâmica sobre a posição e o subconjunto atual), trocando
+ * no meio do código ({A {B {C) ou com SHIFT ({S) quando compensa. Números
+ * de pedido saem em C, dois dígitos por símbolo: quase metade da largura
+ * e dos bytes do subconjunto B.
+ *
+ * EAN-13 / EAN-8 / UPC-A e ITF calculam o dígito verificador (mod 10,
+ * pesos 3/1) e CODE39 pode levar o verificador mod 43. Entradas inválidas
+ * geram IllegalArgumentException com mensagem para o JS.
+ */
+final class BarcodeEncoder {
+
+    enum Symbology {
+        UPCA(65),
+        EAN13(67),
+        EAN8(68),
+        CODE39(69),
+        ITF(70),
+        CODE128(73);
+
+        final int m;
+
+        Symbology(int m) {
+            this.m = m;
+        }
+    }
+
+    private static final int SET_A = 0;
+    private static final int SET_B = 1;
+    private static final int SET_C = 2;
+    private static final char[] SET_PREFIX = {'A', 'B', 'C'};
+
+    // Custo composto: símbolos (largura impressa) primeiro, bytes enviados no desempate
+    private static final int SYMBOL_COST = 1000;
+    private static final int INFINITE = Integer.MAX_VALUE / 4;
+
+    private static final String CODE39_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. $/+%";
+
+    private static final int MAX_DATA_LENGTH = 255;
+
+    private BarcodeEncoder() {
+    }
+
+    static Symbology parseType(String type) {
+        String normalized = type == null ? "CODE128" : type.trim().toUpperCase().replace("-", "").replace("_", "");
+        switch (normalized) {
+            case "CODE128":
+                return Symbology.CODE128;
+            case "EAN13":
+                return Symbology.EAN13;
+            case "EAN8":
+                return Symbology.EAN8;
+            case "UPCA":
+                return Symbology.UPCA;
+            case "ITF":
+            case "ITF14":
+            case "I25":
+                return Symbology.ITF;
+            case "CODE39":
+                return Symbology.CODE39;
+            default:
+                throw new IllegalArgumentException("Tipo de código de barras não suportado: " + type);
+        }
+    }
+
+    /**
+     * Valida e monta os dados (d1...dn) para a simbologia
+     */
+    static byte[] encode(Symbology symbology, String data, boolean checkDigit) {
+        if (data == null || data.isEmpty()) {
+            throw new IllegalArgumentException("Código de barras vazio");
+        }
+        byte[] payload;
+        switch (symbology) {
+            case EAN13:
+                payload = ascii(gtin(data, 13, "EAN-13"));
+                break;
+            case EAN8:
+                payload = ascii(gtin(data, 8, "EAN-8"));
+                break;
+            case UPCA:
+                payload = ascii(gtin(data, 12, "UPC-A"));
+                break;
+            case ITF:
+                payload = ascii(itf(data, checkDigit));
+                break;
+            case CODE39:
+                payload = ascii(code39(data, checkDigit));
+                break;
+            default:
+                payload = code128(data);
+                break;
+        }
+        if (payload.length > MAX_DATA_LENGTH) {
+            throw new IllegalArgumentException("Código de barras muito longo: " + payload.length + " bytes");
+        }
+        return payload;
+    }
+
+    /**
+     * GS k m n d1...dn
+     */
+    static void writeCommand(EscPosBuffer out, Symbology symbology, byte[] payload) {
+        out.write(0x1D);
+        out.write(0x6B);
+        out.write(symbology.m);
+        out.write(payload.length);
+        out.write(payload);
+    }
+
+    // ==================== GTIN / ITF / CODE39 ====================
+
+    /**
+     * Aceita o número sem ou com o dígito verificador (conferido)
+     */
+    private static String gtin(String data, int length, String name) {
+        requireDigits(data, name);
+        if (data.length() == length - 1) {
+            return data + mod10(data);
+        }
+        if (data.length() == length) {
+            char expected = mod10(data.substring(0, length - 1));
+            if (data.charAt(length - 1) != expected) {
+                throw new IllegalArgumentException(name + " com dígito verificador inválido (esperado " + expected + ")");
+            }
+            return data;
+        }
+        throw new IllegalArgumentException(name + " requer " + (length - 1) + " ou " + length + " dígitos");
+    }
+
+    /**
+     * ITF codifica dígitos em pares: completa com zero à esquerda se ímpar
+     */
+    private static String itf(String data, boolean checkDigit) {
+        requireDigits(data, "ITF");
+        String digits = checkDigit ? data + mod10(data) : data;
+        return (digits.length() & 1) == 1 ? "0" + digits : digits;
+    }
+
+    private static String code39(String data, boolean checkDigit) {
+        String upper = data.toUpperCase();
+        int sum = 0;
+        for (int i = 0; i < upper.length(); i++) {
+            int value = CODE39_CHARS.indexOf(upper.charAt(i));
+            if (value < 0) {
+                throw new IllegalArgumentException("Caractere inválido para CODE39: '" + upper.charAt(i) + "'");
+            }
+            sum += value;
+        }
+        return checkDigit ? upper + CODE39_CHARS.charAt(sum % 43) : upper;
+    }
+
+    /**
+     * Dígito verificador GS1: pesos 3/1 a partir da direita
+     */
+    static char mod10(String digits) {
+        int sum = 0;
+        boolean weight3 = true;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int d = digits.charAt(i) - '0';
+            sum += weight3 ? d * 3 : d;
+            weight3 = !weight3;
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+
+    private static void requireDigits(String data, String name) {
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException(name + " aceita apenas dígitos");
+            }
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] out = new byte[s.length()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) s.charAt(i);
+        }
+        return out;
+    }
+
+    // ==================== CODE128 ====================
+
+    /**
+     * Monta os dados de CODE128 com troca ótima de subconjunto.
+     * Caracteres aceitos: ASCII 0-127.
+     */
+    static byte[] code128(String data) {
+        int n = data.length();
+        for (int i = 0; i < n; i++) {
+            if (data.charAt(i) > 127) {
+                throw new IllegalArgumentException("CODE128 aceita apenas ASCII (posição " + i + ")");
+            }
+        }
+
+        // cost[i][s]: menor custo para codificar data[0..i) terminando no subconjunto s
+        int[][] cost = new int[n + 1][3];
+        // Como se chegou em (i, s): 0 = início, 1 = caractere, 2 = par C, 3 = troca, 4 = shift
+        int[][] how = new int[n + 1][3];
+        int[][] from = new int[n + 1][3];
+        for (int[] row : cost) {
+            java.util.Arrays.fill(row, INFINITE);
+        }
+
+        // Código de início ({A/{B/{C): 1 símbolo, 2 bytes
+        for (int s = 0; s < 3; s++) {
+            cost[0][s] = SYMBOL_COST + 2;
+            how[0][s] = 0;
+        }
+
+        for (int i = 0; i <= n; i++) {
+            // Trocas na posição i: duas passadas bastam com 3 subconjuntos
+            for (int pass = 0; pass < 2; pass++) {
+                for (int s = 0; s < 3; s++) {
+                    for (int t = 0; t < 3; t++) {
+                        if (s != t && cost[i][s] + SYMBOL_COST + 2 < cost[i][t]) {
+                            cost[i][t] = cost[i][s] + SYMBOL_COST + 2;
+                            how[i][t] = 3;
+                            from[i][t] = s;
+                        }
+                    }
+                }
+            }
+            if (i == n) {
+                break;
+            }
+
+            char c = data.charAt(i);
+            for (int s = 0; s < 3; s++) {
+                int base = cost[i][s];
+                if (base >= INFINITE) {
+                    continue;
+                }
+                if (s == SET_C) {
+                    if (i + 1 < n && isDigit(c) && isDigit(data.charAt(i + 1))) {
+                        relax(cost, how, from, i + 2, s, base + SYMBOL_COST + 1, 2, s);
+                    }
+                } else {
+                    if (inSet(c, s)) {
+                        relax(cost, how, from, i + 1, s, base + SYMBOL_COST + charBytes(c), 1, s);
+                    } else if (inSet(c, 1 - s)) {
+                        // SHIFT: um caractere do outro subconjunto (A<->B) sem trocar
+                        relax(cost, how, from, i + 1, s, base + 2 * SYMBOL_COST + 2 + charBytes(c), 4, s);
+                    }
+                }
+            }
+        }
+
+        int best = SET_A;
+        for (int s = 1; s < 3; s++) {
+            if (cost[n][s] < cost[n][best]) {
+                best = s;
+            }
+        }
+
+        // Reconstrói o caminho de trás para frente
+        int[] steps = new int[2 * n + 2];
+        int[] stepSets = new int[2 * n + 2];
+        int[] stepPos = new int[2 * n + 2];
+        int count = 0;
+        int i = n;
+        int s = best;
+        while (true) {
+            int h = how[i][s];
+            steps[count] = h;
+            stepSets[count] = s;
+            stepPos[count] = i;
+            count++;
+            if (h == 0) {
+                break;
+            }
+            int prevSet = from[i][s];
+            if (h == 1 || h == 4) {
+                i -= 1;
+            } else if (h == 2) {
+                i -= 2;
+            }
+            s = prevSet;
+        }
+
+        EscPosBuffer out = new EscPosBuffer(2 * n + 4);
+        for (int k = count - 1; k >= 0; k--) {
+            int h = steps[k];
+            int set = stepSets[k];
+            int pos = stepPos[k];
+            switch (h) {
+                case 0:
+                case 3:
+                    out.write('{');
+                    out.write(SET_PREFIX[set]);
+                    break;
+                case 1:
+                    writeChar(out, data.charAt(pos - 1));
+                    break;
+                case 2:
+                    out.write((data.charAt(pos - 2) - '0') * 10 + (data.charAt(pos - 1) - '0'));
+                    break;
+                default:
+                    out.write('{');
+                    out.write('S');
+                    writeChar(out, data.charAt(pos - 1));
+                    break;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Símbolos de um CODE128 já montado (início + dados + trocas), sem
+     * verificador e parada. Largura em módulos = 11 * (símbolos + 1) + 13.
+     */
+    static int code128Symbols(byte[] payload) {
+        int symbols = 0;
+        for (int i = 0; i < payload.length; i++) {
+            // "{X" (início, troca, shift ou "{{" literal) é um símbolo só.
+            // Em C os bytes de dados vão de 0 a 99, nunca '{'.
+            if (payload[i] == '{' && i + 1 < payload.length) {
+                i++;
+            }
+            symbols++;
+        }
+        return symbols;
+    }
+
+    static int code128Modules(byte[] payload) {
+        return 11 * (code128Symbols(payload) + 1) + 13;
+    }
+
+    private static void relax(int[][] cost, int[][] how, int[][] from, int i, int s, int value, int h, int prev) {
+        if (value < cost[i][s]) {
+            cost[i][s] = value;
+            how[i][s] = h;
+            from[i][s] = prev;
+        }
+    }
+
+    private static boolean inSet(char c, int set) {
+        return set == SET_A ? c < 96 : c >= 32;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // '{' é o escape de função no GS k 73: literal vira "{{"
+    private static int charBytes(char c) {
+        return c == '{' ? 2 : 1;
+    }
+
+    private static void writeChar(EscPosBuffer out, char c) {
+        if (c == '{') {
+            out.write('{');
+        }
+        out.write(c);
+    }
+}
@@ -5,6 +5,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.hardware.usb.UsbConstants;
 import android.hardware.usb.UsbDevice;
 import android.hardware.usb.UsbDeviceConnection;
@@ -12,20 +13,40 @@ import android.hardware.usb.UsbEndpoint;
 import android.hardware.usb.UsbInterface;
 import android.hardware.usb.UsbManager;
 import android.os.Build;
+import android.util.Base64;
 import android.util.Log;
 
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * BematechNativePlugin - SOLUÇÃO DEFINITIVA para ClaimInterface
@@ -60,8 +81,6 @@ public class BematechNativePlugin extends Plugin {
     
     // ESC/POS Commands
     private static final byte[] CMD_INIT = {0x1B, 0x40};
-    private static final byte[] CMD_CUT = {0x1D, 0x56, 0x41, 0x10};
-    private static final byte[] CMD_CUT_PARTIAL = {0x1D, 0x56, 0x42, 0x00};
     private static final byte[] CMD_FEED = {0x1B, 0x64, 0x03};
     private static final byte[] CMD_BOLD_ON = {0x1B, 0x45, 0x01};
     private static final byte[] CMD_BOLD_OFF = {0x1B, 0x45, 0x00};
@@ -84,17 +103,103 @@ public class BematechNativePlugin extends Plugin {
     private static final int USB_REQUEST_SET_INTERFACE = 0x0B;
     private static final int USB_REQUEST_CLEAR_FEATURE = 0x01;
     
+    private static final int STREAM_WRITE_TIMEOUT = 10000;
+    
+    // Aquecimento (warmUpOnLoad) e última impressora usada
+    private static final String PREFS_NAME = "bematech_printer";
+    private static final String PREF_WARM_UP = "warmUpOnLoad";
+    private static final String PREF_LAST_VENDOR_ID = "lastVendorId";
+    private static final String PREF_LAST_PRODUCT_ID = "lastProductId";
+    private static final long WARM_UP_CONNECT_WAIT = 5000;
+    
+    // Segunda via: config do Capacitor (plugins.BematechNativePlugin.*)
+    private static final String CONFIG_REPRINT_ENTRIES = "reprintCacheEntries";
+    private static final String CONFIG_REPRINT_MEMORY = "reprintCacheMemoryBytes";
+    private static final String CONFIG_REPRINT_SPILL = "reprintCacheSpill";
+    
+    // Diretórios internos (printFile não aceita arquivos daqui)
+    private static final String TEMPLATES_DIR = "bematech-templates";
+    private static final String REPRINT_SPILL_DIR = "bematech-reprint";
+    
+    // Tempo máximo para o job em andamento terminar ao desconectar
+    private static final long DRAIN_TIMEOUT = 3000;
+    private static final long DETACH_DRAIN_TIMEOUT = 1000;
+    
+    /**
+     * Conexão USB aberta. Imutável: publicada/removida de uma vez, então
+     * o receiver de detach nunca vê metade dos campos preenchidos.
+     */
+    private static final class UsbLink {
+        final UsbDevice device;
+        final UsbDeviceConnection connection;
+        final UsbInterface usbInterface;
+        final UsbEndpoint endpointOut;
+        final UsbEndpoint endpointIn;
+        // Conversor USB-serial: transporte configurado e interface de comunicação CDC (ou null)
+        final UsbSerialTransport serial;
+        final UsbInterface controlInterface;
+        
+        UsbLink(UsbDevice device, UsbDeviceConnection connection, UsbInterface usbInterface,
+                UsbEndpoint endpointOut, UsbEndpoint endpointIn) {
+            this(device, connection, usbInterface, endpointOut, endpointIn, null, null);
+        }
+        
+        UsbLink(UsbDevice device, UsbDeviceConnection connection, UsbInterface usbInterface,
+                UsbEndpoint endpointOut, UsbEndpoint endpointIn, UsbSerialTransport serial,
+                UsbInterface controlInterface) {
+            this.device = device;
+            this.connection = connection;
+            this.usbInterface = usbInterface;
+            this.endpointOut = endpointOut;
+            this.endpointIn = endpointIn;
+            this.serial = serial;
+            this.controlInterface = controlInterface;
+        }
+    }
+    
     private Context context;
     private UsbManager usbManager;
-    private UsbDevice connectedDevice;
-    private UsbDeviceConnection connection;
-    private UsbInterface usbInterface;
-    private UsbEndpoint endpointOut;
-    private UsbEndpoint endpointIn;
+    private final AtomicReference<UsbLink> usbLink = new AtomicReference<>();
+    
+    // Estado da conexão + escritor único: todos os bytes saem por aqui
+    private final PrinterSession session = new PrinterSession();
+    // Drenagem e reconexão pedidas pelo receiver USB (main thread): o drain
+    // pode levar segundos e não pode rodar dentro do onReceive
+    private final ExecutorService connectExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "PrinterConnect");
+        thread.setDaemon(true);
+        return thread;
+    });
     
-    private boolean isConnected = false;
     private boolean isInitialized = false;
-    private PluginCall pendingPermissionCall;
+    private volatile PluginCall pendingPermissionCall;
+    
+    // Sessões de impressão incremental abertas (streamId -> sessão)
+    private final Map<String, PrintStreamSession> printStreams = new ConcurrentHashMap<>();
+    private final AtomicInteger printStreamCounter = new AtomicInteger();
+    private final AtomicInteger jobCounter = new AtomicInteger();
+    
+    private final PrinterWarmUp warmUp = new PrinterWarmUp();
+    
+    // Descompactação dos payloads deflate/gzip: só usado na thread escritora
+    private final PayloadInflater writerInflater = new PayloadInflater();
+    // Fatia do arquivo mapeado (printFile): só usado na thread escritora
+    private final byte[] fileChunk = new byte[PrinterTransport.MAX_BULK_CHUNK];
+    private TemplateStore templates;
+    private ReprintCache reprints;
+    
+    // Capacidades por modelo; perfil da impressora conectada (genérico até conectar)
+    private final PrinterProfileRegistry profiles = new PrinterProfileRegistry();
+    private volatile PrinterProfile profile = PrinterProfile.GENERIC;
+    
+    // Velocidade/controle de fluxo pedidos no connectUsb (0/null: do perfil);
+    // valem só para o VID/PID escolhido nele, connect() volta ao perfil
+    private volatile int serialBaudRate = 0;
+    private volatile UsbSerialTransport.FlowControl serialFlowControl;
+    private volatile int serialOverrideDevice = -1;
+    
+    // Trace estruturado dos caminhos de conexão/transferência (ver dumpTrace)
+    private final TraceBuffer trace = new TraceBuffer(TraceBuffer.DEFAULT_CAPACITY);
     
     private final BroadcastReceiver usbReceiver = new BroadcastReceiver() {
         @Override
@@ -103,27 +208,31 @@ public class BematechNativePlugin extends Plugin {
             
             if (ACTION_USB_PERMISSION.equals(action)) {
                 synchronized (this) {
-                    UsbDevice device = intent.getParcelableExtra(UsbManager.EXTRA_DEVICE);
+                    final UsbDevice device = intent.getParcelableExtra(UsbManager.EXTRA_DEVICE);
                     
                     if (intent.getBooleanExtra(UsbManager.EXTRA_PERMISSION_GRANTED, false)) {
                         Log.d(TAG, "✓ USB permission GRANTED");
                         
-                        if (device != null && pendingPermissionCall != null) {
-                            JSObject result = connectWithRetry(device, 3);
-                            pendingPermissionCall.resolve(result);
-                            pendingPermissionCall = null;
-                        }
-                        
-                        notifyListeners("printerConnected", new JSObject().put("message", "Connected"));
+                        final PluginCall call = pendingPermissionCall;
+                        pendingPermissionCall = null;
+                        connectExecutor.execute(() -> {
+                            if (device != null && call != null) {
+                                JSObject result = connectWithRetry(device, 3);
+                                call.resolve(result);
+                            }
+                            
+                            notifyListeners("printerConnected", new JSObject().put("message", "Connected"));
+                        });
                     } else {
                         Log.w(TAG, "✗ USB permission DENIED");
                         
-                        if (pendingPermissionCall != null) {
+                        PluginCall call = pendingPermissionCall;
+                        pendingPermissionCall = null;
+                        if (call != null) {
                             JSObject result = new JSObject();
                             result.put("success", false);
                             result.put("error", "Permissão USB negada");
-                            pendingPermissionCall.resolve(result);
-                            pendingPermissionCall = null;
+                            call.resolve(result);
                         }
                     }
                 }
@@ -133,7 +242,7 @@ public class BematechNativePlugin extends Plugin {
                 
             } else if (UsbManager.ACTION_USB_DEVICE_DETACHED.equals(action)) {
                 Log.d(TAG, "USB device DETACHED");
-                handleDeviceDetached();
+                handleDeviceDetached(intent.getParcelableExtra(UsbManager.EXTRA_DEVICE));
             }
         }
     };
@@ -155,9 +264,377 @@ public class BematechNativePlugin extends Plugin {
             context.registerReceiver(usbReceiver, filter);
         }
         
+        templates = new TemplateStore(new File(context.getFilesDir(), TEMPLATES_DIR));
+        loadPrinterProfiles();
+        // Spill em arquivo é opt-in: as vias trazem dados do cliente
+        reprints = new ReprintCache(
+            getConfig().getInt(CONFIG_REPRINT_ENTRIES, ReprintCache.DEFAULT_MAX_ENTRIES),
+            getConfig().getInt(CONFIG_REPRINT_MEMORY, (int) ReprintCache.DEFAULT_MAX_MEMORY_BYTES),
+            ReprintCache.DEFAULT_MAX_ENTRY_BYTES,
+            getConfig().getBoolean(CONFIG_REPRINT_SPILL, false) ? new File(context.getCacheDir(), REPRINT_SPILL_DIR) : null);
+        
+        // Opt-in: config do Capacitor (plugins.BematechNativePlugin.warmUpOnLoad) ou setWarmUpOnLoad
+        if (getConfig().getBoolean(PREF_WARM_UP, false) || prefs().getBoolean(PREF_WARM_UP, false)) {
+            warmUp.begin();
+            Thread thread = new Thread(this::runWarmUp, "PrinterWarmUp");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
         Log.d(TAG, "BematechNativePlugin loaded - ClaimInterface FIX v3");
     }
     
+    // ==================== PERFIS DE IMPRESSORA ====================
+    
+    /**
+     * Modelos do arquivo de dados em assets; sem o arquivo ficam só os
+     * perfis embutidos por fabricante
+     */
+    private void loadPrinterProfiles() {
+        try (InputStream in = context.getAssets().open(PrinterProfileRegistry.ASSET_NAME)) {
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                json.write(buffer, 0, read);
+            }
+            int count = profiles.load(json.toString("UTF-8"));
+            Log.d(TAG, count + " perfis de impressora carregados");
+        } catch (FileNotFoundException e) {
+            Log.d(TAG, "Sem " + PrinterProfileRegistry.ASSET_NAME + ": perfis embutidos");
+        } catch (Exception e) {
+            Log.w(TAG, "Perfis de impressora ignorados: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Troca o perfil ativo. Templates codificados com outra largura, modo
+     * raster ou corte são descartados.
+     */
+    private void useProfile(PrinterProfile next) {
+        PrinterProfile previous = profile;
+        profile = next;
+        if (previous.widthDots != next.widthDots || previous.rasterMode != next.rasterMode
+                || !Arrays.equals(previous.cutCommand, next.cutCommand)) {
+            templates.invalidate();
+        }
+    }
+    
+    @PluginMethod
+    public void getPrinterProfile(PluginCall call) {
+        JSObject result = new JSObject();
+        try {
+            PrinterProfile current = profile;
+            result.put("success", true);
+            result.put("profile", current.toJson());
+            UsbLink link = usbLink.get();
+            result.put("displayName", link != null ? current.displayName(link.device.getVendorId()) : "Genérico");
+            result.put("knownProfiles", profiles.all().size());
+        } catch (Exception e) {
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        call.resolve(result);
+    }
+    
+    // ==================== AQUECIMENTO ====================
+    
+    /**
+     * Reconecta à última impressora (só se a permissão já existe: nada de
+     * diálogo na abertura do app) e codifica os templates salvos
+     */
+    private void runWarmUp() {
+        trace.record(TraceBuffer.EV_WARM_UP, PrinterWarmUp.Phase.RUNNING.ordinal(), warmUp.elapsedMillis());
+        PrinterWarmUp.Phase phase;
+        String error = null;
+        
+        try {
+            UsbDevice device = findLastUsedPrinter();
+            if (device == null) {
+                phase = PrinterWarmUp.Phase.NO_DEVICE;
+                error = "Nenhuma impressora encontrada";
+            } else if (!usbManager.hasPermission(device)) {
+                phase = PrinterWarmUp.Phase.NO_PERMISSION;
+                error = "Permissão USB ainda não concedida";
+            } else {
+                JSObject result = connectWithRetry(device, 2);
+                if (result.optBoolean("success", false)) {
+                    warmUp.connectFinished();
+                    phase = PrinterWarmUp.Phase.READY;
+                } else {
+                    phase = PrinterWarmUp.Phase.FAILED;
+                    error = result.optString("error", "Falha ao conectar");
+                }
+            }
+            
+            // Templates não dependem da impressora: codifica mesmo sem conexão
+            warmUp.templatesEncoded(encodeAllTemplates());
+        } catch (Exception e) {
+            Log.e(TAG, "Warm-up error: " + e.getMessage(), e);
+            phase = PrinterWarmUp.Phase.FAILED;
+            error = e.getMessage();
+        }
+        
+        warmUp.finish(phase, error);
+        trace.record(TraceBuffer.EV_WARM_UP, phase.ordinal(), warmUp.getTimeToReadyMillis());
+        Log.d(TAG, "Warm-up " + phase + " em " + warmUp.getTimeToReadyMillis() + "ms");
+        // Retido até o JS registrar o listener (o aquecimento pode terminar antes do initialize)
+        notifyListeners("printerReady", warmUpStatus(), true);
+    }
+    
+    /**
+     * Espera um aquecimento em andamento, para connect() não disputar o
+     * dispositivo com ele
+     */
+    private void awaitWarmUp() {
+        try {
+            warmUp.await(WARM_UP_CONNECT_WAIT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private UsbDevice findLastUsedPrinter() {
+        SharedPreferences prefs = prefs();
+        int vid = prefs.getInt(PREF_LAST_VENDOR_ID, -1);
+        int pid = prefs.getInt(PREF_LAST_PRODUCT_ID, -1);
+        
+        if (vid < 0) {
+            // Primeira execução: só impressoras reconhecidas (vendor ou classe USB)
+            return findKnownPrinter();
+        }
+        for (UsbDevice device : usbManager.getDeviceList().values()) {
+            if (device.getVendorId() == vid && device.getProductId() == pid) {
+                return device;
+            }
+        }
+        // A lembrada não está plugada: nada de claim em outro dispositivo
+        return null;
+    }
+    
+    private void rememberPrinter(UsbDevice device) {
+        prefs().edit()
+            .putInt(PREF_LAST_VENDOR_ID, device.getVendorId())
+            .putInt(PREF_LAST_PRODUCT_ID, device.getProductId())
+            .apply();
+    }
+    
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+    
+    private JSObject warmUpStatus() {
+        JSObject status = new JSObject();
+        status.put("state", warmUp.getPhase().name());
+        status.put("connected", session.isReady());
+        status.put("timeToReadyMs", warmUp.getTimeToReadyMillis());
+        status.put("connectMs", warmUp.getConnectMillis());
+        status.put("templatesEncoded", warmUp.getTemplatesEncoded());
+        if (warmUp.getError() != null) {
+            status.put("error", warmUp.getError());
+        }
+        return status;
+    }
+    
+    @PluginMethod
+    public void getWarmUpStatus(PluginCall call) {
+        JSObject result = warmUpStatus();
+        result.put("success", true);
+        result.put("enabled", getConfig().getBoolean(PREF_WARM_UP, false) || prefs().getBoolean(PREF_WARM_UP, false));
+        call.resolve(result);
+    }
+    
+    /**
+     * Ativa/desativa o aquecimento nas próximas aberturas do app
+     */
+    @PluginMethod
+    public void setWarmUpOnLoad(PluginCall call) {
+        Boolean enabled = call.getBoolean("enabled", true);
+        prefs().edit().putBoolean(PREF_WARM_UP, enabled).apply();
+        
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("enabled", enabled);
+        call.resolve(result);
+    }
+    
+    // ==================== TEMPLATES ====================
+    
+    /**
+     * Salva um segmento fixo (mesmo formato de um job do printBatch).
+     * É codificado no próximo aquecimento ou na primeira impressão.
+     */
+    @PluginMethod
+    public void saveTemplate(PluginCall call) {
+        String name = call.getString("name", "");
+        JSObject result = new JSObject();
+        
+        try {
+            JSONObject definition = new JSONObject();
+            definition.put("type", call.getString("type", "raw"));
+            definition.put("data", call.getString("data", ""));
+            definition.put("cut", call.getBoolean("cut", false));
+            // Sem largura explícita: a do perfil da impressora no momento da codificação
+            Integer width = call.getInt("width");
+            if (width != null) {
+                definition.put("width", width);
+            }
+            definition.put("bandHeight", call.getInt("bandHeight", RasterBandEncoder.DEFAULT_BAND_HEIGHT));
+            templates.save(name, definition.toString());
+            result.put("success", true);
+        } catch (Exception e) {
+            Log.e(TAG, "saveTemplate error: " + e.getMessage());
+            result.put("success", false);
+            result.put("error", e.getMessage());
+        }
+        call.resolve(result);
+    }
+    
+    @PluginMethod
+    public void deleteTemplate(PluginCall call) {
+        String name = call.getString("name", "");
+        
+        JSObject result = new JSObject();
+        result.put("success", templates.delete(name));
+        call.resolve(result);
+    }
+    
+    @PluginMethod
+    public void printTemplate(PluginCall call) {
+        final String name = call.getString("name", "");
+        
+        // Codificação (se ainda não aquecido) roda no escritor, não no bridge
+        submitJob(call, -1, t -> {
+            byte[] data = encodeTemplate(name);
+            t.setTotalBytes(data.length);
+            PrinterTransport.writeFully(t, data, 0, data.length, STREAM_WRITE_TIMEOUT, trace);
+            return data.length;
+        });
+    }
+    
+    private byte[] encodeTemplate(String name) throws IOException {
+        byte[] data = templates.getEncoded(name);
+        if (data != null) {
+            return data;
+        }
+        String definition = templates.read(name);
+        if (definition == null) {
+            throw new IOException("Template não encontrado: " + name);
+        }
+        try {
+            data = batchEncoder(new JSONObject(definition)).encode();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Falha ao codificar template " + name + ": " + e.getMessage(), e);
+        }
+        templates.putEncoded(name, data);
+        return data;
+    }
+    
+    private int encodeAllTemplates() {
+        int count = 0;
+        for (String name : templates.names()) {
+            try {
+                encodeTemplate(name);
+                count++;
+            } catch (IOException e) {
+                Log.w(TAG, "Template " + name + " ignorado: " + e.getMessage());
+            }
+        }
+        return count;
+    }
+    
+    // ==================== SEGUNDA VIA ====================
+    
+    /**
+     * Reimprime os bytes guardados de um job enviado com orderId, sem
+     * recodificar. contentHash opcional garante que é a mesma versão.
+     */
+    @PluginMethod
+    public void reprint(PluginCall call) {
+        String orderId = call.getString("orderId", "");
+        String contentHash = call.getString("contentHash", null);
+        
+        final ReprintCache.Entry entry = orderId.isEmpty() ? null : reprints.find(orderId, contentHash);
+        if (entry == null) {
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", "Via não encontrada no cache: " + orderId);
+            call.resolve(result);
+            return;
+        }
+        
+        // Leitura do arquivo (se foi para o disco) roda no escritor
+        submitJob(call, entry.size, null, t -> {
+            byte[] data = reprints.load(entry);
+            PrinterTransport.writeFully(t, data, 0, data.length, STREAM_WRITE_TIMEOUT, trace);
+            return data.length;
+        });
+    }
+    
+    @PluginMethod
+    public void getReprintCache(PluginCall call) {
+        JSArray entries = new JSArray();
+        for (ReprintCache.Entry entry : reprints.entries()) {
+            JSObject item = new JSObject();
+            item.put("orderId", entry.orderId);
+            item.put("contentHash", entry.hash);
+            item.put("size", entry.size);
+            item.put("createdAt", entry.createdAt);
+            item.put("spilled", entry.isSpilled());
+            item.put("reprints", entry.getReprints());
+            entries.put(item);
+        }
+        
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("entries", entries);
+        result.put("maxEntries", reprints.getMaxEntries());
+        result.put("memoryBytes", reprints.getMemoryBytes());
+        result.put("spill", reprints.isSpillEnabled());
+        result.put("hits", reprints.getHits());
+        result.put("misses", reprints.getMisses());
+        call.resolve(result);
+    }
+    
+    @PluginMethod
+    public void clearReprintCache(PluginCall call) {
+        reprints.clear();
+        
+        JSObject result = new JSObject();
+        result.put("success", true);
+        call.resolve(result);
+    }
+    
+    /**
+     * Jobs com orderId têm os bytes transferidos copiados para o cache
+     */
+    private ReprintCache.Capture reprintCapture(PluginCall call) {
+        String orderId = call.getString("orderId", null);
+        return orderId == null || orderId.isEmpty() ? null : reprints.capture();
+    }
+    
+    private static PrinterTransport captured(ReprintCache.Capture capture, PrinterTransport transport) {
+        return capture == null ? transport : capture.wrap(transport);
+    }
+    
+    /**
+     * Guarda a via do job concluído; result (se houver) recebe o contentHash
+     */
+    private void cacheReprint(PluginCall call, ReprintCache.Capture capture, JSObject result) {
+        byte[] data = capture == null ? null : capture.toByteArray();
+        if (data == null) {
+            return;
+        }
+        String orderId = call.getString("orderId", "");
+        ReprintCache.Entry entry = reprints.put(orderId, data);
+        if (result != null) {
+            result.put("orderId", orderId);
+            result.put("contentHash", entry.hash);
+        }
+    }
+    
     @PluginMethod
     public void initialize(PluginCall call) {
         Log.d(TAG, "Initializing...");
@@ -173,6 +650,10 @@ public class BematechNativePlugin extends Plugin {
     public void connect(PluginCall call) {
         try {
             Log.d(TAG, "=== CONNECT START ===");
+            serialOverrideDevice = -1;
+            serialBaudRate = 0;
+            serialFlowControl = null;
+            awaitWarmUp();
             
             UsbDevice printerDevice = findPrinterDevice();
             
@@ -195,7 +676,10 @@ public class BematechNativePlugin extends Plugin {
             
             Log.d(TAG, "Printer found: VID:0x" + Integer.toHexString(printerDevice.getVendorId()));
             
-            if (usbManager.hasPermission(printerDevice)) {
+            JSObject warm = alreadyConnected(printerDevice);
+            if (warm != null) {
+                call.resolve(warm);
+            } else if (usbManager.hasPermission(printerDevice)) {
                 Log.d(TAG, "Permission OK, connecting...");
                 JSObject result = connectWithRetry(printerDevice, 3);
                 call.resolve(result);
@@ -218,9 +702,24 @@ public class BematechNativePlugin extends Plugin {
     public void connectUsb(PluginCall call) {
         int vid = call.getInt("vid", 0x0B1B);
         int pid = call.getInt("pid", 0);
+        int baudRate = call.getInt("baudRate", 0);
+        String flowControl = call.getString("flowControl");
         
         try {
             Log.d(TAG, "connectUsb VID:0x" + Integer.toHexString(vid));
+            UsbSerialTransport.FlowControl flow = null;
+            if (flowControl != null) {
+                flow = UsbSerialTransport.LineConfig.parseFlowControl(flowControl);
+                if (flow == null) {
+                    JSObject result = new JSObject();
+                    result.put("success", false);
+                    result.put("error", "flowControl inválido: " + flowControl + " (none, rtsCts ou xonXoff)");
+                    call.resolve(result);
+                    return;
+                }
+            }
+            
+            awaitWarmUp();
             
             UsbDevice targetDevice = null;
             for (UsbDevice device : usbManager.getDeviceList().values()) {
@@ -240,7 +739,21 @@ public class BematechNativePlugin extends Plugin {
                 return;
             }
             
-            if (usbManager.hasPermission(targetDevice)) {
+            // Valem também para as reconexões automáticas (religar o cabo)
+            serialOverrideDevice = deviceKey(targetDevice);
+            serialBaudRate = Math.max(0, baudRate);
+            serialFlowControl = flow;
+            
+            JSObject warm = alreadyConnected(targetDevice);
+            if (warm != null && serialConfigChanged(targetDevice)) {
+                // Conversor já aberto com outra velocidade/fluxo: reabre com a pedida
+                Log.d(TAG, "connectUsb: configuração serial mudou, reconectando");
+                cleanupConnection(DRAIN_TIMEOUT);
+                warm = null;
+            }
+            if (warm != null) {
+                call.resolve(warm);
+            } else if (usbManager.hasPermission(targetDevice)) {
                 JSObject result = connectWithRetry(targetDevice, 3);
                 call.resolve(result);
             } else {
@@ -257,25 +770,89 @@ public class BematechNativePlugin extends Plugin {
         }
     }
     
+    /**
+     * Resultado de sucesso se a sessão já está pronta neste dispositivo
+     * (ex.: reconectado pelo aquecimento), senão null
+     */
+    private JSObject alreadyConnected(UsbDevice device) {
+        UsbLink link = usbLink.get();
+        if (!session.isReady() || link == null || !link.device.getDeviceName().equals(device.getDeviceName())) {
+            return null;
+        }
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("printerInfo", printerInfo(device));
+        return result;
+    }
+    
+    /**
+     * O link serial aberto neste dispositivo usa outra velocidade ou
+     * controle de fluxo que a pedida agora
+     */
+    private boolean serialConfigChanged(UsbDevice device) {
+        UsbLink link = usbLink.get();
+        if (link == null || link.serial == null) {
+            return false;
+        }
+        UsbSerialTransport.LineConfig requested =
+            serialConfig(device, profiles.forDevice(device.getVendorId(), device.getProductId()));
+        UsbSerialTransport.LineConfig active = link.serial.getConfig();
+        return requested.baudRate != active.baudRate || requested.flowControl != active.flowControl;
+    }
+    
+    private JSObject printerInfo(UsbDevice device) {
+        JSObject printerInfo = new JSObject();
+        printerInfo.put("connected", true);
+        printerInfo.put("model", profiles.forDevice(device.getVendorId(), device.getProductId()).displayName(device.getVendorId()));
+        printerInfo.put("vendorId", device.getVendorId());
+        printerInfo.put("productId", device.getProductId());
+        printerInfo.put("deviceName", device.getDeviceName());
+        putSerialInfo(printerInfo, usbLink.get());
+        return printerInfo;
+    }
+    
+    private static void putSerialInfo(JSObject info, UsbLink link) {
+        if (link == null || link.serial == null) {
+            return;
+        }
+        UsbSerialTransport.LineConfig config = link.serial.getConfig();
+        JSObject serial = new JSObject();
+        serial.put("driver", link.serial.kind() == UsbSerialTransport.Kind.CH340 ? "ch340" : "cdcAcm");
+        serial.put("baudRate", config.baudRate);
+        serial.put("lineFormat", config.toString());
+        serial.put("flowControl", UsbSerialTransport.LineConfig.flowControlName(link.serial.getFlowControl()));
+        info.put("serial", serial);
+    }
+    
     /**
      * SOLUÇÃO PRINCIPAL: Conecta com múltiplas estratégias
+     *
+     * A sessão anterior é drenada antes e a transição CONNECTING impede
+     * que dois connect (bridge + callback de permissão) abram o
+     * dispositivo ao mesmo tempo.
      */
     private JSObject connectWithRetry(UsbDevice device, int maxRetries) {
         JSObject result = new JSObject();
         String lastError = "";
         
+        cleanupConnection(DRAIN_TIMEOUT);
+        if (!session.beginConnect()) {
+            result.put("success", false);
+            result.put("error", "Conexão já em andamento (" + session.getState() + ")");
+            return result;
+        }
+        
         for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            Log.d(TAG, "=== CONNECTION ATTEMPT " + attempt + "/" + maxRetries + " ===");
+            trace.record(TraceBuffer.EV_CONNECT_ATTEMPT, attempt, maxRetries);
             
             try {
                 // Estratégia 1: Conexão direta com reset
                 result = connectWithReset(device);
                 if (result.optBoolean("success", false)) {
-                    Log.d(TAG, "✓ Connected on attempt " + attempt);
                     return result;
                 }
                 lastError = result.optString("error", "Unknown error");
-                Log.w(TAG, "Attempt " + attempt + " failed: " + lastError);
+                trace.record(TraceBuffer.EV_CONNECT_FAIL, attempt, 0);
                 
                 // Delay progressivo entre tentativas
                 Thread.sleep(500 * attempt);
@@ -286,23 +863,22 @@ public class BematechNativePlugin extends Plugin {
             }
         }
         
+        session.connectFailed();
         result.put("success", false);
         result.put("error", "Falha após " + maxRetries + " tentativas. Último erro: " + lastError);
         return result;
     }
     
     /**
-     * Conecta com reset USB para liberar kernel driver
+     * Conecta com reset USB para liberar kernel driver. Chamado com a
+     * sessão em CONNECTING; só publica a conexão se tudo der certo.
      */
     private JSObject connectWithReset(UsbDevice device) {
         JSObject result = new JSObject();
+        UsbDeviceConnection connection = null;
         
         try {
-            // Limpar conexão anterior
-            cleanupConnection();
-            
             // Abrir dispositivo
-            Log.d(TAG, "Opening device...");
             connection = usbManager.openDevice(device);
             if (connection == null) {
                 result.put("success", false);
@@ -310,12 +886,8 @@ public class BematechNativePlugin extends Plugin {
                 return result;
             }
             
-            Log.d(TAG, "Device opened, FD: " + connection.getFileDescriptor());
-            
             // ===== PASSO CRÍTICO: RESET USB =====
             // Isso força o kernel a liberar o driver
-            Log.d(TAG, "Performing USB reset via controlTransfer...");
-            
             // Soft reset - Set Configuration
             int resetResult = connection.controlTransfer(
                 USB_DIR_OUT | USB_TYPE_STANDARD | USB_RECIP_DEVICE,
@@ -326,29 +898,30 @@ public class BematechNativePlugin extends Plugin {
                 0,
                 1000
             );
-            Log.d(TAG, "Set Configuration result: " + resetResult);
+            trace.record(TraceBuffer.EV_CONTROL_TRANSFER, USB_REQUEST_SET_CONFIGURATION, resetResult);
             
             // Pequeno delay após reset
             Thread.sleep(100);
             
             // Encontrar interface e endpoints
-            if (!findInterfaceAndEndpoints(device)) {
+            UsbLink link = findInterfaceAndEndpoints(device, connection);
+            if (link == null) {
                 connection.close();
                 result.put("success", false);
                 result.put("error", "Interface de impressora não encontrada");
                 return result;
             }
+            UsbInterface usbInterface = link.usbInterface;
             
             // ===== CLAIM INTERFACE - MÚLTIPLAS ESTRATÉGIAS =====
             boolean claimed = false;
             
             // Estratégia 1: Force claim direto
-            Log.d(TAG, "Trying claimInterface(force=true)...");
             claimed = connection.claimInterface(usbInterface, true);
+            trace.record(TraceBuffer.EV_CLAIM, 1, claimed ? 1 : 0);
             
             if (!claimed) {
                 // Estratégia 2: Set Interface antes do claim
-                Log.d(TAG, "Force claim failed, trying Set Interface...");
                 int setIntfResult = connection.controlTransfer(
                     USB_DIR_OUT | USB_TYPE_STANDARD | USB_RECIP_INTERFACE,
                     USB_REQUEST_SET_INTERFACE,
@@ -358,16 +931,16 @@ public class BematechNativePlugin extends Plugin {
                     0,
                     1000
                 );
-                Log.d(TAG, "Set Interface result: " + setIntfResult);
+                trace.record(TraceBuffer.EV_CONTROL_TRANSFER, USB_REQUEST_SET_INTERFACE, setIntfResult);
                 
                 Thread.sleep(50);
                 claimed = connection.claimInterface(usbInterface, true);
+                trace.record(TraceBuffer.EV_CLAIM, 2, claimed ? 1 : 0);
             }
             
             if (!claimed) {
                 // Estratégia 3: Clear Feature e retry
-                Log.d(TAG, "Still not claimed, trying Clear Feature...");
-                connection.controlTransfer(
+                int clearResult = connection.controlTransfer(
                     USB_DIR_OUT | USB_TYPE_STANDARD | USB_RECIP_INTERFACE,
                     USB_REQUEST_CLEAR_FEATURE,
                     0,
@@ -376,9 +949,11 @@ public class BematechNativePlugin extends Plugin {
                     0,
                     1000
                 );
+                trace.record(TraceBuffer.EV_CONTROL_TRANSFER, USB_REQUEST_CLEAR_FEATURE, clearResult);
                 
                 Thread.sleep(100);
                 claimed = connection.claimInterface(usbInterface, true);
+                trace.record(TraceBuffer.EV_CLAIM, 3, claimed ? 1 : 0);
             }
             
             if (!claimed) {
@@ -388,63 +963,126 @@ public class BematechNativePlugin extends Plugin {
                 return result;
             }
             
-            Log.d(TAG, "✓ Interface claimed successfully!");
+            PrinterProfile deviceProfile = profiles.forDevice(device.getVendorId(), device.getProductId());
+            PrinterTransport transport;
+            UsbSerialTransport.Kind serialKind = UsbSerialTransport.detect(device);
+            if (serialKind != null) {
+                // Conversor USB-serial: velocidade/formato/fluxo antes do primeiro byte
+                link = openSerial(serialKind, link, deviceProfile);
+                transport = link.serial;
+            } else {
+                transport = new UsbPrinterTransport(connection, link.endpointOut, deviceProfile.chunkSize);
+            }
             
-            // Enviar comando de init
-            int sent = connection.bulkTransfer(endpointOut, CMD_INIT, CMD_INIT.length, 3000);
-            Log.d(TAG, "Init command sent: " + sent + " bytes");
+            // Enviar comando de init (ainda em CONNECTING: ninguém mais escreve)
+            int sent = transport.write(CMD_INIT, 0, CMD_INIT.length, 3000);
+            trace.record(TraceBuffer.EV_BULK_WRITE, CMD_INIT.length, sent);
             
-            connectedDevice = device;
-            isConnected = true;
+            useProfile(deviceProfile);
+            usbLink.set(link);
+            session.connected(transport);
+            rememberPrinter(device);
             
             result.put("success", true);
+            result.put("printerInfo", printerInfo(device));
             
-            JSObject printerInfo = new JSObject();
-            printerInfo.put("connected", true);
-            printerInfo.put("model", getVendorName(device.getVendorId()));
-            printerInfo.put("vendorId", device.getVendorId());
-            printerInfo.put("productId", device.getProductId());
-            printerInfo.put("deviceName", device.getDeviceName());
-            result.put("printerInfo", printerInfo);
-            
+            trace.record(TraceBuffer.EV_CONNECT_OK, device.getVendorId(), device.getProductId());
             Log.d(TAG, "✓ CONNECTION SUCCESSFUL!");
             
         } catch (Exception e) {
             Log.e(TAG, "Connection error: " + e.getMessage(), e);
             result.put("success", false);
             result.put("error", e.getMessage());
-            cleanupConnection();
+            usbLink.set(null);
+            if (connection != null) {
+                connection.close();
+            }
         }
         
         return result;
     }
     
-    private boolean findInterfaceAndEndpoints(UsbDevice device) {
-        usbInterface = null;
-        endpointOut = null;
-        endpointIn = null;
+    /**
+     * Configura o conversor USB-serial (CH340 ou CDC-ACM) e retorna o link
+     * com o transporte serial. Velocidade e controle de fluxo vêm do perfil
+     * do modelo, ou do connectUsb se informados.
+     */
+    private UsbLink openSerial(UsbSerialTransport.Kind kind, UsbLink link, PrinterProfile deviceProfile)
+        throws IOException {
+        UsbSerialTransport.LineConfig config = serialConfig(link.device, deviceProfile);
         
-        Log.d(TAG, "Device has " + device.getInterfaceCount() + " interfaces");
+        // CDC-ACM: as requisições de classe vão para a interface de comunicação
+        UsbInterface controlInterface = null;
+        int controlId = link.usbInterface.getId();
+        if (kind == UsbSerialTransport.Kind.CDC_ACM) {
+            for (int i = 0; i < link.device.getInterfaceCount(); i++) {
+                UsbInterface intf = link.device.getInterface(i);
+                if (intf.getInterfaceClass() == UsbConstants.USB_CLASS_COMM) {
+                    controlId = intf.getId();
+                    boolean claimed = link.connection.claimInterface(intf, true);
+                    trace.record(TraceBuffer.EV_CLAIM, 4, claimed ? 1 : 0);
+                    controlInterface = claimed ? intf : null;
+                    break;
+                }
+            }
+        }
         
+        UsbSerialTransport serial = UsbSerialTransport.create(kind,
+            SerialChannel.usb(link.connection, link.endpointOut, link.endpointIn),
+            config, deviceProfile.chunkSize, controlId);
+        try {
+            serial.open();
+        } catch (IOException e) {
+            trace.record(TraceBuffer.EV_SERIAL_CONFIG, config.baudRate, -1);
+            throw e;
+        }
+        trace.record(TraceBuffer.EV_SERIAL_CONFIG, config.baudRate, serial.getFlowControl().ordinal());
+        Log.d(TAG, "Serial " + kind + " " + config);
+        return new UsbLink(link.device, link.connection, link.usbInterface, link.endpointOut, link.endpointIn,
+            serial, controlInterface);
+    }
+    
+    /**
+     * Configuração do perfil com os overrides do connectUsb, se for o
+     * dispositivo escolhido nele
+     */
+    private UsbSerialTransport.LineConfig serialConfig(UsbDevice device, PrinterProfile deviceProfile) {
+        UsbSerialTransport.LineConfig config = deviceProfile.serial;
+        if (deviceKey(device) != serialOverrideDevice) {
+            return config;
+        }
+        if (serialBaudRate > 0) {
+            config = config.withBaudRate(serialBaudRate);
+        }
+        UsbSerialTransport.FlowControl flow = serialFlowControl;
+        if (flow != null) {
+            config = config.withFlowControl(flow);
+        }
+        return config;
+    }
+    
+    private static int deviceKey(UsbDevice device) {
+        return (device.getVendorId() << 16) | device.getProductId();
+    }
+    
+    private UsbLink findInterfaceAndEndpoints(UsbDevice device, UsbDeviceConnection connection) {
         for (int i = 0; i < device.getInterfaceCount(); i++) {
             UsbInterface intf = device.getInterface(i);
             int intfClass = intf.getInterfaceClass();
             
-            Log.d(TAG, "Interface " + i + ": class=" + intfClass + 
-                       " subclass=" + intf.getInterfaceSubclass() +
-                       " endpoints=" + intf.getEndpointCount());
+            trace.record(TraceBuffer.EV_INTERFACE, i, intfClass);
             
             // Classes válidas para impressora: 7 (Printer), 255 (Vendor), 0 (Device)
             if (intfClass == UsbConstants.USB_CLASS_PRINTER ||
                 intfClass == UsbConstants.USB_CLASS_VENDOR_SPEC ||
                 intfClass == 0) {
                 
+                UsbEndpoint endpointOut = null;
+                UsbEndpoint endpointIn = null;
                 for (int j = 0; j < intf.getEndpointCount(); j++) {
                     UsbEndpoint ep = intf.getEndpoint(j);
-                    Log.d(TAG, "  Endpoint " + j + ": dir=" + 
-                               (ep.getDirection() == UsbConstants.USB_DIR_OUT ? "OUT" : "IN") +
-                               " type=" + ep.getType() +
-                               " maxPacket=" + ep.getMaxPacketSize());
+                    trace.record(TraceBuffer.EV_ENDPOINT, ep.getAddress(),
+                        ((long) ep.getType() << 16) | ep.getMaxPacketSize());
                     
                     if (ep.getType() == UsbConstants.USB_ENDPOINT_XFER_BULK) {
                         if (ep.getDirection() == UsbConstants.USB_DIR_OUT) {
@@ -456,52 +1094,86 @@ public class BematechNativePlugin extends Plugin {
                 }
                 
                 if (endpointOut != null) {
-                    usbInterface = intf;
-                    Log.d(TAG, "✓ Found printer interface " + i + " with OUT endpoint");
-                    return true;
+                    return new UsbLink(device, connection, intf, endpointOut, endpointIn);
                 }
             }
         }
         
-        // Fallback: procurar qualquer interface com bulk OUT
-        Log.d(TAG, "No printer class found, trying fallback...");
+        // Fallback: procurar qualquer interface com bulk OUT (ex.: dados CDC-ACM)
         for (int i = 0; i < device.getInterfaceCount(); i++) {
             UsbInterface intf = device.getInterface(i);
+            UsbEndpoint endpointOut = null;
+            UsbEndpoint endpointIn = null;
             for (int j = 0; j < intf.getEndpointCount(); j++) {
                 UsbEndpoint ep = intf.getEndpoint(j);
-                if (ep.getType() == UsbConstants.USB_ENDPOINT_XFER_BULK &&
-                    ep.getDirection() == UsbConstants.USB_DIR_OUT) {
-                    endpointOut = ep;
-                    usbInterface = intf;
-                    Log.d(TAG, "✓ Fallback: using interface " + i);
-                    return true;
+                if (ep.getType() == UsbConstants.USB_ENDPOINT_XFER_BULK) {
+                    if (ep.getDirection() == UsbConstants.USB_DIR_OUT) {
+                        endpointOut = ep;
+                    } else {
+                        // Necessário para receber XON/XOFF de impressoras seriais
+                        endpointIn = ep;
+                    }
                 }
             }
+            if (endpointOut != null) {
+                trace.record(TraceBuffer.EV_INTERFACE, i, intf.getInterfaceClass());
+                return new UsbLink(device, connection, intf, endpointOut, endpointIn);
+            }
         }
         
-        return false;
+        return null;
     }
     
-    private void cleanupConnection() {
+    /**
+     * Drena a sessão (o job em andamento tem até drainTimeoutMs, depois é
+     * interrompido e o drain espera ele sair) e só então libera a
+     * interface, para não fechar a conexão no meio de um bulkTransfer.
+     * Bloqueia: não chamar na main thread (ver connectExecutor).
+     */
+    private void cleanupConnection(long drainTimeoutMs) {
+        abortPrintStreams();
         try {
-            if (connection != null) {
-                if (usbInterface != null) {
-                    connection.releaseInterface(usbInterface);
+            session.drain(drainTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        UsbLink link = usbLink.getAndSet(null);
+        try {
+            if (link != null) {
+                if (link.serial != null) {
+                    link.serial.close();
                 }
-                connection.close();
+                if (link.controlInterface != null) {
+                    link.connection.releaseInterface(link.controlInterface);
+                }
+                link.connection.releaseInterface(link.usbInterface);
+                link.connection.close();
             }
         } catch (Exception e) {
             Log.w(TAG, "Cleanup error: " + e.getMessage());
         }
-        connection = null;
-        usbInterface = null;
-        endpointOut = null;
-        endpointIn = null;
-        connectedDevice = null;
-        isConnected = false;
     }
     
     private UsbDevice findPrinterDevice() {
+        UsbDevice printer = findKnownPrinter();
+        if (printer != null) {
+            return printer;
+        }
+        
+        // Último fallback: retornar primeiro dispositivo
+        HashMap<String, UsbDevice> deviceList = usbManager.getDeviceList();
+        if (!deviceList.isEmpty()) {
+            return deviceList.values().iterator().next();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Dispositivo de vendor conhecido ou com interface de impressora
+     */
+    private UsbDevice findKnownPrinter() {
         HashMap<String, UsbDevice> deviceList = usbManager.getDeviceList();
         
         // Primeiro, procurar por vendors conhecidos
@@ -523,11 +1195,6 @@ public class BematechNativePlugin extends Plugin {
             }
         }
         
-        // Último fallback: retornar primeiro dispositivo
-        if (!deviceList.isEmpty()) {
-            return deviceList.values().iterator().next();
-        }
-        
         return null;
     }
     
@@ -542,23 +1209,148 @@ public class BematechNativePlugin extends Plugin {
         usbManager.requestPermission(device, permissionIntent);
     }
     
-    private void handleDeviceDetached() {
-        Log.d(TAG, "Device detached, cleaning up...");
-        cleanupConnection();
-        notifyListeners("printerDisconnected", new JSObject().put("message", "Printer disconnected"));
+    /**
+     * Chamado na main thread: só derruba a sessão se o dispositivo
+     * removido é a impressora conectada, e drena fora dela
+     */
+    private void handleDeviceDetached(UsbDevice device) {
+        UsbLink link = usbLink.get();
+        if (device == null || link == null || !link.device.getDeviceName().equals(device.getDeviceName())) {
+            Log.d(TAG, "Detach de outro dispositivo: conexão mantida");
+            return;
+        }
+        trace.record(TraceBuffer.EV_DETACH, device.getVendorId(), device.getProductId());
+        connectExecutor.execute(() -> {
+            // Dispositivo já saiu: não adianta esperar muito pelo job em andamento
+            cleanupConnection(DETACH_DRAIN_TIMEOUT);
+            notifyListeners("printerDisconnected", new JSObject().put("message", "Printer disconnected"));
+        });
+    }
+    
+    /**
+     * Enfileira bytes já montados como um único job. A chamada é resolvida
+     * pela thread escritora quando a transferência termina, sem bloquear
+     * a thread do bridge.
+     */
+    private void submitBytes(PluginCall call, final byte[] data, final int timeoutMs) {
+        submitJob(call, data.length, t -> {
+            PrinterTransport.writeFully(t, data, 0, data.length, timeoutMs, trace);
+            return data.length;
+        });
     }
     
-    private String getVendorName(int vendorId) {
-        switch (vendorId) {
-            case 0x0B1B: return "Bematech";
-            case 0x04B8: return "Epson";
-            case 0x0519: return "Star Micronics";
-            case 0x0DD4: return "Custom";
-            case 0x154F: return "Daruma";
-            case 0x0483: return "Elgin";
-            case 0x1A86: return "QinHeng/CH340";
-            default: return "Printer VID:0x" + Integer.toHexString(vendorId);
+    /**
+     * Submete um job com progresso: o job escreve no transporte envolvido
+     * pelo JobProgress, que gera printProgress (limitado) e printJobDone.
+     */
+    private void submitJob(PluginCall call, long totalBytes, TrackedJob job) {
+        submitJob(call, totalBytes, reprintCapture(call), job);
+    }
+    
+    private void submitJob(PluginCall call, long totalBytes, ReprintCache.Capture capture, TrackedJob job) {
+        submitJob(call, totalBytes, capture, job, null);
+    }
+    
+    private void submitJob(final PluginCall call, long totalBytes, final ReprintCache.Capture capture,
+                           final TrackedJob job, final JobCleanup cleanup) {
+        final JobProgress progress = trackJob(call, totalBytes);
+        session.submit(t -> job.run(progress.wrap(captured(capture, t))), new PrinterSession.Callback() {
+            @Override
+            public void onComplete(long bytesTransferred) {
+                if (cleanup != null) {
+                    cleanup.onFinished(null);
+                }
+                progress.finish(null);
+                JSObject result = new JSObject();
+                result.put("success", true);
+                result.put("jobId", progress.getJobId());
+                result.put("bytesTransferred", bytesTransferred);
+                cacheReprint(call, capture, result);
+                call.resolve(result);
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                if (cleanup != null) {
+                    cleanup.onFinished(error);
+                }
+                progress.finish(error);
+                JSObject result = new JSObject();
+                result.put("success", false);
+                result.put("jobId", progress.getJobId());
+                result.put("error", error.getMessage());
+                call.resolve(result);
+            }
+        });
+    }
+    
+    // ==================== PROGRESSO ====================
+    
+    /**
+     * Job que escreve pelo JobProgress (conta bytes para os eventos)
+     */
+    private interface TrackedJob {
+        long run(JobProgress transport) throws IOException, InterruptedException;
+    }
+    
+    /**
+     * Chamado uma vez em qualquer desfecho do job, inclusive quando é
+     * recusado ou cancelado antes de rodar; error null = sucesso
+     */
+    private interface JobCleanup {
+        void onFinished(Exception error);
+    }
+    
+    /**
+     * jobId informado pelo JS (para correlacionar eventos antes do resolve)
+     * ou gerado aqui
+     */
+    private JobProgress trackJob(PluginCall call, long totalBytes) {
+        String jobId = call.getString("jobId", null);
+        if (jobId == null || jobId.isEmpty()) {
+            jobId = "job-" + jobCounter.incrementAndGet();
+        }
+        return new JobProgress(jobId, totalBytes, JobProgress.DEFAULT_MIN_INTERVAL_MS, progressListener);
+    }
+    
+    private final JobProgress.Listener progressListener = new JobProgress.Listener() {
+        @Override
+        public void onProgress(JobProgress job) {
+            // Sem listener, nem monta o JSObject
+            if (hasListeners("printProgress")) {
+                notifyListeners("printProgress", progressEvent(job));
+            }
         }
+        
+        @Override
+        public void onFinished(JobProgress job, Exception error) {
+            if (hasListeners("printJobDone")) {
+                JSObject event = progressEvent(job);
+                event.put("success", error == null);
+                if (error != null) {
+                    event.put("error", error.getMessage());
+                }
+                notifyListeners("printJobDone", event);
+            }
+        }
+    };
+    
+    private static JSObject progressEvent(JobProgress job) {
+        JSObject event = new JSObject();
+        event.put("jobId", job.getJobId());
+        event.put("bytesSent", job.getBytesSent());
+        event.put("totalBytes", job.getTotalBytes());
+        event.put("chunks", job.getChunks());
+        event.put("elapsedMs", job.getElapsedMillis());
+        event.put("etaMs", job.getEtaMillis());
+        return event;
+    }
+    
+    private void abortPrintStreams() {
+        for (PrintStreamSession session : printStreams.values()) {
+            session.abort();
+        }
+        printStreams.clear();
     }
     
     // ==================== MÉTODOS DE IMPRESSÃO ====================
@@ -566,31 +1358,15 @@ public class BematechNativePlugin extends Plugin {
     @PluginMethod
     public void sendEscPos(PluginCall call) {
         String command = call.getString("command", "");
+        String compression = call.getString("compression");
+        
+        if (compression != null) {
+            submitCompressed(call, compression, call.getString("data", ""));
+            return;
+        }
         
         try {
-            if (!isConnected || connection == null || endpointOut == null) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
-                call.resolve(result);
-                return;
-            }
-            
-            byte[] data = command.getBytes("ISO-8859-1");
-            Log.d(TAG, "Sending " + data.length + " bytes...");
-            
-            int sent = connection.bulkTransfer(endpointOut, data, data.length, 10000);
-            
-            JSObject result = new JSObject();
-            if (sent >= 0) {
-                result.put("success", true);
-                result.put("bytesTransferred", sent);
-            } else {
-                result.put("success", false);
-                result.put("error", "bulkTransfer failed: " + sent);
-            }
-            call.resolve(result);
-            
+            submitBytes(call, command.getBytes("ISO-8859-1"), 10000);
         } catch (Exception e) {
             Log.e(TAG, "sendEscPos error: " + e.getMessage(), e);
             JSObject result = new JSObject();
@@ -600,169 +1376,590 @@ public class BematechNativePlugin extends Plugin {
         }
     }
     
-    @PluginMethod
-    public void printText(PluginCall call) {
-        String text = call.getString("text", "");
-        
-        try {
-            if (!isConnected) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
-                call.resolve(result);
-                return;
-            }
-            
-            byte[] data = (text + "\n").getBytes("ISO-8859-1");
-            int sent = connection.bulkTransfer(endpointOut, data, data.length, 5000);
-            
-            JSObject result = new JSObject();
-            result.put("success", sent >= 0);
-            if (sent < 0) result.put("error", "Transfer failed");
-            call.resolve(result);
-            
-        } catch (Exception e) {
+    /**
+     * Job com payload compactado (base64 de deflate/gzip): descompactado em
+     * blocos de 16KB direto para o transporte, na thread escritora
+     */
+    private void submitCompressed(PluginCall call, String compression, final String data) {
+        final PayloadInflater.Format format = PayloadInflater.parseFormat(compression);
+        if (format == null) {
             JSObject result = new JSObject();
             result.put("success", false);
-            result.put("error", e.getMessage());
+            result.put("error", "compression inválido: " + compression + " (deflate, deflate-raw ou gzip)");
             call.resolve(result);
+            return;
         }
+        
+        submitJob(call, -1, t -> inflateTo(t, Base64.decode(data, Base64.DEFAULT), format));
     }
     
-    @PluginMethod
-    public void printRaw(PluginCall call) {
-        sendEscPos(call);
+    /**
+     * Descompacta o payload inteiro em blocos de 16KB direto para o
+     * transporte. Só na thread escritora (writerInflater).
+     */
+    private long inflateTo(final PrinterTransport t, byte[] compressed, PayloadInflater.Format format)
+        throws IOException {
+        writerInflater.reset(format);
+        writerInflater.feed(compressed, 0, compressed.length,
+            (bytes, offset, length) -> PrinterTransport.writeFully(t, bytes, offset, length, STREAM_WRITE_TIMEOUT, trace));
+        writerInflater.finish();
+        trace.record(TraceBuffer.EV_INFLATE, compressed.length, writerInflater.getTotalOut());
+        return writerInflater.getTotalOut();
     }
     
-    @PluginMethod
-    public void printRawBema(PluginCall call) {
-        sendEscPos(call);
+    /**
+     * Blocos de um stream compactado: um único payload deflate/gzip
+     * dividido em blocos, descompactado à medida que chegam
+     */
+    private PrintStreamSession.ChunkWriter inflatingWriter(final PrinterTransport target) {
+        final PayloadInflater.Sink sink =
+            (bytes, offset, length) -> PrinterTransport.writeFully(target, bytes, offset, length, STREAM_WRITE_TIMEOUT, trace);
+        return new PrintStreamSession.ChunkWriter() {
+            private long compressed = 0;
+            
+            @Override
+            public void write(byte[] data) throws IOException {
+                compressed += data.length;
+                writerInflater.feed(data, 0, data.length, sink);
+            }
+            
+            @Override
+            public void end() throws IOException {
+                writerInflater.finish();
+                trace.record(TraceBuffer.EV_INFLATE, compressed, writerInflater.getTotalOut());
+            }
+        };
     }
     
+    // ==================== IMPRESSÃO INCREMENTAL ====================
+    
+    /**
+     * Abre uma sessão de streaming. A impressão começa no primeiro bloco
+     * recebido, sem esperar o documento completo. O consumo do stream é um
+     * job do escritor (enviado no primeiro bloco): outros prints esperam o
+     * stream fechar. Um stream aberto por vez.
+     */
     @PluginMethod
-    public void printFormatted(PluginCall call) {
-        String text = call.getString("text", "");
-        Boolean bold = call.getBoolean("bold", false);
-        String align = call.getString("align", "left");
-        String size = call.getString("size", "normal");
+    public void openPrintStream(PluginCall call) {
+        int maxPendingChunks = call.getInt("maxPendingChunks", PrintStreamSession.DEFAULT_MAX_PENDING_CHUNKS);
+        String compression = call.getString("compression");
+        final PayloadInflater.Format format = compression == null ? null : PayloadInflater.parseFormat(compression);
         
-        try {
-            if (!isConnected) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
-                call.resolve(result);
-                return;
-            }
-            
-            // Align
-            byte[] alignCmd = CMD_LEFT;
-            if ("center".equals(align)) alignCmd = CMD_CENTER;
-            else if ("right".equals(align)) alignCmd = CMD_RIGHT;
-            connection.bulkTransfer(endpointOut, alignCmd, alignCmd.length, 1000);
-            
-            // Size
-            byte[] sizeCmd = CMD_NORMAL_SIZE;
-            if ("double".equals(size) || "large".equals(size)) sizeCmd = CMD_DOUBLE_SIZE;
-            connection.bulkTransfer(endpointOut, sizeCmd, sizeCmd.length, 1000);
-            
-            // Bold
-            if (bold) connection.bulkTransfer(endpointOut, CMD_BOLD_ON, CMD_BOLD_ON.length, 1000);
-            
-            // Text
-            byte[] data = (text + "\n").getBytes("ISO-8859-1");
-            int sent = connection.bulkTransfer(endpointOut, data, data.length, 5000);
-            
-            // Reset
-            if (bold) connection.bulkTransfer(endpointOut, CMD_BOLD_OFF, CMD_BOLD_OFF.length, 1000);
-            connection.bulkTransfer(endpointOut, CMD_NORMAL_SIZE, CMD_NORMAL_SIZE.length, 1000);
-            connection.bulkTransfer(endpointOut, CMD_LEFT, CMD_LEFT.length, 1000);
-            
+        if (compression != null && format == null) {
             JSObject result = new JSObject();
-            result.put("success", sent >= 0);
+            result.put("success", false);
+            result.put("error", "compression inválido: " + compression + " (deflate, deflate-raw ou gzip)");
             call.resolve(result);
-            
-        } catch (Exception e) {
+            return;
+        }
+        
+        if (!session.isReady()) {
             JSObject result = new JSObject();
             result.put("success", false);
-            result.put("error", e.getMessage());
+            result.put("error", "Impressora não conectada");
+            call.resolve(result);
+            return;
+        }
+        
+        String activeStream = activePrintStream();
+        if (activeStream != null) {
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", "Já existe um stream aberto: " + activeStream);
             call.resolve(result);
+            return;
+        }
+        
+        int streamNumber = printStreamCounter.incrementAndGet();
+        final String streamId = "stream-" + streamNumber;
+        // Tamanho total desconhecido: progresso sem ETA; jobId = streamId
+        final JobProgress progress = new JobProgress(streamId, -1, JobProgress.DEFAULT_MIN_INTERVAL_MS, progressListener);
+        final ReprintCache.Capture capture = reprintCapture(call);
+        // Compactado: blocos em base64, bytesTransferred do close conta os bytes compactados
+        final PrintStreamSession stream = new PrintStreamSession(streamId, maxPendingChunks, format != null,
+            format != null ? inflatingWriter(progress)
+                : data -> PrinterTransport.writeFully(progress, data, 0, data.length, STREAM_WRITE_TIMEOUT, trace));
+        printStreams.put(streamId, stream);
+        
+        stream.setStarter(() -> session.submit(t -> {
+            progress.wrap(captured(capture, t));
+            if (format != null) {
+                writerInflater.reset(format);
+            }
+            stream.run(PrintStreamSession.DEFAULT_IDLE_TIMEOUT_MS);
+            return stream.getBytesWritten();
+        }, new PrinterSession.Callback() {
+            @Override
+            public void onComplete(long bytesTransferred) {
+                // Resultado entregue em closePrintStream; stream abortado não vira via
+                progress.finish(stream.getFailure());
+                if (stream.getFailure() == null) {
+                    cacheReprint(call, capture, null);
+                }
+            }
+            
+            @Override
+            public void onError(Exception error) {
+                stream.fail(error instanceof IOException ? (IOException) error : new IOException(error.getMessage()));
+                progress.finish(error);
+            }
+        }));
+        // Abortado ou expirado antes do primeiro bloco: o job não roda, mas o JS espera o printJobDone
+        stream.setCancelledBeforeStart(progress::finish);
+        trace.record(TraceBuffer.EV_STREAM_OPEN, streamNumber, maxPendingChunks);
+        
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("streamId", streamId);
+        call.resolve(result);
+    }
+    
+    /**
+     * Stream ainda em uso ou null. Descarta os que terminaram sem close e
+     * os que não receberam nenhum bloco no prazo de inatividade.
+     */
+    private String activePrintStream() {
+        Iterator<PrintStreamSession> it = printStreams.values().iterator();
+        while (it.hasNext()) {
+            PrintStreamSession stream = it.next();
+            if (stream.isIdleBeforeStart(PrintStreamSession.DEFAULT_IDLE_TIMEOUT_MS)) {
+                stream.abort();
+                it.remove();
+            } else if (stream.isDone()) {
+                it.remove();
+            } else {
+                return stream.getId();
+            }
         }
+        return null;
     }
     
+    /**
+     * Enfileira um bloco numerado. Blocos devem chegar em ordem (seq 0, 1, 2...);
+     * retransmissões de seq já aceitos são ignoradas e lacunas geram erro.
+     * Com a fila cheia a resposta só vem quando a impressora consumir um
+     * bloco anterior; um segundo bloco nesse meio tempo é recusado na hora.
+     */
     @PluginMethod
-    public void feedPaper(PluginCall call) {
-        int lines = call.getInt("lines", 3);
+    public void appendPrintChunk(PluginCall call) {
+        String streamId = call.getString("streamId", "");
+        int seq = call.getInt("seq", -1);
+        String data = call.getString("data", "");
+        
+        PrintStreamSession session = printStreams.get(streamId);
+        JSObject result = new JSObject();
+        
+        if (session == null) {
+            result.put("success", false);
+            result.put("error", "Stream não encontrado: " + streamId);
+            call.resolve(result);
+            return;
+        }
         
         try {
-            if (!isConnected) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
+            byte[] bytes = session.isBinary() ? Base64.decode(data, Base64.DEFAULT) : data.getBytes("ISO-8859-1");
+            final int length = bytes.length;
+            boolean accepted = session.append(seq, bytes, error -> {
+                JSObject done = new JSObject();
+                if (error == null) {
+                    trace.record(TraceBuffer.EV_STREAM_CHUNK, seq, length);
+                    done.put("success", true);
+                    done.put("duplicate", false);
+                } else {
+                    Log.e(TAG, "appendPrintChunk error: " + error.getMessage());
+                    done.put("success", false);
+                    done.put("error", error.getMessage());
+                }
+                done.put("nextSeq", session.getNextSeq());
+                call.resolve(done);
+            });
+            if (!accepted) {
+                result.put("success", true);
+                result.put("duplicate", true);
+                result.put("nextSeq", session.getNextSeq());
                 call.resolve(result);
-                return;
             }
-            
-            byte[] cmd = {0x1B, 0x64, (byte) lines};
-            int sent = connection.bulkTransfer(endpointOut, cmd, cmd.length, 3000);
-            
-            JSObject result = new JSObject();
-            result.put("success", sent >= 0);
-            call.resolve(result);
-            
         } catch (Exception e) {
-            JSObject result = new JSObject();
+            Log.e(TAG, "appendPrintChunk error: " + e.getMessage());
             result.put("success", false);
             result.put("error", e.getMessage());
+            result.put("nextSeq", session.getNextSeq());
             call.resolve(result);
         }
     }
     
+    /**
+     * Fecha a sessão; resolve quando a transferência termina (ou aborta na
+     * hora com abort=true)
+     */
     @PluginMethod
-    public void cutPaper(PluginCall call) {
-        Boolean partial = call.getBoolean("partial", false);
+    public void closePrintStream(PluginCall call) {
+        String streamId = call.getString("streamId", "");
+        Boolean abort = call.getBoolean("abort", false);
+        
+        PrintStreamSession session = printStreams.remove(streamId);
+        JSObject result = new JSObject();
+        
+        if (session == null) {
+            result.put("success", false);
+            result.put("error", "Stream não encontrado: " + streamId);
+            call.resolve(result);
+            return;
+        }
+        
+        if (abort) {
+            session.abort();
+            resolveStreamClose(call, session, session.getFailure(), true);
+        } else {
+            session.close(error -> resolveStreamClose(call, session, error, false));
+        }
+    }
+    
+    private void resolveStreamClose(PluginCall call, PrintStreamSession session, IOException error, boolean aborted) {
+        JSObject result = new JSObject();
+        if (aborted) {
+            result.put("aborted", true);
+        }
+        if (error == null) {
+            result.put("success", true);
+        } else {
+            Log.e(TAG, "closePrintStream error: " + error.getMessage());
+            result.put("success", false);
+            result.put("error", error.getMessage());
+        }
+        trace.record(TraceBuffer.EV_STREAM_CLOSE, session.getChunksWritten(), session.getBytesWritten());
+        result.put("bytesTransferred", session.getBytesWritten());
+        result.put("chunks", session.getChunksWritten());
+        call.resolve(result);
+    }
+    
+    // ==================== IMPRESSÃO DE ARQUIVO ====================
+    
+    /**
+     * Imprime um job que o JS gravou em arquivo no armazenamento do app
+     * (Filesystem Directory.Data/Cache/External), passando só o caminho.
+     * O arquivo é mapeado e enviado em fatias (MappedFileSource), sem
+     * atravessar o bridge nem ir inteiro para o heap.
+     *
+     * retention: 'delete' (padrão) apaga ao fim do job, 'deleteOnSuccess'
+     * mantém se falhar (para tentar de novo), 'keep' nunca apaga.
+     * compression: o arquivo é um payload deflate/gzip.
+     */
+    @PluginMethod
+    public void printFile(PluginCall call) {
+        String path = call.getString("path", "");
+        String retention = call.getString("retention", "delete");
+        String compression = call.getString("compression");
         
+        final File file;
+        final PayloadInflater.Format format = compression == null ? null : PayloadInflater.parseFormat(compression);
         try {
-            if (!isConnected) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
-                call.resolve(result);
-                return;
+            if (!"delete".equals(retention) && !"deleteOnSuccess".equals(retention) && !"keep".equals(retention)) {
+                throw new IOException("retention inválido: " + retention + " (delete, deleteOnSuccess ou keep)");
             }
-            
-            byte[] cmd = partial ? CMD_CUT_PARTIAL : CMD_CUT;
-            int sent = connection.bulkTransfer(endpointOut, cmd, cmd.length, 3000);
-            
-            JSObject result = new JSObject();
-            result.put("success", sent >= 0);
-            call.resolve(result);
-            
-        } catch (Exception e) {
+            if (compression != null && format == null) {
+                throw new IOException("compression inválido: " + compression + " (deflate, deflate-raw ou gzip)");
+            }
+            file = MappedFileSource.resolve(path,
+                new File[] {context.getFilesDir(), context.getCacheDir(),
+                    context.getExternalFilesDir(null), context.getExternalCacheDir()},
+                new File[] {new File(context.getFilesDir(), TEMPLATES_DIR),
+                    new File(context.getCacheDir(), REPRINT_SPILL_DIR)});
+        } catch (IOException e) {
+            Log.e(TAG, "printFile error: " + e.getMessage());
             JSObject result = new JSObject();
             result.put("success", false);
             result.put("error", e.getMessage());
             call.resolve(result);
+            return;
         }
+        
+        final boolean deleteOnSuccess = !"keep".equals(retention);
+        final boolean deleteOnFailure = "delete".equals(retention);
+        
+        // Compactado: tamanho final só se conhece ao descompactar
+        submitJob(call, format == null ? file.length() : -1, reprintCapture(call), t -> {
+            PayloadInflater.Sink out =
+                (bytes, offset, length) -> PrinterTransport.writeFully(t, bytes, offset, length, STREAM_WRITE_TIMEOUT, trace);
+            if (format == null) {
+                return MappedFileSource.stream(file, fileChunk, out);
+            }
+            writerInflater.reset(format);
+            long compressed = MappedFileSource.stream(file, fileChunk,
+                (bytes, offset, length) -> writerInflater.feed(bytes, offset, length, out));
+            writerInflater.finish();
+            long sent = writerInflater.getTotalOut();
+            trace.record(TraceBuffer.EV_INFLATE, compressed, sent);
+            return sent;
+        }, error -> {
+            // Também quando o job é recusado/cancelado sem chegar a rodar
+            if ((error == null ? deleteOnSuccess : deleteOnFailure) && file.exists() && !file.delete()) {
+                Log.w(TAG, "printFile: não foi possível apagar " + file.getName());
+            }
+        });
     }
     
+    // ==================== IMPRESSÃO RASTER ====================
+    
+    /**
+     * Imprime uma imagem (PNG/JPEG em base64) como raster GS v 0 (ou ESC *
+     * se o modelo não tem GS v 0), em faixas de altura fixa. Enquanto uma
+     * faixa é transferida a próxima já é processada, sem nunca montar o
+     * bitmap do cupom inteiro. Imagens mais largas que width são reduzidas;
+     * as menores só são ampliadas com fitWidth=true.
+     */
     @PluginMethod
-    public void openCashDrawer(PluginCall call) {
+    public void printImage(final PluginCall call) {
+        final PrinterProfile target = profile;
+        String data = call.getString("data", "");
+        int width = call.getInt("width", target.widthDots);
+        final int bandHeight = call.getInt("bandHeight", RasterBandEncoder.DEFAULT_BAND_HEIGHT);
+        final Boolean cut = call.getBoolean("cut", false);
+        Boolean fitWidth = call.getBoolean("fitWidth", false);
+        
+        final BitmapBandSource source;
         try {
-            if (!isConnected) {
+            source = new BitmapBandSource(Base64.decode(data, Base64.DEFAULT), width, fitWidth);
+        } catch (Exception e) {
+            Log.e(TAG, "printImage error: " + e.getMessage(), e);
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", e.getMessage());
+            call.resolve(result);
+            return;
+        }
+        
+        long totalBytes = RasterBandEncoder.imageLength(source.getWidth(), source.getHeight(), bandHeight,
+            target.rasterMode) + (cut ? target.cutCommand.length : 0);
+        final JobProgress progress = trackJob(call, totalBytes);
+        final ReprintCache.Capture capture = reprintCapture(call);
+        
+        session.submit(t -> {
+            PrinterTransport tracked = progress.wrap(captured(capture, t));
+            long sent = RasterBandEncoder.streamBands(source, source.getWidth(), source.getHeight(), bandHeight,
+                target.rasterMode,
+                chunk -> PrinterTransport.writeFully(tracked, chunk, 0, chunk.length, STREAM_WRITE_TIMEOUT, trace));
+            if (cut) {
+                byte[] cutCommand = target.cutCommand;
+                PrinterTransport.writeFully(tracked, cutCommand, 0, cutCommand.length, STREAM_WRITE_TIMEOUT, trace);
+                sent += cutCommand.length;
+            }
+            return sent;
+        }, new PrinterSession.Callback() {
+            @Override
+            public void onComplete(long bytesTransferred) {
+                source.recycle();
+                progress.finish(null);
                 JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
+                result.put("success", true);
+                result.put("jobId", progress.getJobId());
+                result.put("bytesTransferred", bytesTransferred);
+                result.put("heightDots", source.getHeight());
+                cacheReprint(call, capture, result);
                 call.resolve(result);
-                return;
             }
             
-            int sent = connection.bulkTransfer(endpointOut, CMD_DRAWER, CMD_DRAWER.length, 3000);
-            
+            @Override
+            public void onError(Exception error) {
+                source.recycle();
+                progress.finish(error);
+                Log.e(TAG, "printImage error: " + error.getMessage());
+                JSObject result = new JSObject();
+                result.put("success", false);
+                result.put("jobId", progress.getJobId());
+                result.put("error", error.getMessage());
+                call.resolve(result);
+            }
+        });
+    }
+    
+    // ==================== IMPRESSÃO EM LOTE ====================
+    
+    /**
+     * Imprime vários jobs em sequência (reimpressões de fechamento, vias de
+     * entrega) com codificação e transferência sobrepostas: o job N+1 é
+     * codificado enquanto o job N está sendo transferido.
+     *
+     * jobs: [{ type: 'raw' | 'text' | 'image' | 'nvLogo' | 'layout', data, rows?, cut?, width?, bandHeight? }]
+     */
+    @PluginMethod
+    public void printBatch(final PluginCall call) {
+        JSArray jobs = call.getArray("jobs");
+        int queueDepth = call.getInt("queueDepth", PrintPipeline.DEFAULT_QUEUE_DEPTH);
+        
+        if (jobs == null || jobs.length() == 0) {
             JSObject result = new JSObject();
-            result.put("success", sent >= 0);
+            result.put("success", false);
+            result.put("error", "Nenhum job informado");
             call.resolve(result);
+            return;
+        }
+        
+        List<PrintPipeline.Encoder> encoders = new ArrayList<>(jobs.length());
+        for (int i = 0; i < jobs.length(); i++) {
+            encoders.add(batchEncoder(jobs.optJSONObject(i)));
+        }
+        
+        final PrintPipeline pipeline = new PrintPipeline(encoders, queueDepth);
+        final JSArray results = new JSArray();
+        // Tamanho total só se conhece após codificar: progresso sem ETA
+        final JobProgress progress = trackJob(call, -1);
+        final ReprintCache.Capture capture = reprintCapture(call);
+        // Codificação começa já, mesmo com outros jobs ainda na fila do escritor
+        pipeline.start();
+        
+        session.submit(t -> pipeline.transfer(progress.wrap(captured(capture, t)), STREAM_WRITE_TIMEOUT, trace, (index, bytes, error) -> {
+            JSObject entry = new JSObject();
+            entry.put("index", index);
+            entry.put("success", error == null);
+            if (error == null) {
+                entry.put("bytesTransferred", bytes);
+            } else {
+                entry.put("error", error.getMessage());
+            }
+            results.put(entry);
+        }), new PrinterSession.Callback() {
+            @Override
+            public void onComplete(long bytesTransferred) {
+                progress.finish(pipeline.getFailed() == 0 ? null
+                    : new IOException(pipeline.getFailed() + " jobs do lote falharam"));
+                JSObject result = batchResult(pipeline, results);
+                result.put("jobId", progress.getJobId());
+                result.put("success", pipeline.getFailed() == 0);
+                result.put("bytesTransferred", bytesTransferred);
+                // Lote com falha não vira via: reimprimiria só parte dele
+                if (pipeline.getFailed() == 0) {
+                    cacheReprint(call, capture, result);
+                }
+                call.resolve(result);
+            }
             
+            @Override
+            public void onError(Exception error) {
+                pipeline.cancel();
+                progress.finish(error);
+                Log.e(TAG, "printBatch error: " + error.getMessage());
+                JSObject result = batchResult(pipeline, results);
+                result.put("jobId", progress.getJobId());
+                result.put("success", false);
+                result.put("error", error.getMessage());
+                call.resolve(result);
+            }
+        });
+    }
+    
+    private JSObject batchResult(PrintPipeline pipeline, JSArray results) {
+        JSObject result = new JSObject();
+        result.put("jobs", results);
+        result.put("succeeded", pipeline.getSucceeded());
+        result.put("failed", pipeline.getFailed());
+        result.put("elapsedMs", pipeline.getElapsedMillis());
+        result.put("encodeMs", pipeline.getEncodeMillis());
+        result.put("transferMs", pipeline.getTransferMillis());
+        result.put("jobsPerMinute", pipeline.getJobsPerMinute());
+        return result;
+    }
+    
+    /**
+     * Monta o codificador de um job do lote. A decodificação (base64,
+     * raster) só acontece na thread de codificação. Usa o perfil ativo
+     * no momento da chamada (largura, modo raster, corte, logo NV).
+     */
+    private PrintPipeline.Encoder batchEncoder(JSONObject job) {
+        final PrinterProfile target = profile;
+        final String type = job == null ? "" : job.optString("type", "raw");
+        final String data = job == null ? "" : job.optString("data", "");
+        final boolean cut = job != null && job.optBoolean("cut", false);
+        final String compression = job == null ? null : job.optString("compression", null);
+        
+        switch (type) {
+            case "raw":
+            case "text":
+                final boolean newline = "text".equals(type);
+                if (compression != null) {
+                    // data: base64 do deflate/gzip. A fila guarda o job compactado; a
+                    // descompactação vai em blocos direto para o transporte (thread escritora)
+                    return (PrintPipeline.StreamedEncoder) () -> {
+                        final PayloadInflater.Format format = PayloadInflater.parseFormat(compression);
+                        if (format == null) {
+                            throw new IllegalArgumentException("compression inválido: " + compression);
+                        }
+                        final byte[] compressed = Base64.decode(data, Base64.DEFAULT);
+                        EscPosBuffer tail = new EscPosBuffer(1 + target.cutCommand.length);
+                        if (newline) {
+                            tail.write('\n');
+                        }
+                        final byte[] suffix = finishBatchJob(tail, cut, target);
+                        return t -> {
+                            long inflated = inflateTo(t, compressed, format);
+                            PrinterTransport.writeFully(t, suffix, 0, suffix.length, STREAM_WRITE_TIMEOUT, trace);
+                            return inflated + suffix.length;
+                        };
+                    };
+                }
+                return () -> {
+                    EscPosBuffer out = new EscPosBuffer(data.length() + 1 + target.cutCommand.length);
+                    out.writeLatin1(data);
+                    if (newline) {
+                        out.write('\n');
+                    }
+                    return finishBatchJob(out, cut, target);
+                };
+            case "image":
+                final int width = job.optInt("width", target.widthDots);
+                final int bandHeight = job.optInt("bandHeight", RasterBandEncoder.DEFAULT_BAND_HEIGHT);
+                final boolean fitWidth = job.optBoolean("fitWidth", false);
+                return () -> {
+                    BitmapBandSource source = new BitmapBandSource(Base64.decode(data, Base64.DEFAULT), width,
+                        fitWidth);
+                    try {
+                        EscPosBuffer out = new EscPosBuffer((int) RasterBandEncoder.imageLength(
+                            source.getWidth(), source.getHeight(), bandHeight, target.rasterMode) + 64);
+                        RasterBandEncoder.encodeAll(source, source.getWidth(), source.getHeight(), bandHeight,
+                            target.rasterMode, out);
+                        return finishBatchJob(out, cut, target);
+                    } finally {
+                        source.recycle();
+                    }
+                };
+            case "layout":
+                final JSONArray rows = job.optJSONArray("rows");
+                final int columns = job.optInt("columns", target.columns);
+                return () -> finishBatchJob(encodeLayout(rows, columns), cut, target);
+            case "nvLogo":
+                // Logo gravado na memória NV da impressora: 4 bytes em vez do raster
+                return () -> {
+                    if (!target.nvLogo) {
+                        throw new IllegalArgumentException("Logo NV não suportado pelo perfil " + target.id);
+                    }
+                    int key = Integer.parseInt(data.trim());
+                    if (key < 1 || key > 255) {
+                        throw new IllegalArgumentException("Logo NV inválido: " + data);
+                    }
+                    EscPosBuffer out = new EscPosBuffer(8 + target.cutCommand.length);
+                    out.write(new byte[] {0x1C, 0x70, (byte) key, 0x00});
+                    return finishBatchJob(out, cut, target);
+                };
+            default:
+                return () -> {
+                    throw new IllegalArgumentException("Tipo de job desconhecido: " + type);
+                };
+        }
+    }
+    
+    private static byte[] finishBatchJob(EscPosBuffer out, boolean cut, PrinterProfile target) {
+        if (cut) {
+            out.write(target.cutCommand);
+        }
+        return out.toByteArray();
+    }
+    
+    @PluginMethod
+    public void printText(PluginCall call) {
+        String text = call.getString("text", "");
+        
+        try {
+            submitBytes(call, (text + "\n").getBytes("ISO-8859-1"), 5000);
         } catch (Exception e) {
             JSObject result = new JSObject();
             result.put("success", false);
@@ -772,59 +1969,153 @@ public class BematechNativePlugin extends Plugin {
     }
     
     @PluginMethod
-    public void testPrint(PluginCall call) {
-        try {
-            if (!isConnected) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
-                call.resolve(result);
-                return;
-            }
-            
-            // Init
-            connection.bulkTransfer(endpointOut, CMD_INIT, CMD_INIT.length, 1000);
-            
-            // Header
-            connection.bulkTransfer(endpointOut, CMD_CENTER, CMD_CENTER.length, 1000);
-            connection.bulkTransfer(endpointOut, CMD_BOLD_ON, CMD_BOLD_ON.length, 1000);
-            byte[] header = "=== TESTE DE IMPRESSAO ===\n".getBytes("ISO-8859-1");
-            connection.bulkTransfer(endpointOut, header, header.length, 3000);
-            connection.bulkTransfer(endpointOut, CMD_BOLD_OFF, CMD_BOLD_OFF.length, 1000);
-            
-            // Info
-            connection.bulkTransfer(endpointOut, CMD_LEFT, CMD_LEFT.length, 1000);
-            String info = "Impressora: " + getVendorName(connectedDevice.getVendorId()) + "\n";
-            info += "VID: 0x" + Integer.toHexString(connectedDevice.getVendorId()) + "\n";
-            info += "PID: 0x" + Integer.toHexString(connectedDevice.getProductId()) + "\n";
-            info += "ClaimInterface: OK\n";
-            info += "Status: CONECTADA\n";
-            byte[] infoData = info.getBytes("ISO-8859-1");
-            connection.bulkTransfer(endpointOut, infoData, infoData.length, 3000);
-            
-            // Footer
-            connection.bulkTransfer(endpointOut, CMD_CENTER, CMD_CENTER.length, 1000);
-            byte[] footer = "\n=========================\n\n\n".getBytes("ISO-8859-1");
-            connection.bulkTransfer(endpointOut, footer, footer.length, 3000);
-            
-            // Cut
-            connection.bulkTransfer(endpointOut, CMD_CUT, CMD_CUT.length, 1000);
-            
-            JSObject result = new JSObject();
-            result.put("success", true);
-            call.resolve(result);
-            
-        } catch (Exception e) {
+    public void printRaw(PluginCall call) {
+        sendEscPos(call);
+    }
+    
+    @PluginMethod
+    public void printRawBema(PluginCall call) {
+        sendEscPos(call);
+    }
+    
+    /**
+     * Documento em linhas lógicas (chave/valor, tabelas, parágrafos),
+     * diagramado no nativo pelas colunas da impressora conectada
+     * (ver TextLayoutEngine). A diagramação roda no escritor.
+     */
+    @PluginMethod
+    public void printLayout(PluginCall call) {
+        final PrinterProfile target = profile;
+        final JSArray rows = call.getArray("rows");
+        final int columns = call.getInt("columns", target.columns);
+        final boolean cut = call.getBoolean("cut", false);
+        
+        if (rows == null || rows.length() == 0) {
             JSObject result = new JSObject();
             result.put("success", false);
-            result.put("error", e.getMessage());
+            result.put("error", "Nenhuma linha informada");
             call.resolve(result);
+            return;
+        }
+        
+        submitJob(call, -1, t -> {
+            byte[] data = finishBatchJob(encodeLayout(rows, columns), cut, target);
+            t.setTotalBytes(data.length);
+            PrinterTransport.writeFully(t, data, 0, data.length, STREAM_WRITE_TIMEOUT, trace);
+            return data.length;
+        });
+    }
+    
+    private static EscPosBuffer encodeLayout(JSONArray rows, int columns) throws IOException {
+        if (rows == null) {
+            throw new IllegalArgumentException("Layout sem linhas (rows)");
+        }
+        EscPosBuffer out = new EscPosBuffer(rows.length() * (columns + 8) + 16);
+        try {
+            new TextLayoutEngine(out, columns).rows(rows);
+        } catch (JSONException e) {
+            throw new IOException("Layout inválido: " + e.getMessage(), e);
+        }
+        return out;
+    }
+    
+    @PluginMethod
+    public void printFormatted(PluginCall call) {
+        String text = call.getString("text", "");
+        Boolean bold = call.getBoolean("bold", false);
+        String align = call.getString("align", "left");
+        String size = call.getString("size", "normal");
+        
+        EscPosBuffer out = new EscPosBuffer(text.length() + 32);
+        
+        // Align
+        byte[] alignCmd = CMD_LEFT;
+        if ("center".equals(align)) alignCmd = CMD_CENTER;
+        else if ("right".equals(align)) alignCmd = CMD_RIGHT;
+        out.write(alignCmd);
+        
+        // Size
+        byte[] sizeCmd = CMD_NORMAL_SIZE;
+        if ("double".equals(size) || "large".equals(size)) sizeCmd = CMD_DOUBLE_SIZE;
+        out.write(sizeCmd);
+        
+        // Bold
+        if (bold) out.write(CMD_BOLD_ON);
+        
+        // Text
+        out.writeLatin1(text);
+        out.write('\n');
+        
+        // Reset
+        if (bold) out.write(CMD_BOLD_OFF);
+        out.write(CMD_NORMAL_SIZE);
+        out.write(CMD_LEFT);
+        
+        submitBytes(call, out.toByteArray(), 5000);
+    }
+    
+    @PluginMethod
+    public void feedPaper(PluginCall call) {
+        int lines = call.getInt("lines", 3);
+        
+        byte[] cmd = {0x1B, 0x64, (byte) lines};
+        submitBytes(call, cmd, 3000);
+    }
+    
+    @PluginMethod
+    public void cutPaper(PluginCall call) {
+        Boolean partial = call.getBoolean("partial", false);
+        
+        PrinterProfile target = profile;
+        byte[] cmd = partial ? target.partialCutCommand : target.cutCommand;
+        submitBytes(call, cmd, 3000);
+    }
+    
+    @PluginMethod
+    public void openCashDrawer(PluginCall call) {
+        submitBytes(call, CMD_DRAWER, 3000);
+    }
+    
+    @PluginMethod
+    public void testPrint(PluginCall call) {
+        UsbLink link = usbLink.get();
+        EscPosBuffer out = new EscPosBuffer(256);
+        
+        // Init
+        out.write(CMD_INIT);
+        
+        // Header
+        out.write(CMD_CENTER);
+        out.write(CMD_BOLD_ON);
+        out.writeLatin1("=== TESTE DE IMPRESSAO ===\n");
+        out.write(CMD_BOLD_OFF);
+        
+        // Info
+        out.write(CMD_LEFT);
+        String info = "";
+        if (link != null) {
+            info = "Impressora: " + profile.displayName(link.device.getVendorId()) + "\n";
+            info += "VID: 0x" + Integer.toHexString(link.device.getVendorId()) + "\n";
+            info += "PID: 0x" + Integer.toHexString(link.device.getProductId()) + "\n";
+            info += "ClaimInterface: OK\n";
         }
+        info += "Status: CONECTADA\n";
+        out.writeLatin1(info);
+        
+        // Footer
+        out.write(CMD_CENTER);
+        out.writeLatin1("\n=========================\n\n\n");
+        
+        // Cut
+        out.write(profile.cutCommand);
+        
+        submitBytes(call, out.toByteArray(), 5000);
     }
     
     @PluginMethod
     public void disconnect(PluginCall call) {
-        cleanupConnection();
+        trace.record(TraceBuffer.EV_DISCONNECT, 0, 0);
+        cleanupConnection(DRAIN_TIMEOUT);
         
         JSObject result = new JSObject();
         result.put("success", true);
@@ -834,22 +2125,27 @@ public class BematechNativePlugin extends Plugin {
     @PluginMethod
     public void isConnected(PluginCall call) {
         JSObject result = new JSObject();
-        result.put("connected", isConnected && connection != null);
+        result.put("connected", session.isReady());
+        result.put("state", session.getState().name());
         call.resolve(result);
     }
     
     @PluginMethod
     public void getPrinterInfo(PluginCall call) {
         JSObject result = new JSObject();
+        UsbLink link = usbLink.get();
+        boolean ready = session.isReady();
         
-        if (isConnected && connectedDevice != null) {
+        if (ready && link != null) {
             result.put("connected", true);
-            result.put("model", getVendorName(connectedDevice.getVendorId()));
-            result.put("vendorId", connectedDevice.getVendorId());
-            result.put("productId", connectedDevice.getProductId());
-            result.put("deviceName", connectedDevice.getDeviceName());
-            result.put("serialNumber", connectedDevice.getSerialNumber());
+            result.put("model", profile.displayName(link.device.getVendorId()));
+            result.put("profile", profile.id);
+            result.put("vendorId", link.device.getVendorId());
+            result.put("productId", link.device.getProductId());
+            result.put("deviceName", link.device.getDeviceName());
+            result.put("serialNumber", link.device.getSerialNumber());
             result.put("firmwareVersion", "ClaimInterface FIX v3");
+            putSerialInfo(result, link);
         } else {
             result.put("connected", false);
             result.put("model", "Disconnected");
@@ -858,48 +2154,42 @@ public class BematechNativePlugin extends Plugin {
         call.resolve(result);
     }
     
+    /**
+     * Código de barras via BarcodeEncoder: CODE128 com troca ótima de
+     * subconjunto, EAN-13/EAN-8/UPC-A/ITF com dígito verificador e CODE39
+     */
     @PluginMethod
     public void printBarcode(PluginCall call) {
         String data = call.getString("data", "");
+        String type = call.getString("type", "CODE128");
         int height = call.getInt("height", 80);
+        int width = call.getInt("width", 2);
+        Boolean checkDigit = call.getBoolean("checkDigit", false);
         
+        BarcodeEncoder.Symbology symbology;
+        byte[] payload;
         try {
-            if (!isConnected) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
-                call.resolve(result);
-                return;
-            }
-            
-            // Barcode height
-            byte[] setHeight = {0x1D, 0x68, (byte) height};
-            connection.bulkTransfer(endpointOut, setHeight, setHeight.length, 1000);
-            
-            // Barcode width
-            byte[] setWidth = {0x1D, 0x77, 0x02};
-            connection.bulkTransfer(endpointOut, setWidth, setWidth.length, 1000);
-            
-            // Print CODE128
-            byte[] barcodeCmd = new byte[4 + data.length()];
-            barcodeCmd[0] = 0x1D;
-            barcodeCmd[1] = 0x6B;
-            barcodeCmd[2] = 73; // CODE128
-            barcodeCmd[3] = (byte) data.length();
-            System.arraycopy(data.getBytes(), 0, barcodeCmd, 4, data.length());
-            
-            int sent = connection.bulkTransfer(endpointOut, barcodeCmd, barcodeCmd.length, 5000);
-            
-            JSObject result = new JSObject();
-            result.put("success", sent >= 0);
-            call.resolve(result);
-            
-        } catch (Exception e) {
+            symbology = BarcodeEncoder.parseType(type);
+            payload = BarcodeEncoder.encode(symbology, data, checkDigit);
+        } catch (IllegalArgumentException e) {
             JSObject result = new JSObject();
             result.put("success", false);
             result.put("error", e.getMessage());
             call.resolve(result);
+            return;
         }
+        
+        EscPosBuffer out = new EscPosBuffer(payload.length + 16);
+        
+        // Barcode height (1-255 dots)
+        out.write(new byte[] {0x1D, 0x68, (byte) Math.max(1, Math.min(255, height))});
+        
+        // Barcode module width (2-6)
+        out.write(new byte[] {0x1D, 0x77, (byte) Math.max(2, Math.min(6, width))});
+        
+        BarcodeEncoder.writeCommand(out, symbology, payload);
+        
+        submitBytes(call, out.toByteArray(), 5000);
     }
     
     @PluginMethod
@@ -907,49 +2197,37 @@ public class BematechNativePlugin extends Plugin {
         String data = call.getString("data", "");
         int size = call.getInt("size", 6);
         
+        PrinterProfile target = profile;
+        if (!target.nativeQr) {
+            JSObject result = new JSObject();
+            result.put("success", false);
+            result.put("error", "QR nativo (GS ( k) não suportado pelo perfil " + target.id + ": imprima o QR como imagem");
+            call.resolve(result);
+            return;
+        }
+        
         try {
-            if (!isConnected) {
-                JSObject result = new JSObject();
-                result.put("success", false);
-                result.put("error", "Impressora não conectada");
-                call.resolve(result);
-                return;
-            }
+            EscPosBuffer out = new EscPosBuffer(data.length() + 48);
             
             // QR Code model
-            byte[] setModel = {0x1D, 0x28, 0x6B, 0x04, 0x00, 0x31, 0x41, 0x32, 0x00};
-            connection.bulkTransfer(endpointOut, setModel, setModel.length, 1000);
+            out.write(new byte[] {0x1D, 0x28, 0x6B, 0x04, 0x00, 0x31, 0x41, 0x32, 0x00});
             
             // QR Code size
-            byte[] setSize = {0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x43, (byte) size};
-            connection.bulkTransfer(endpointOut, setSize, setSize.length, 1000);
+            out.write(new byte[] {0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x43, (byte) size});
             
             // QR Code error correction
-            byte[] setError = {0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x45, 0x31};
-            connection.bulkTransfer(endpointOut, setError, setError.length, 1000);
+            out.write(new byte[] {0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x45, 0x31});
             
             // Store data
             byte[] dataBytes = data.getBytes("ISO-8859-1");
             int len = dataBytes.length + 3;
-            byte[] storeData = new byte[8 + dataBytes.length];
-            storeData[0] = 0x1D;
-            storeData[1] = 0x28;
-            storeData[2] = 0x6B;
-            storeData[3] = (byte) (len & 0xFF);
-            storeData[4] = (byte) ((len >> 8) & 0xFF);
-            storeData[5] = 0x31;
-            storeData[6] = 0x50;
-            storeData[7] = 0x30;
-            System.arraycopy(dataBytes, 0, storeData, 8, dataBytes.length);
-            connection.bulkTransfer(endpointOut, storeData, storeData.length, 3000);
+            out.write(new byte[] {0x1D, 0x28, 0x6B, (byte) (len & 0xFF), (byte) ((len >> 8) & 0xFF), 0x31, 0x50, 0x30});
+            out.write(dataBytes);
             
             // Print QR Code
-            byte[] printQr = {0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x51, 0x30};
-            int sent = connection.bulkTransfer(endpointOut, printQr, printQr.length, 3000);
+            out.write(new byte[] {0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x51, 0x30});
             
-            JSObject result = new JSObject();
-            result.put("success", sent >= 0);
-            call.resolve(result);
+            submitBytes(call, out.toByteArray(), 3000);
             
         } catch (Exception e) {
             JSObject result = new JSObject();
@@ -959,6 +2237,36 @@ public class BematechNativePlugin extends Plugin {
         }
     }
     
+    /**
+     * Decodifica o trace de conexão/transferência para diagnóstico post-mortem
+     */
+    @PluginMethod
+    public void dumpTrace(PluginCall call) {
+        Boolean clear = call.getBoolean("clear", false);
+        
+        final JSArray events = new JSArray();
+        trace.forEach((seq, timeMillis, event, a, b) -> {
+            JSObject entry = new JSObject();
+            entry.put("seq", seq);
+            entry.put("time", timeMillis);
+            entry.put("event", event);
+            entry.put("a", a);
+            entry.put("b", b);
+            events.put(entry);
+        });
+        
+        JSObject result = new JSObject();
+        result.put("success", true);
+        result.put("events", events);
+        result.put("totalRecorded", trace.totalRecorded());
+        result.put("capacity", trace.capacity());
+        
+        if (clear) {
+            trace.clear();
+        }
+        call.resolve(result);
+    }
+    
     @PluginMethod
     public void addListener(PluginCall call) {
         super.addListener(call);
@@ -981,7 +2289,15 @@ public class BematechNativePlugin extends Plugin {
         } catch (Exception e) {
             Log.w(TAG, "Error unregistering receiver: " + e.getMessage());
         }
-        cleanupConnection();
+        // Fora da main thread, depois de qualquer detach/reconexão pendente
+        connectExecutor.execute(() -> {
+            cleanupConnection(DETACH_DRAIN_TIMEOUT);
+            session.shutdown();
+            if (reprints != null) {
+                reprints.clear();
+            }
+        });
+        connectExecutor.shutdown();
         super.handleOnDestroy();
     }
 }
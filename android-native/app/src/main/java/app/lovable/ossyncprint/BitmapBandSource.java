@@ -0,0 +1,126 @@
+package app.lovable.ossyncprint;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+import java.io.IOException;
+
+/**
+ * Lê a imagem faixa a faixa com BitmapRegionDecoder, reduzindo para a
+ * largura da impressora. Só a região da faixa atual fica em memória.
+ *
+ * Os dois bitmaps (região decodificada e faixa escalada) são alocados uma
+ * vez e reaproveitados em todas as faixas (inBitmap / Canvas), sem um
+ * par de Bitmaps novos por faixa para o GC recolher.
+ */
+final class BitmapBandSource implements RasterBandEncoder.BandSource {
+
+    private final BitmapRegionDecoder decoder;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int width;
+    private final int height;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final Rect region = new Rect(0, 0, 0, 0);
+    private final Rect src = new Rect(0, 0, 0, 0);
+    private final Rect dst = new Rect(0, 0, 0, 0);
+    // SRC: a faixa anterior não aparece por baixo de pixels transparentes
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private Bitmap part;
+    private Bitmap scaled;
+    private Canvas canvas;
+
+    /**
+     * @param maxWidth largura da impressora: imagens maiores são reduzidas
+     * @param fitWidth também amplia imagens menores até maxWidth
+     */
+    BitmapBandSource(byte[] encodedImage, int maxWidth, boolean fitWidth) throws IOException {
+        decoder = BitmapRegionDecoder.newInstance(encodedImage, 0, encodedImage.length, false);
+        if (decoder == null) {
+            throw new IOException("Formato de imagem não suportado");
+        }
+        sourceWidth = decoder.getWidth();
+        sourceHeight = decoder.getHeight();
+        width = Math.max(1, fitWidth ? maxWidth : Math.min(sourceWidth, maxWidth));
+        height = Math.max(1, (int) ((long) sourceHeight * width / sourceWidth));
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void readRows(int y, int rows, int[] argb) throws IOException {
+        int top = (int) ((long) y * sourceHeight / height);
+        int bottom = (int) Math.min(sourceHeight, ((long) (y + rows) * sourceHeight + height - 1) / height);
+        if (bottom <= top) {
+            bottom = Math.min(sourceHeight, top + 1);
+        }
+        int regionRows = bottom - top;
+
+        // O decoder desenha no inBitmap sem mudar o tamanho dele: só as
+        // primeiras regionRows linhas valem nesta faixa. Alocado já com a
+        // maior região possível para a altura de faixa (arredondamentos)
+        if (part == null || part.getHeight() < regionRows) {
+            if (part != null) {
+                part.recycle();
+            }
+            int maxRows = Math.min(sourceHeight, (int) ((long) rows * sourceHeight / height) + 2);
+            part = Bitmap.createBitmap(sourceWidth, Math.max(regionRows, maxRows), Bitmap.Config.ARGB_8888);
+        }
+        region.set(0, top, sourceWidth, bottom);
+        options.inBitmap = part;
+        Bitmap decoded = decoder.decodeRegion(region, options);
+        if (decoded == null) {
+            throw new IOException("Falha ao decodificar faixa " + y);
+        }
+        if (decoded != part) {
+            // Reaproveitamento recusado pelo decoder: segue com o novo
+            part.recycle();
+            part = decoded;
+        }
+
+        if (width == sourceWidth && regionRows == rows) {
+            part.getPixels(argb, 0, width, 0, 0, width, rows);
+            return;
+        }
+
+        if (scaled == null || scaled.getHeight() < rows) {
+            if (scaled != null) {
+                scaled.recycle();
+            }
+            scaled = Bitmap.createBitmap(width, rows, Bitmap.Config.ARGB_8888);
+            canvas = new Canvas(scaled);
+        }
+        src.set(0, 0, sourceWidth, regionRows);
+        dst.set(0, 0, width, rows);
+        canvas.drawBitmap(part, src, dst, paint);
+        scaled.getPixels(argb, 0, width, 0, 0, width, rows);
+    }
+
+    void recycle() {
+        if (part != null) {
+            part.recycle();
+            part = null;
+        }
+        if (scaled != null) {
+            scaled.recycle();
+            scaled = null;
+            canvas = null;
+        }
+        decoder.recycle();
+    }
+}
@@ -0,0 +1,68 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+
+/**
+ * Conversor USB CDC-ACM (classe 2, subclasse 2): requisições de classe
+ * SET_LINE_CODING e SET_CONTROL_LINE_STATE na interface de comunicação
+ *
+ * O CDC-ACM não expõe CTS de forma síncrona (só por notificação no
+ * endpoint de interrupção, que muitos conversores nem mandam): com RTS/CTS
+ * o handshake fica com o conversor, e o NAK USB segura o host.
+ */
+final class CdcAcmSerialTransport extends UsbSerialTransport {
+
+    private static final int REQTYPE_CLASS_INTERFACE_OUT = 0x21;
+
+    static final int SET_LINE_CODING = 0x20;
+    static final int SET_CONTROL_LINE_STATE = 0x22;
+
+    static final int CONTROL_DTR = 0x01;
+    static final int CONTROL_RTS = 0x02;
+
+    private final int controlInterface;
+
+    CdcAcmSerialTransport(SerialChannel channel, LineConfig config, int chunkSize, int controlInterface) {
+        super(channel, config, chunkSize);
+        this.controlInterface = controlInterface;
+    }
+
+    @Override
+    Kind kind() {
+        return Kind.CDC_ACM;
+    }
+
+    @Override
+    protected void configure() throws IOException {
+        byte[] coding = lineCoding(config);
+        control(REQTYPE_CLASS_INTERFACE_OUT, SET_LINE_CODING, 0, controlInterface, coding, coding.length);
+    }
+
+    @Override
+    protected void setControlLines(boolean dtr, boolean rts) throws IOException {
+        int value = (dtr ? CONTROL_DTR : 0) | (rts ? CONTROL_RTS : 0);
+        control(REQTYPE_CLASS_INTERFACE_OUT, SET_CONTROL_LINE_STATE, value, controlInterface, null, 0);
+    }
+
+    @Override
+    protected Boolean clearToSend() {
+        return null;
+    }
+
+    /**
+     * dwDTERate (little endian), bCharFormat (0 = 1, 2 = 2 stop bits),
+     * bParityType, bDataBits
+     */
+    static byte[] lineCoding(LineConfig config) throws IOException {
+        if (config.baudRate <= 0) {
+            throw new IOException("Velocidade inválida: " + config.baudRate);
+        }
+        int rate = config.baudRate;
+        return new byte[] {
+            (byte) rate, (byte) (rate >> 8), (byte) (rate >> 16), (byte) (rate >> 24),
+            (byte) (config.stopBits == 2 ? 2 : 0),
+            (byte) config.parity,
+            (byte) config.dataBits
+        };
+    }
+}
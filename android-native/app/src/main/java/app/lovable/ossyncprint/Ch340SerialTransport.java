@@ -0,0 +1,129 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+
+/**
+ * Conversor QinHeng CH340/CH341 (requisições de fabricante)
+ *
+ * Mesma sequência do driver ch341 do Linux: lê a versão, 0xA1 inicializa
+ * a UART, 0x9A escreve os registradores de velocidade (prescaler/divisor
+ * 0x1312 e 0x0F2C) e de formato (LCR 0x2518), 0xA4 controla DTR/RTS e
+ * 0x95 lê as linhas de modem (ativas em nível baixo).
+ */
+final class Ch340SerialTransport extends UsbSerialTransport {
+
+    private static final int REQTYPE_OUT = 0x40;
+    private static final int REQTYPE_IN = 0xC0;
+
+    static final int REQ_READ_VERSION = 0x5F;
+    static final int REQ_READ_REG = 0x95;
+    static final int REQ_WRITE_REG = 0x9A;
+    static final int REQ_SERIAL_INIT = 0xA1;
+    static final int REQ_MODEM_CTRL = 0xA4;
+
+    static final int REG_PRESCALER_DIVISOR = 0x1312;
+    static final int REG_FACTOR_LOW = 0x0F2C;
+    static final int REG_LCR = 0x2518;
+    static final int REG_MODEM_STATUS = 0x0706;
+
+    static final int LCR_ENABLE_RX = 0x80;
+    static final int LCR_ENABLE_TX = 0x40;
+    static final int LCR_MARK_SPACE = 0x20;
+    static final int LCR_PAR_EVEN = 0x10;
+    static final int LCR_ENABLE_PAR = 0x08;
+    static final int LCR_STOP_BITS_2 = 0x04;
+
+    static final int MODEM_DTR = 0x20;
+    static final int MODEM_RTS = 0x40;
+    static final int STATUS_CTS = 0x01;
+
+    // Clock base do CH340 dividido pelo prescaler mínimo
+    private static final long BAUD_CLOCK = 1532620800L;
+
+    private final byte[] status = new byte[2];
+
+    Ch340SerialTransport(SerialChannel channel, LineConfig config, int chunkSize) {
+        super(channel, config, chunkSize);
+    }
+
+    @Override
+    Kind kind() {
+        return Kind.CH340;
+    }
+
+    @Override
+    protected void configure() throws IOException {
+        control(REQTYPE_IN, REQ_READ_VERSION, 0, 0, new byte[2], 2);
+        control(REQTYPE_OUT, REQ_SERIAL_INIT, 0, 0, null, 0);
+
+        int[] baud = baudRegisters(config.baudRate);
+        control(REQTYPE_OUT, REQ_WRITE_REG, REG_PRESCALER_DIVISOR, baud[0], null, 0);
+        control(REQTYPE_OUT, REQ_WRITE_REG, REG_FACTOR_LOW, baud[1], null, 0);
+        control(REQTYPE_OUT, REQ_WRITE_REG, REG_LCR, lcr(config), null, 0);
+    }
+
+    @Override
+    protected void setControlLines(boolean dtr, boolean rts) throws IOException {
+        int lines = (dtr ? MODEM_DTR : 0) | (rts ? MODEM_RTS : 0);
+        control(REQTYPE_OUT, REQ_MODEM_CTRL, ~lines & 0xFFFF, 0, null, 0);
+    }
+
+    @Override
+    protected Boolean clearToSend() throws IOException {
+        control(REQTYPE_IN, REQ_READ_REG, REG_MODEM_STATUS, 0, status, status.length);
+        return (status[0] & STATUS_CTS) == 0;
+    }
+
+    /**
+     * {prescaler/divisor | fator alto, fator baixo} para os registradores
+     * 0x1312 e 0x0F2C
+     */
+    static int[] baudRegisters(int baudRate) throws IOException {
+        if (baudRate <= 0) {
+            throw new IOException("Velocidade inválida: " + baudRate);
+        }
+        long factor = BAUD_CLOCK / baudRate;
+        int divisor = 3;
+        while (factor > 0xFFF0 && divisor > 0) {
+            factor >>= 3;
+            divisor--;
+        }
+        if (factor > 0xFFF0) {
+            throw new IOException("Velocidade não suportada pelo CH340: " + baudRate);
+        }
+        factor = 0x10000 - factor;
+        // Bit 7: envia sem esperar o buffer interno encher
+        divisor |= 0x80;
+        return new int[] {(int) ((factor & 0xFF00) | divisor), (int) (factor & 0xFF)};
+    }
+
+    static int lcr(LineConfig config) throws IOException {
+        int lcr = LCR_ENABLE_RX | LCR_ENABLE_TX;
+        if (config.dataBits < 5 || config.dataBits > 8) {
+            throw new IOException("Bits de dados não suportados: " + config.dataBits);
+        }
+        lcr |= config.dataBits - 5;
+        switch (config.parity) {
+            case LineConfig.PARITY_NONE:
+                break;
+            case LineConfig.PARITY_ODD:
+                lcr |= LCR_ENABLE_PAR;
+                break;
+            case LineConfig.PARITY_EVEN:
+                lcr |= LCR_ENABLE_PAR | LCR_PAR_EVEN;
+                break;
+            case LineConfig.PARITY_MARK:
+                lcr |= LCR_ENABLE_PAR | LCR_MARK_SPACE;
+                break;
+            case LineConfig.PARITY_SPACE:
+                lcr |= LCR_ENABLE_PAR | LCR_MARK_SPACE | LCR_PAR_EVEN;
+                break;
+            default:
+                throw new IOException("Paridade não suportada: " + config.parity);
+        }
+        if (config.stopBits == 2) {
+            lcr |= LCR_STOP_BITS_2;
+        }
+        return lcr;
+    }
+}
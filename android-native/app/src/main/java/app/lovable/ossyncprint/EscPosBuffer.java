@@ -0,0 +1,80 @@
+package app.lovable.ossyncprint;
+
+import java.util.Arrays;
+
+/**
+ * Buffer de saída ESC/POS crescente
+ *
+ * Os métodos de impressão montam o job inteiro aqui e o submetem de uma
+ * vez ao PrinterSession, em vez de fazer vários bulkTransfer pequenos
+ * que poderiam se intercalar com outro job.
+ */
+final class EscPosBuffer {
+
+    private byte[] data;
+    private int size;
+
+    EscPosBuffer() {
+        this(256);
+    }
+
+    EscPosBuffer(int initialCapacity) {
+        data = new byte[Math.max(16, initialCapacity)];
+    }
+
+    EscPosBuffer write(int b) {
+        ensureCapacity(size + 1);
+        data[size++] = (byte) b;
+        return this;
+    }
+
+    EscPosBuffer write(byte[] bytes) {
+        return write(bytes, 0, bytes.length);
+    }
+
+    EscPosBuffer write(byte[] bytes, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(bytes, offset, data, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Grava texto em ISO-8859-1 sem String/byte[] intermediários
+     * (caracteres fora do Latin-1 viram '?')
+     */
+    EscPosBuffer writeLatin1(CharSequence text) {
+        int length = text.length();
+        ensureCapacity(size + length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            data[size++] = (byte) (c <= 0xFF ? c : '?');
+        }
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    /**
+     * Array interno (válido até a próxima escrita); usar com size()
+     */
+    byte[] array() {
+        return data;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+        }
+    }
+}
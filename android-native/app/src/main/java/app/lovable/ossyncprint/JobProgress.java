@@ -0,0 +1,129 @@
+package app.lovable.ossyncprint;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progresso de um job de impressão, com eventos agregados e limitados
+ *
+ * Envolve o transporte durante o job e conta bytes/blocos a cada write.
+ * Notificar o JS por bloco serializaria um JSObject no bridge a cada
+ * bulkTransfer; aqui o progresso é acumulado e só vira evento a cada
+ * minIntervalMs (no máximo). O fim do job sempre gera exatamente um
+ * evento terminal, com sucesso ou erro.
+ *
+ * Usado só pela thread escritora do job, exceto finish(), que também
+ * pode vir do submit quando o job é rejeitado antes de rodar.
+ */
+final class JobProgress implements PrinterTransport {
+
+    interface Listener {
+        void onProgress(JobProgress job);
+
+        void onFinished(JobProgress job, Exception error);
+    }
+
+    static final long DEFAULT_MIN_INTERVAL_MS = 250;
+
+    private final String jobId;
+    private final long minIntervalNanos;
+    private final Listener listener;
+
+    private PrinterTransport delegate;
+    private volatile long totalBytes;
+    private volatile long bytesSent = 0;
+    private volatile int chunks = 0;
+    private long startedAt = 0;
+    private long lastEmitAt = 0;
+    private boolean finished = false;
+
+    JobProgress(String jobId, long totalBytes, long minIntervalMs, Listener listener) {
+        this.jobId = jobId;
+        this.totalBytes = totalBytes;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMs);
+        this.listener = listener;
+    }
+
+    /**
+     * Passa a contar as escritas feitas no transporte do job
+     */
+    JobProgress wrap(PrinterTransport transport) {
+        delegate = transport;
+        startedAt = System.nanoTime();
+        lastEmitAt = startedAt;
+        return this;
+    }
+
+    @Override
+    public int write(byte[] data, int offset, int length, int timeoutMs) {
+        int sent = delegate.write(data, offset, length, timeoutMs);
+        if (sent > 0) {
+            bytesSent += sent;
+            chunks++;
+            long now = System.nanoTime();
+            if (now - lastEmitAt >= minIntervalNanos) {
+                lastEmitAt = now;
+                listener.onProgress(this);
+            }
+        }
+        return sent;
+    }
+
+    @Override
+    public int maxChunk() {
+        return delegate.maxChunk();
+    }
+
+    /**
+     * Evento terminal (chamado uma única vez por job)
+     */
+    synchronized void finish(Exception error) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        listener.onFinished(this, error);
+    }
+
+    /**
+     * Tamanho total só conhecido depois de codificar (ex.: template)
+     */
+    void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Tamanho total do job ou -1 se desconhecido (stream, lote)
+     */
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    int getChunks() {
+        return chunks;
+    }
+
+    long getElapsedMillis() {
+        return startedAt == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Tempo restante estimado pela vazão até agora, ou -1 se não há base
+     */
+    long getEtaMillis() {
+        long total = totalBytes;
+        long sent = bytesSent;
+        long elapsed = getElapsedMillis();
+        if (total <= 0 || sent <= 0 || elapsed <= 0) {
+            return -1;
+        }
+        return Math.max(0, (total - sent) * elapsed / sent);
+    }
+}
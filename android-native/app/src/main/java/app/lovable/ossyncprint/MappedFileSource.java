@@ -0,0 +1,93 @@
+package app.lovable.ossyncprint;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Job gravado em arquivo pelo JS (relatórios grandes) em vez de uma
+ * string no PluginCall
+ *
+ * O arquivo é mapeado em janelas de MAPPING_WINDOW (FileChannel.map) e
+ * percorrido em fatias do tamanho do buffer de bloco do chamador: o job
+ * nunca é copiado inteiro para o heap, só uma fatia por vez para o
+ * byte[] que o bulkTransfer exige.
+ *
+ * Só aceita arquivos dentro do armazenamento do app (resolve()), para que
+ * o JS não consiga mandar para a impressora (nem apagar) arquivos de
+ * outros lugares.
+ */
+final class MappedFileSource {
+
+    static final long MAPPING_WINDOW = 8L * 1024 * 1024;
+
+    private MappedFileSource() {
+    }
+
+    /**
+     * Caminho absoluto ou URI file:// do Capacitor Filesystem. O arquivo
+     * precisa existir e estar dentro de um dos diretórios permitidos
+     * (comparação pelo caminho canônico: resolve "..", links simbólicos)
+     * e fora dos diretórios internos do plugin (excluded).
+     */
+    static File resolve(String path, File[] roots, File[] excluded) throws IOException {
+        if (path == null || path.isEmpty()) {
+            throw new IOException("Caminho do arquivo não informado");
+        }
+        String local = path;
+        if (path.startsWith("file:")) {
+            try {
+                local = new URI(path).getPath();
+            } catch (URISyntaxException e) {
+                throw new IOException("URI de arquivo inválida: " + path);
+            }
+        }
+        File file = new File(local).getCanonicalFile();
+        if (!isInside(file, roots) || isInside(file, excluded)) {
+            throw new IOException("Arquivo fora do armazenamento do app: " + path);
+        }
+        if (!file.isFile()) {
+            throw new IOException("Arquivo não encontrado: " + path);
+        }
+        return file;
+    }
+
+    private static boolean isInside(File file, File[] dirs) throws IOException {
+        for (File dir : dirs) {
+            if (dir != null && file.getPath().startsWith(dir.getCanonicalPath() + File.separator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Entrega o arquivo ao sink em fatias de até chunk.length bytes;
+     * retorna o tamanho do arquivo
+     */
+    static long stream(File file, byte[] chunk, PayloadInflater.Sink sink) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long window = Math.min(MAPPING_WINDOW, size - position);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+                while (mapped.hasRemaining()) {
+                    if (Thread.interrupted()) {
+                        throw new IOException("Impressão do arquivo interrompida");
+                    }
+                    int length = Math.min(chunk.length, mapped.remaining());
+                    mapped.get(chunk, 0, length);
+                    sink.write(chunk, 0, length);
+                }
+                position += window;
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Descompactação em fluxo de payloads deflate/gzip vindos do JS
+ *
+ * Relatórios e logos atravessam o bridge como strings grandes; compactados
+ * (CompressionStream no JS) ficam várias vezes menores. Os bytes
+ * descompactados saem em blocos de BUFFER_SIZE direto para o Sink (o
+ * writeFully do job), sem montar o job inteiro na memória.
+ *
+ * A entrada pode chegar em pedaços arbitrários (blocos do printStream):
+ * cabeçalho e trailer gzip são montados através das chamadas a feed().
+ * Uma instância por thread; o buffer e o Inflater são reaproveitados
+ * entre jobs (reset).
+ */
+final class PayloadInflater {
+
+    enum Format {
+        // zlib (CompressionStream 'deflate')
+        DEFLATE,
+        // deflate sem cabeçalho (CompressionStream 'deflate-raw')
+        DEFLATE_RAW,
+        GZIP
+    }
+
+    /**
+     * Destino dos bytes descompactados (válidos só durante a chamada)
+     */
+    interface Sink {
+        void write(byte[] data, int offset, int length) throws IOException;
+    }
+
+    static final int BUFFER_SIZE = 16384;
+
+    private static final int GZIP_TRAILER = 8;
+    private static final int MAX_GZIP_HEADER = 64 * 1024;
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+
+    private static final int ST_HEADER = 0;
+    private static final int ST_BODY = 1;
+    private static final int ST_TRAILER = 2;
+    private static final int ST_DONE = 3;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final CRC32 crc = new CRC32();
+    private final EscPosBuffer pending = new EscPosBuffer(64);
+    private Inflater inflater;
+    private boolean nowrap;
+    private Format format;
+    private int state;
+    private long totalOut;
+
+    PayloadInflater() {
+        reset(Format.DEFLATE);
+    }
+
+    /**
+     * "deflate" | "deflate-raw" | "gzip"; null para valor desconhecido
+     */
+    static Format parseFormat(String value) {
+        if ("deflate".equalsIgnoreCase(value)) {
+            return Format.DEFLATE;
+        }
+        if ("deflate-raw".equalsIgnoreCase(value)) {
+            return Format.DEFLATE_RAW;
+        }
+        if ("gzip".equalsIgnoreCase(value)) {
+            return Format.GZIP;
+        }
+        return null;
+    }
+
+    /**
+     * Prepara um novo payload. O Inflater só é recriado se o tipo de
+     * cabeçalho mudar (zlib vs sem cabeçalho).
+     */
+    void reset(Format format) {
+        boolean raw = format != Format.DEFLATE;
+        if (inflater == null || raw != nowrap) {
+            if (inflater != null) {
+                inflater.end();
+            }
+            inflater = new Inflater(raw);
+            nowrap = raw;
+        } else {
+            inflater.reset();
+        }
+        this.format = format;
+        crc.reset();
+        pending.reset();
+        state = format == Format.GZIP ? ST_HEADER : ST_BODY;
+        totalOut = 0;
+    }
+
+    long getTotalOut() {
+        return totalOut;
+    }
+
+    /**
+     * Descompacta mais um pedaço da entrada; retorna os bytes entregues ao sink
+     */
+    long feed(byte[] input, int offset, int length, Sink sink) throws IOException {
+        long before = totalOut;
+        int end = offset + length;
+        while (offset < end) {
+            switch (state) {
+                case ST_HEADER:
+                    int headerStart = pending.size();
+                    pending.write(input, offset, end - offset);
+                    int headerLength = gzipHeaderLength(pending.array(), pending.size());
+                    if (headerLength < 0) {
+                        if (pending.size() > MAX_GZIP_HEADER) {
+                            throw new IOException("Cabeçalho gzip inválido");
+                        }
+                        return totalOut - before;
+                    }
+                    // O que sobrou depois do cabeçalho volta para a entrada
+                    offset += headerLength - headerStart;
+                    pending.reset();
+                    state = ST_BODY;
+                    break;
+                case ST_BODY:
+                    offset = end - inflate(input, offset, end - offset, sink);
+                    break;
+                case ST_TRAILER:
+                    int take = Math.min(GZIP_TRAILER - pending.size(), end - offset);
+                    pending.write(input, offset, take);
+                    offset += take;
+                    if (pending.size() == GZIP_TRAILER) {
+                        state = ST_DONE;
+                    }
+                    break;
+                default:
+                    // Bytes depois do fim do payload (padding): ignorados
+                    return totalOut - before;
+            }
+        }
+        return totalOut - before;
+    }
+
+    /**
+     * Fim da entrada: o payload precisa estar completo (e o CRC gzip conferir)
+     */
+    void finish() throws IOException {
+        if (state == ST_HEADER || state == ST_BODY || (state == ST_TRAILER && pending.size() < GZIP_TRAILER)) {
+            throw new IOException("Payload compactado incompleto (" + totalOut + " bytes descompactados)");
+        }
+        if (format == Format.GZIP) {
+            byte[] trailer = pending.array();
+            long expectedCrc = le32(trailer, 0);
+            long expectedSize = le32(trailer, 4);
+            if (expectedCrc != crc.getValue() || expectedSize != (totalOut & 0xFFFFFFFFL)) {
+                throw new IOException("Payload gzip corrompido (CRC/tamanho não conferem)");
+            }
+        }
+    }
+
+    /**
+     * Libera a memória nativa do Inflater
+     */
+    void end() {
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    /**
+     * Retorna quantos bytes da entrada sobraram depois do fim do stream deflate
+     */
+    private int inflate(byte[] input, int offset, int length, Sink sink) throws IOException {
+        inflater.setInput(input, offset, length);
+        try {
+            while (true) {
+                int n = inflater.inflate(buffer);
+                if (n > 0) {
+                    if (format == Format.GZIP) {
+                        crc.update(buffer, 0, n);
+                    }
+                    totalOut += n;
+                    sink.write(buffer, 0, n);
+                    continue;
+                }
+                if (inflater.finished()) {
+                    state = format == Format.GZIP ? ST_TRAILER : ST_DONE;
+                    return inflater.getRemaining();
+                }
+                if (inflater.needsDictionary()) {
+                    throw new IOException("Payload deflate com dicionário não suportado");
+                }
+                if (inflater.needsInput()) {
+                    return 0;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Payload compactado inválido: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Tamanho do cabeçalho gzip (RFC 1952) ou -1 se ainda incompleto
+     */
+    private static int gzipHeaderLength(byte[] data, int size) throws IOException {
+        if (size < 10) {
+            return -1;
+        }
+        if ((data[0] & 0xFF) != 0x1F || (data[1] & 0xFF) != 0x8B || data[2] != 8) {
+            throw new IOException("Payload não é gzip");
+        }
+        int flags = data[3] & 0xFF;
+        int pos = 10;
+        if ((flags & FEXTRA) != 0) {
+            if (size < pos + 2) {
+                return -1;
+            }
+            pos += 2 + ((data[pos] & 0xFF) | ((data[pos + 1] & 0xFF) << 8));
+        }
+        if ((flags & FNAME) != 0) {
+            pos = skipZeroTerminated(data, pos, size);
+        }
+        if (pos >= 0 && (flags & FCOMMENT) != 0) {
+            pos = skipZeroTerminated(data, pos, size);
+        }
+        if (pos >= 0 && (flags & FHCRC) != 0) {
+            pos += 2;
+        }
+        return pos >= 0 && pos <= size ? pos : -1;
+    }
+
+    private static int skipZeroTerminated(byte[] data, int pos, int size) {
+        for (int i = pos; i < size; i++) {
+            if (data[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static long le32(byte[] data, int offset) {
+        return (data[offset] & 0xFFL) | ((data[offset + 1] & 0xFFL) << 8)
+            | ((data[offset + 2] & 0xFFL) << 16) | ((data[offset + 3] & 0xFFL) << 24);
+    }
+}
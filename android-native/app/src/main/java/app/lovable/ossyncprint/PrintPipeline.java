@@ -0,0 +1,224 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline de impressão em lote: codificação e transferência sobrepostas
+ *
+ * Uma thread de codificação monta o job N+1 enquanto o job N está no
+ * cabo. Entre os dois estágios há uma fila limitada (queueDepth jobs já
+ * codificados, de 1 a MAX_QUEUE_DEPTH), então a memória fica limitada
+ * mesmo em lotes grandes e a codificação espera quando a impressora não
+ * acompanha.
+ *
+ * start() pode ser chamado já no submit: os primeiros jobs são
+ * codificados enquanto jobs anteriores do PrinterSession ainda imprimem.
+ * transfer() roda dentro do job do escritor, então o lote sai contíguo.
+ *
+ * Jobs grandes demais para a fila já expandidos (payload compactado) são
+ * StreamedEncoder: a codificação só os prepara e os bytes são gerados
+ * direto no transporte, na thread escritora.
+ *
+ * Erro de codificação falha só aquele job; erro de transferência
+ * interrompe o lote (a impressora está com problema), inclusive o de um
+ * job em fluxo, que pode já ter enviado parte dos bytes.
+ */
+final class PrintPipeline {
+
+    /**
+     * Gera os bytes ESC/POS de um job (executado na thread de codificação)
+     */
+    interface Encoder {
+        byte[] encode() throws Exception;
+    }
+
+    /**
+     * Escreve um job preparado no transporte (executado na thread
+     * escritora); retorna os bytes enviados
+     */
+    interface Transfer {
+        long writeTo(PrinterTransport transport) throws IOException;
+    }
+
+    /**
+     * Job que só é expandido na transferência: prepare() roda na thread de
+     * codificação (decodificar, validar) e a fila guarda o Transfer
+     */
+    interface StreamedEncoder extends Encoder {
+        Transfer prepare() throws Exception;
+
+        /**
+         * Fora do pipeline: expande o job inteiro na memória
+         */
+        @Override
+        default byte[] encode() throws Exception {
+            final EscPosBuffer out = new EscPosBuffer(256);
+            prepare().writeTo((data, offset, length, timeoutMs) -> {
+                out.write(data, offset, length);
+                return length;
+            });
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Notificado na thread escritora ao fim de cada job
+     */
+    interface Listener {
+        void onJobDone(int index, long bytes, Exception error);
+    }
+
+    static final int DEFAULT_QUEUE_DEPTH = 2;
+    // queueDepth vem do JS: acima disso a fila deixaria de limitar a memória
+    static final int MAX_QUEUE_DEPTH = 8;
+
+    private static final class Encoded {
+        final int index;
+        final byte[] data;
+        final Transfer streamed;
+        final Exception error;
+
+        Encoded(int index, byte[] data, Transfer streamed, Exception error) {
+            this.index = index;
+            this.data = data;
+            this.streamed = streamed;
+            this.error = error;
+        }
+    }
+
+    // Marcador de fim da codificação (comparado por referência)
+    private static final Encoded END_OF_JOBS = new Encoded(-1, null, null, null);
+
+    private final List<Encoder> jobs;
+    private final ArrayBlockingQueue<Encoded> encoded;
+    private final Thread encoderThread;
+
+    private volatile boolean cancelled = false;
+    private volatile long encodeNanos = 0;
+    private long transferNanos = 0;
+    private long startedAt = 0;
+    private long finishedAt = 0;
+    private int succeeded = 0;
+    private int failed = 0;
+
+    PrintPipeline(List<Encoder> jobs, int queueDepth) {
+        this.jobs = jobs;
+        this.encoded = new ArrayBlockingQueue<>(Math.max(1, Math.min(MAX_QUEUE_DEPTH, queueDepth)));
+        this.encoderThread = new Thread(this::encodeLoop, "PrintEncoder");
+        this.encoderThread.setDaemon(true);
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+        encoderThread.start();
+    }
+
+    /**
+     * Descarta o lote (ex.: o job do escritor foi cancelado antes de rodar)
+     */
+    void cancel() {
+        cancelled = true;
+        encoderThread.interrupt();
+        encoded.clear();
+    }
+
+    /**
+     * Transfere os jobs na ordem, à medida que ficam prontos. Retorna o
+     * total de bytes enviados.
+     */
+    long transfer(PrinterTransport transport, int timeoutMs, TraceBuffer trace, Listener listener)
+            throws IOException, InterruptedException {
+        long total = 0;
+        try {
+            while (true) {
+                Encoded job = encoded.take();
+                if (job == END_OF_JOBS) {
+                    break;
+                }
+                if (job.error != null) {
+                    failed++;
+                    listener.onJobDone(job.index, 0, job.error);
+                    continue;
+                }
+
+                long t0 = System.nanoTime();
+                long sent;
+                if (job.streamed != null) {
+                    sent = job.streamed.writeTo(transport);
+                } else {
+                    PrinterTransport.writeFully(transport, job.data, 0, job.data.length, timeoutMs, trace);
+                    sent = job.data.length;
+                }
+                transferNanos += System.nanoTime() - t0;
+                total += sent;
+                succeeded++;
+                listener.onJobDone(job.index, sent, null);
+            }
+        } finally {
+            finishedAt = System.nanoTime();
+            cancel();
+        }
+        return total;
+    }
+
+    private void encodeLoop() {
+        try {
+            for (int i = 0; i < jobs.size() && !cancelled; i++) {
+                long t0 = System.nanoTime();
+                Encoded result;
+                try {
+                    Encoder job = jobs.get(i);
+                    result = job instanceof StreamedEncoder
+                        ? new Encoded(i, null, ((StreamedEncoder) job).prepare(), null)
+                        : new Encoded(i, job.encode(), null, null);
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    result = new Encoded(i, null, null, e);
+                }
+                encodeNanos += System.nanoTime() - t0;
+                encoded.put(result);
+            }
+        } catch (InterruptedException e) {
+            // cancel(): o lote foi descartado
+        }
+        if (!cancelled) {
+            try {
+                encoded.put(END_OF_JOBS);
+            } catch (InterruptedException e) {
+                // cancelado enquanto a fila estava cheia
+            }
+        }
+    }
+
+    int getSucceeded() {
+        return succeeded;
+    }
+
+    int getFailed() {
+        return failed;
+    }
+
+    long getEncodeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(encodeNanos);
+    }
+
+    long getTransferMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(transferNanos);
+    }
+
+    long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(finishedAt - startedAt);
+    }
+
+    /**
+     * Jobs concluídos por minuto, do start() ao fim da transferência
+     */
+    double getJobsPerMinute() {
+        long elapsed = finishedAt - startedAt;
+        return elapsed <= 0 ? 0 : (succeeded + failed) * 60e9 / elapsed;
+    }
+}
@@ -0,0 +1,386 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sessão de impressão incremental (streaming)
+ *
+ * O JS abre a sessão, envia blocos numerados (seq 0, 1, 2...) e fecha.
+ * O consumo dos blocos (run) transfere o primeiro bloco enquanto os
+ * seguintes ainda estão sendo gerados. A fila de blocos pendentes é
+ * limitada, então a memória nativa fica constante independente do
+ * tamanho do relatório e o JS recebe backpressure quando a impressora
+ * não acompanha.
+ *
+ * append() e close() nunca bloqueiam quem chama (a thread do plugin):
+ * com a fila cheia o bloco fica reservado e a Completion é chamada pela
+ * thread consumidora quando abrir espaço; o close é concluído quando o
+ * último bloco for transferido.
+ *
+ * No plugin, run() é executado como um job do PrinterSession, então o
+ * stream inteiro sai contíguo, sem bytes de outros jobs no meio. O job só
+ * é enviado ao escritor no primeiro bloco (setStarter), para que um
+ * stream aberto e esquecido não segure a impressora.
+ */
+final class PrintStreamSession {
+
+    /**
+     * Destino dos blocos (normalmente o bulkTransfer do endpoint OUT)
+     */
+    interface ChunkWriter {
+        void write(byte[] data) throws IOException;
+
+        /**
+         * Fim do stream, antes de close() ser concluído (ex.: conferir que
+         * o payload compactado chegou inteiro)
+         */
+        default void end() throws IOException {
+        }
+    }
+
+    /**
+     * Conclusão de um append reservado ou do close; error null = sucesso
+     */
+    interface Completion {
+        void onDone(IOException error);
+    }
+
+    static final int DEFAULT_MAX_PENDING_CHUNKS = 8;
+    // Prazo entre blocos enquanto o stream ocupa o escritor (e para o
+    // primeiro bloco depois do open); outros prints esperam nesse tempo
+    static final long DEFAULT_IDLE_TIMEOUT_MS = 15000;
+
+    // Marcador de fim de stream (comparado por referência)
+    private static final byte[] END_OF_STREAM = new byte[0];
+
+    private final String id;
+    private final ChunkWriter writer;
+    // Blocos binários (base64 no bridge), ex.: stream compactado
+    private final boolean binary;
+    private final ArrayBlockingQueue<byte[]> pending;
+    private final long openedAt = System.nanoTime();
+
+    // Estado abaixo protegido pelo appendLock
+    private final Object appendLock = new Object();
+    private int nextSeq = 0;
+    // Bloco que não coube na fila (no máximo um) e quem espera por ele
+    private byte[] parked;
+    private Completion parkedCompletion;
+    private Completion closeCompletion;
+    private boolean endQueued = false;
+    private boolean started = false;
+    private boolean done = false;
+    private Runnable starter;
+    private Completion cancelledBeforeStart;
+
+    // Escrito sem o appendLock em fail()
+    private volatile boolean closed = false;
+
+    private volatile IOException failure;
+    private volatile Thread runner;
+    private volatile long bytesWritten = 0;
+    private volatile int chunksWritten = 0;
+
+    PrintStreamSession(String id, int maxPendingChunks, ChunkWriter writer) {
+        this(id, maxPendingChunks, false, writer);
+    }
+
+    PrintStreamSession(String id, int maxPendingChunks, boolean binary, ChunkWriter writer) {
+        this.id = id;
+        this.writer = writer;
+        this.binary = binary;
+        this.pending = new ArrayBlockingQueue<>(Math.max(1, maxPendingChunks));
+    }
+
+    /**
+     * Consome os blocos numa thread própria (uso fora do PrinterSession)
+     */
+    void start() {
+        Thread thread = new Thread(() -> run(Long.MAX_VALUE), "PrintStream-" + id);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Executado uma vez, no primeiro append ou no close (fora do lock)
+     */
+    void setStarter(Runnable starter) {
+        synchronized (appendLock) {
+            this.starter = starter;
+        }
+    }
+
+    /**
+     * Chamado com o erro se o stream falhar (abort, inatividade) antes do
+     * starter rodar: o job nunca chega ao escritor, então quem acompanha
+     * o job precisa ser avisado por aqui
+     */
+    void setCancelledBeforeStart(Completion completion) {
+        synchronized (appendLock) {
+            this.cancelledBeforeStart = completion;
+        }
+    }
+
+    String getId() {
+        return id;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+
+    int getNextSeq() {
+        synchronized (appendLock) {
+            return nextSeq;
+        }
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    int getChunksWritten() {
+        return chunksWritten;
+    }
+
+    /**
+     * Erro que encerrou o stream, ou null
+     */
+    IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Consumo encerrado (fim do stream ou falha)
+     */
+    boolean isDone() {
+        synchronized (appendLock) {
+            return done;
+        }
+    }
+
+    /**
+     * Aberto há mais de idleTimeoutMs sem receber nenhum bloco
+     */
+    boolean isIdleBeforeStart(long idleTimeoutMs) {
+        synchronized (appendLock) {
+            return !started && !done && System.nanoTime() - openedAt > idleTimeoutMs * 1_000_000L;
+        }
+    }
+
+    /**
+     * Enfileira um bloco. Retorna false se o bloco é uma retransmissão de
+     * um seq já aceito (ignorado, completion não é chamada). Com a fila
+     * cheia o bloco fica reservado e completion é chamada quando a
+     * impressora consumir um anterior; se já há um bloco reservado, falha
+     * na hora (o JS precisa aguardar a resposta do anterior). Lança
+     * exceção se houver lacuna na sequência ou falha de transferência.
+     */
+    boolean append(int seq, byte[] data, Completion completion) throws IOException {
+        boolean queued;
+        Runnable start;
+        synchronized (appendLock) {
+            throwIfFailed();
+            if (closed) {
+                throw new IllegalStateException("Stream " + id + " já foi fechado");
+            }
+            if (seq < nextSeq) {
+                return false;
+            }
+            if (seq > nextSeq) {
+                throw new IllegalStateException("Bloco fora de ordem: esperado " + nextSeq + ", recebido " + seq);
+            }
+            if (parked != null) {
+                throw new IOException("Fila do stream cheia: aguarde a confirmação do bloco " + (nextSeq - 1));
+            }
+            queued = pending.offer(data);
+            if (!queued) {
+                parked = data;
+                parkedCompletion = completion;
+            }
+            nextSeq++;
+            start = takeStarter();
+        }
+        if (start != null) {
+            start.run();
+        }
+        if (queued) {
+            completion.onDone(null);
+        }
+        return true;
+    }
+
+    /**
+     * Fecha a sessão; completion é chamada depois da transferência dos
+     * blocos pendentes (ou na hora, se o stream já terminou)
+     */
+    void close(Completion completion) {
+        Runnable start;
+        boolean finished;
+        synchronized (appendLock) {
+            closed = true;
+            finished = done;
+            if (!finished) {
+                closeCompletion = completion;
+                queueEnd();
+            }
+            start = takeStarter();
+        }
+        if (start != null) {
+            start.run();
+        }
+        if (finished) {
+            completion.onDone(failure);
+        }
+    }
+
+    /**
+     * Descarta blocos pendentes e interrompe a transferência
+     */
+    void abort() {
+        fail(new IOException("Stream " + id + " abortado"));
+        Thread r = runner;
+        if (r != null) {
+            r.interrupt();
+        }
+    }
+
+    /**
+     * Marca a sessão como falha (ex.: job cancelado antes de começar)
+     */
+    void fail(IOException error) {
+        closed = true;
+        if (failure == null) {
+            failure = error;
+        }
+        Completion cancelled = null;
+        synchronized (appendLock) {
+            if (!started) {
+                // Nem o job vai rodar: um append/close atrasado não o envia mais
+                started = true;
+                starter = null;
+                cancelled = cancelledBeforeStart;
+            }
+            cancelledBeforeStart = null;
+        }
+        pending.clear();
+        pending.offer(END_OF_STREAM);
+        if (runner == null) {
+            finish();
+        }
+        if (cancelled != null) {
+            cancelled.onDone(failure);
+        }
+    }
+
+    /**
+     * Transfere os blocos até o fim do stream. Falha se nenhum bloco
+     * chegar em idleTimeoutMs, para não segurar a impressora indefinidamente.
+     */
+    void run(long idleTimeoutMs) {
+        runner = Thread.currentThread();
+        try {
+            while (failure == null) {
+                byte[] chunk = pending.poll(idleTimeoutMs, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    failure = new IOException("Stream " + id + " inativo por " + idleTimeoutMs + "ms");
+                    return;
+                }
+                if (chunk == END_OF_STREAM) {
+                    writer.end();
+                    return;
+                }
+                // Abriu espaço: o bloco reservado entra enquanto este é transferido
+                refill();
+                writer.write(chunk);
+                bytesWritten += chunk.length;
+                chunksWritten++;
+            }
+        } catch (InterruptedException e) {
+            if (failure == null) {
+                failure = new IOException("Stream " + id + " abortado");
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            if (failure != null) {
+                closed = true;
+            }
+            pending.clear();
+            runner = null;
+            finish();
+        }
+    }
+
+    private Runnable takeStarter() {
+        if (started) {
+            return null;
+        }
+        started = true;
+        Runnable start = starter;
+        starter = null;
+        cancelledBeforeStart = null;
+        return start;
+    }
+
+    /**
+     * Fim do stream na fila depois do último bloco (chamado com o appendLock)
+     */
+    private void queueEnd() {
+        if (parked == null && !endQueued && failure == null && pending.offer(END_OF_STREAM)) {
+            endQueued = true;
+        }
+    }
+
+    private void refill() {
+        Completion completion = null;
+        synchronized (appendLock) {
+            if (parked != null && pending.offer(parked)) {
+                parked = null;
+                completion = parkedCompletion;
+                parkedCompletion = null;
+            }
+            if (closed) {
+                queueEnd();
+            }
+        }
+        if (completion != null) {
+            completion.onDone(null);
+        }
+    }
+
+    /**
+     * Conclui quem ainda espera (bloco reservado, close); só a primeira vez
+     */
+    private void finish() {
+        Completion parkedDone;
+        Completion closeDone;
+        synchronized (appendLock) {
+            if (done) {
+                return;
+            }
+            done = true;
+            parkedDone = parkedCompletion;
+            closeDone = closeCompletion;
+            parked = null;
+            parkedCompletion = null;
+            closeCompletion = null;
+        }
+        IOException error = failure;
+        if (parkedDone != null) {
+            parkedDone.onDone(error != null ? error : new IOException("Stream " + id + " encerrado"));
+        }
+        if (closeDone != null) {
+            closeDone.onDone(error);
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package app.lovable.ossyncprint;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Capacidades de um modelo de impressora (VID/PID)
+ *
+ * Os codificadores consultam o perfil da impressora conectada em vez de
+ * mandar o mesmo stream para todas: largura em dots e colunas, QR nativo
+ * (GS ( k), modo raster (GS v 0 ou ESC * em colunas de 24 dots), logo em
+ * NV (FS p), comandos de corte, tamanho do bloco de bulkTransfer e, atrás de conversor USB-serial,
+ * velocidade/formato da UART e controle de fluxo.
+ *
+ * Imutável. Perfis do arquivo de dados herdam do perfil base só os campos
+ * que não informam (ver PrinterProfileRegistry).
+ */
+final class PrinterProfile {
+
+    enum RasterMode {
+        // GS v 0: faixa inteira num comando
+        GSV0,
+        // ESC * 33: colunas de 24 dots, para modelos sem GS v 0
+        ESC_STAR
+    }
+
+    static final int ANY_PRODUCT = -1;
+
+    // 80mm a 203 dpi, ESC/POS genérico: o stream que o plugin sempre mandou
+    static final PrinterProfile GENERIC = new PrinterProfile("generic", null, 0, ANY_PRODUCT,
+        576, 48, true, RasterMode.GSV0, false,
+        new byte[] {0x1D, 0x56, 0x41, 0x10}, new byte[] {0x1D, 0x56, 0x42, 0x00},
+        PrinterTransport.MAX_BULK_CHUNK, UsbSerialTransport.LineConfig.DEFAULT);
+
+    final String id;
+    // null: nome genérico a partir do VID
+    final String name;
+    final int vendorId;
+    final int productId;
+    final int widthDots;
+    final int columns;
+    final boolean nativeQr;
+    final RasterMode rasterMode;
+    final boolean nvLogo;
+    final byte[] cutCommand;
+    final byte[] partialCutCommand;
+    final int chunkSize;
+    final UsbSerialTransport.LineConfig serial;
+
+    private PrinterProfile(String id, String name, int vendorId, int productId,
+                           int widthDots, int columns, boolean nativeQr, RasterMode rasterMode,
+                           boolean nvLogo, byte[] cutCommand, byte[] partialCutCommand, int chunkSize,
+                           UsbSerialTransport.LineConfig serial) {
+        this.id = id;
+        this.name = name;
+        this.vendorId = vendorId;
+        this.productId = productId;
+        this.widthDots = widthDots;
+        this.columns = columns;
+        this.nativeQr = nativeQr;
+        this.rasterMode = rasterMode;
+        this.nvLogo = nvLogo;
+        this.cutCommand = cutCommand;
+        this.partialCutCommand = partialCutCommand;
+        this.chunkSize = chunkSize;
+        this.serial = serial;
+    }
+
+    /**
+     * Perfil só com nome, capacidades genéricas (fabricantes conhecidos)
+     */
+    static PrinterProfile vendor(String id, String name, int vendorId) {
+        return new PrinterProfile(id, name, vendorId, ANY_PRODUCT,
+            GENERIC.widthDots, GENERIC.columns, GENERIC.nativeQr, GENERIC.rasterMode, GENERIC.nvLogo,
+            GENERIC.cutCommand, GENERIC.partialCutCommand, GENERIC.chunkSize, GENERIC.serial);
+    }
+
+    /**
+     * Perfil do arquivo de dados. Campos ausentes vêm de base.
+     *
+     * { "id", "name", "vendorId": "0x0B1B", "productId"?: "0x0003",
+     *   "widthDots", "columns", "chunkSize",
+     *   "features": { "nativeQr", "raster": "gsv0" | "escStar", "nvLogo" },
+     *   "commands": { "cut", "partialCut" }  (hex),
+     *   "serial": { "baudRate", "dataBits", "parity", "stopBits",
+     *               "flowControl": "none" | "rtsCts" | "xonXoff" } }
+     */
+    static PrinterProfile fromJson(JSONObject json, PrinterProfile base) throws JSONException {
+        JSONObject features = json.optJSONObject("features");
+        JSONObject commands = json.optJSONObject("commands");
+        if (features == null) {
+            features = new JSONObject();
+        }
+        if (commands == null) {
+            commands = new JSONObject();
+        }
+
+        int widthDots = json.optInt("widthDots", base.widthDots);
+        int chunkSize = json.optInt("chunkSize", base.chunkSize);
+        if (widthDots <= 0 || widthDots > 4096) {
+            throw new JSONException("widthDots inválido: " + widthDots);
+        }
+        if (chunkSize <= 0 || chunkSize > PrinterTransport.MAX_BULK_CHUNK) {
+            throw new JSONException("chunkSize inválido: " + chunkSize);
+        }
+
+        RasterMode rasterMode = base.rasterMode;
+        String raster = features.optString("raster", "");
+        if ("gsv0".equalsIgnoreCase(raster)) {
+            rasterMode = RasterMode.GSV0;
+        } else if ("escStar".equalsIgnoreCase(raster)) {
+            rasterMode = RasterMode.ESC_STAR;
+        } else if (!raster.isEmpty()) {
+            throw new JSONException("Modo raster desconhecido: " + raster);
+        }
+
+        return new PrinterProfile(
+            json.getString("id"),
+            json.has("name") ? json.getString("name") : base.name,
+            json.has("vendorId") ? parseId(json.getString("vendorId")) : base.vendorId,
+            json.has("productId") ? parseId(json.getString("productId")) : ANY_PRODUCT,
+            widthDots,
+            json.optInt("columns", base.columns),
+            features.optBoolean("nativeQr", base.nativeQr),
+            rasterMode,
+            features.optBoolean("nvLogo", base.nvLogo),
+            commands.has("cut") ? parseHex(commands.getString("cut")) : base.cutCommand,
+            commands.has("partialCut") ? parseHex(commands.getString("partialCut")) : base.partialCutCommand,
+            chunkSize,
+            parseSerial(json.optJSONObject("serial"), base.serial));
+    }
+
+    private static UsbSerialTransport.LineConfig parseSerial(JSONObject json, UsbSerialTransport.LineConfig base)
+        throws JSONException {
+        if (json == null) {
+            return base;
+        }
+        int baudRate = json.optInt("baudRate", base.baudRate);
+        int dataBits = json.optInt("dataBits", base.dataBits);
+        int stopBits = json.optInt("stopBits", base.stopBits);
+        int parity = json.has("parity")
+            ? UsbSerialTransport.LineConfig.parseParity(json.getString("parity")) : base.parity;
+        UsbSerialTransport.FlowControl flowControl = json.has("flowControl")
+            ? UsbSerialTransport.LineConfig.parseFlowControl(json.getString("flowControl")) : base.flowControl;
+        if (baudRate <= 0 || dataBits < 5 || dataBits > 8 || (stopBits != 1 && stopBits != 2)
+            || parity < 0 || flowControl == null) {
+            throw new JSONException("Configuração serial inválida: " + json);
+        }
+        return new UsbSerialTransport.LineConfig(baudRate, dataBits, parity, stopBits, flowControl);
+    }
+
+    boolean matches(int vendorId, int productId) {
+        return this.vendorId == vendorId && (this.productId == ANY_PRODUCT || this.productId == productId);
+    }
+
+    /**
+     * Nome para exibição (substitui o antigo getVendorName)
+     */
+    String displayName(int vendorId) {
+        return name != null ? name : "Printer VID:0x" + Integer.toHexString(vendorId);
+    }
+
+    JSONObject toJson() throws JSONException {
+        JSONObject features = new JSONObject();
+        features.put("nativeQr", nativeQr);
+        features.put("raster", rasterMode == RasterMode.GSV0 ? "gsv0" : "escStar");
+        features.put("nvLogo", nvLogo);
+
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("name", name);
+        json.put("widthDots", widthDots);
+        json.put("columns", columns);
+        json.put("chunkSize", chunkSize);
+        json.put("features", features);
+        json.put("serial", serialJson(serial));
+        return json;
+    }
+
+    static JSONObject serialJson(UsbSerialTransport.LineConfig serial) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("baudRate", serial.baudRate);
+        json.put("dataBits", serial.dataBits);
+        json.put("parity", UsbSerialTransport.LineConfig.PARITY_NAMES[serial.parity]);
+        json.put("stopBits", serial.stopBits);
+        json.put("flowControl", UsbSerialTransport.LineConfig.flowControlName(serial.flowControl));
+        return json;
+    }
+
+    static int parseId(String value) throws JSONException {
+        String hex = value.trim();
+        try {
+            if (hex.startsWith("0x") || hex.startsWith("0X")) {
+                return Integer.parseInt(hex.substring(2), 16);
+            }
+            return Integer.parseInt(hex);
+        } catch (NumberFormatException e) {
+            throw new JSONException("VID/PID inválido: " + value);
+        }
+    }
+
+    /**
+     * "1D 56 41 10" ou "1D564110"
+     */
+    static byte[] parseHex(String value) throws JSONException {
+        String hex = value.replace(" ", "");
+        if ((hex.length() & 1) != 0) {
+            throw new JSONException("Comando hex inválido: " + value);
+        }
+        byte[] out = new byte[hex.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new JSONException("Comando hex inválido: " + value);
+            }
+            out[i] = (byte) ((hi << 4) | lo);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,104 @@
+package app.lovable.ossyncprint;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Perfis de impressora por VID/PID
+ *
+ * Embutidos: um perfil por fabricante conhecido, só com o nome e as
+ * capacidades genéricas (o mesmo stream de sempre). Os modelos vêm do
+ * arquivo de dados (assets/bematech-printer-profiles.json), que pode ser
+ * trocado sem recompilar o plugin. Sem o arquivo, toda impressora recebe
+ * o perfil genérico.
+ *
+ * Busca: VID+PID exato, depois VID com qualquer PID, depois genérico.
+ */
+final class PrinterProfileRegistry {
+
+    static final String ASSET_NAME = "bematech-printer-profiles.json";
+
+    private volatile List<PrinterProfile> profiles = builtIns();
+
+    static List<PrinterProfile> builtIns() {
+        List<PrinterProfile> list = new ArrayList<>();
+        list.add(PrinterProfile.vendor("bematech", "Bematech", 0x0B1B));
+        list.add(PrinterProfile.vendor("epson", "Epson", 0x04B8));
+        list.add(PrinterProfile.vendor("star", "Star Micronics", 0x0519));
+        list.add(PrinterProfile.vendor("custom", "Custom", 0x0DD4));
+        list.add(PrinterProfile.vendor("daruma", "Daruma", 0x154F));
+        list.add(PrinterProfile.vendor("elgin", "Elgin", 0x0483));
+        list.add(PrinterProfile.vendor("ch340", "QinHeng/CH340", 0x1A86));
+        return list;
+    }
+
+    /**
+     * Carrega { "profiles": [...] } por cima dos embutidos. Cada perfil
+     * herda do perfil do mesmo fabricante (ou de "extends": id). Retorna
+     * quantos perfis foram lidos; JSON inválido não altera o registro.
+     */
+    int load(String json) throws JSONException {
+        JSONArray array = new JSONObject(json).getJSONArray("profiles");
+        List<PrinterProfile> loaded = new ArrayList<>(array.length());
+        List<PrinterProfile> builtIns = builtIns();
+
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            PrinterProfile base = null;
+            String parent = item.optString("extends", "");
+            if (!parent.isEmpty()) {
+                base = findById(loaded, parent);
+                if (base == null) {
+                    throw new JSONException("Perfil base não encontrado: " + parent);
+                }
+            } else {
+                int vendorId = PrinterProfile.parseId(item.getString("vendorId"));
+                base = findVendor(builtIns, vendorId);
+            }
+            loaded.add(PrinterProfile.fromJson(item, base != null ? base : PrinterProfile.GENERIC));
+        }
+
+        List<PrinterProfile> merged = new ArrayList<>(loaded);
+        merged.addAll(builtIns);
+        profiles = merged;
+        return loaded.size();
+    }
+
+    PrinterProfile forDevice(int vendorId, int productId) {
+        List<PrinterProfile> list = profiles;
+        for (PrinterProfile profile : list) {
+            if (profile.productId != PrinterProfile.ANY_PRODUCT && profile.matches(vendorId, productId)) {
+                return profile;
+            }
+        }
+        PrinterProfile vendor = findVendor(list, vendorId);
+        return vendor != null ? vendor : PrinterProfile.GENERIC;
+    }
+
+    List<PrinterProfile> all() {
+        return Collections.unmodifiableList(profiles);
+    }
+
+    private static PrinterProfile findVendor(List<PrinterProfile> list, int vendorId) {
+        for (PrinterProfile profile : list) {
+            if (profile.productId == PrinterProfile.ANY_PRODUCT && profile.vendorId == vendorId) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    private static PrinterProfile findById(List<PrinterProfile> list, String id) {
+        for (PrinterProfile profile : list) {
+            if (profile.id.equals(id)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,230 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Máquina de estados da sessão com a impressora + escritor único
+ *
+ * DISCONNECTED -> CONNECTING -> READY <-> PRINTING -> DRAINING -> DISCONNECTED
+ *
+ * Todas as transições são CAS sobre um AtomicReference, então o receiver
+ * USB (detach), o callback de permissão e as chamadas do bridge podem
+ * disputar a sessão sem lock. Os bytes só saem pela thread escritora:
+ * cada job roda inteiro antes do próximo, então dois prints concorrentes
+ * nunca intercalam bytes no meio de um comando. Quem submete só enfileira
+ * e recebe o resultado no callback, sem segurar lock durante o I/O lento.
+ */
+final class PrinterSession {
+
+    enum State {
+        DISCONNECTED,
+        CONNECTING,
+        READY,
+        PRINTING,
+        DRAINING
+    }
+
+    /**
+     * Trabalho executado com acesso exclusivo ao transporte.
+     * Retorna a quantidade de bytes enviados.
+     */
+    interface Job {
+        long run(PrinterTransport transport) throws IOException, InterruptedException;
+    }
+
+    interface Callback {
+        void onComplete(long bytesTransferred);
+
+        void onError(Exception error);
+    }
+
+    private static final class Pending {
+        final Job job;
+        final Callback callback;
+
+        Pending(Job job, Callback callback) {
+            this.job = job;
+            this.callback = callback;
+        }
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.DISCONNECTED);
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private volatile PrinterTransport transport;
+    private volatile Thread runningJobThread;
+    private volatile boolean shutdown = false;
+
+    PrinterSession() {
+        writer = new Thread(this::writerLoop, "PrinterWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    /**
+     * READY ou PRINTING: aceita jobs
+     */
+    boolean isReady() {
+        State s = state.get();
+        return s == State.READY || s == State.PRINTING;
+    }
+
+    PrinterTransport getTransport() {
+        return transport;
+    }
+
+    // ==================== CONEXÃO ====================
+
+    /**
+     * DISCONNECTED -> CONNECTING. Falha se outra conexão está em andamento
+     * ou se a sessão ainda está ativa (chamar drain antes).
+     */
+    boolean beginConnect() {
+        return state.compareAndSet(State.DISCONNECTED, State.CONNECTING);
+    }
+
+    /**
+     * CONNECTING -> READY publicando o transporte
+     */
+    void connected(PrinterTransport transport) {
+        this.transport = transport;
+        if (!state.compareAndSet(State.CONNECTING, State.READY)) {
+            this.transport = null;
+            throw new IllegalStateException("Transição inválida para READY a partir de " + state.get());
+        }
+    }
+
+    /**
+     * CONNECTING -> DISCONNECTED
+     */
+    void connectFailed() {
+        state.compareAndSet(State.CONNECTING, State.DISCONNECTED);
+    }
+
+    /**
+     * READY/PRINTING -> DRAINING -> DISCONNECTED
+     *
+     * Jobs ainda na fila falham; o job em execução tem até timeoutMs para
+     * terminar antes de ser interrompido. Depois disso drain continua
+     * esperando o escritor sair do job (o bulkTransfer não é interrompível,
+     * mas cada write tem timeout próprio): só então o transporte pode ser
+     * fechado, e nenhum job anterior à barreira fica na fila para rodar
+     * numa conexão nova. Retorna false se a sessão não estava ativa.
+     */
+    boolean drain(long timeoutMs) throws InterruptedException {
+        State s;
+        do {
+            s = state.get();
+            if (s != State.READY && s != State.PRINTING) {
+                return false;
+            }
+        } while (!state.compareAndSet(s, State.DRAINING));
+
+        // Barreira: quando o escritor chegar aqui, tudo antes já falhou ou terminou
+        final CountDownLatch drained = new CountDownLatch(1);
+        queue.add(new Pending(null, new Callback() {
+            @Override
+            public void onComplete(long bytesTransferred) {
+                drained.countDown();
+            }
+
+            @Override
+            public void onError(Exception error) {
+                drained.countDown();
+            }
+        }));
+
+        while (!drained.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            Thread running = runningJobThread;
+            if (running != null) {
+                running.interrupt();
+            }
+        }
+
+        transport = null;
+        state.set(State.DISCONNECTED);
+        return true;
+    }
+
+    // ==================== JOBS ====================
+
+    /**
+     * Enfileira um job. O callback é chamado na thread escritora.
+     */
+    void submit(Job job, Callback callback) {
+        if (shutdown || !isReady()) {
+            callback.onError(new IOException("Impressora não conectada"));
+            return;
+        }
+        queue.add(new Pending(job, callback));
+    }
+
+    /**
+     * Encerra a thread escritora (plugin destruído)
+     */
+    void shutdown() {
+        shutdown = true;
+        writer.interrupt();
+    }
+
+    private void writerLoop() {
+        while (!shutdown) {
+            Pending pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            if (pending.job == null) {
+                pending.callback.onComplete(0);
+                continue;
+            }
+
+            if (!state.compareAndSet(State.READY, State.PRINTING) && state.get() != State.PRINTING) {
+                pending.callback.onError(new IOException("Impressão cancelada: impressora desconectando"));
+                continue;
+            }
+
+            PrinterTransport current = transport;
+            if (current == null) {
+                pending.callback.onError(new IOException("Impressora não conectada"));
+                continue;
+            }
+
+            try {
+                runningJobThread = Thread.currentThread();
+                long sent = pending.job.run(current);
+                pending.callback.onComplete(sent);
+            } catch (Exception e) {
+                pending.callback.onError(e);
+            } finally {
+                runningJobThread = null;
+                // Limpa interrupção de um drain para não afetar o próximo job
+                Thread.interrupted();
+            }
+
+            if (queue.isEmpty()) {
+                state.compareAndSet(State.PRINTING, State.READY);
+            }
+        }
+
+        Pending left;
+        while ((left = queue.poll()) != null) {
+            if (left.job == null) {
+                left.callback.onComplete(0);
+            } else {
+                left.callback.onError(new IOException("Plugin finalizado"));
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+
+/**
+ * Destino dos bytes ESC/POS
+ *
+ * Mesmo papel do endpoint OUT USB (UsbPrinterTransport), mas permite
+ * substituir a impressora física pela VirtualEscPosPrinter em testes de
+ * carga numa JVM comum, sem Android.
+ */
+interface PrinterTransport {
+
+    // bulkTransfer aceita no máximo 16KB por chamada em Android < 9
+    int MAX_BULK_CHUNK = 16384;
+
+    /**
+     * Mesma semântica de UsbDeviceConnection.bulkTransfer:
+     * retorna os bytes aceitos ou valor negativo em erro/timeout
+     */
+    int write(byte[] data, int offset, int length, int timeoutMs);
+
+    /**
+     * Maior bloco por write (chunkSize do perfil da impressora)
+     */
+    default int maxChunk() {
+        return MAX_BULK_CHUNK;
+    }
+
+    /**
+     * Escreve o buffer inteiro em blocos de até maxChunk()
+     */
+    static void writeFully(PrinterTransport transport, byte[] data, int offset, int length,
+                           int timeoutMs, TraceBuffer trace) throws IOException {
+        int end = offset + length;
+        int chunk = transport.maxChunk();
+        while (offset < end) {
+            int len = Math.min(chunk, end - offset);
+            int sent = transport.write(data, offset, len, timeoutMs);
+            if (sent <= 0) {
+                trace.record(TraceBuffer.EV_BULK_FAIL, len, sent);
+                throw new IOException("bulkTransfer failed: " + sent);
+            }
+            trace.record(TraceBuffer.EV_BULK_WRITE, len, sent);
+            offset += sent;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package app.lovable.ossyncprint;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estado do aquecimento em segundo plano feito em load()
+ *
+ * Com warmUpOnLoad ativo, a enumeração USB, a reconexão à última
+ * impressora (se a permissão já foi concedida) e a codificação dos
+ * templates acontecem logo na abertura do app, fora da thread principal.
+ * O primeiro cupom do dia não paga mais os sleeps do connectWithReset.
+ */
+final class PrinterWarmUp {
+
+    enum Phase {
+        DISABLED,
+        RUNNING,
+        READY,
+        NO_DEVICE,
+        NO_PERMISSION,
+        FAILED
+    }
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final long loadedAtNanos = System.nanoTime();
+
+    private volatile Phase phase = Phase.DISABLED;
+    private volatile long connectMillis = -1;
+    private volatile long timeToReadyMillis = -1;
+    private volatile int templatesEncoded = 0;
+    private volatile String error;
+
+    void begin() {
+        phase = Phase.RUNNING;
+    }
+
+    void connectFinished() {
+        connectMillis = elapsedMillis();
+    }
+
+    void templatesEncoded(int count) {
+        templatesEncoded = count;
+    }
+
+    void finish(Phase result, String error) {
+        this.error = error;
+        this.timeToReadyMillis = elapsedMillis();
+        this.phase = result;
+        done.countDown();
+    }
+
+    /**
+     * Espera o aquecimento terminar (retorna na hora se não está rodando)
+     */
+    boolean await(long timeoutMs) throws InterruptedException {
+        return phase != Phase.RUNNING || done.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Tempo desde load() até a impressora conectada (-1 se não conectou)
+     */
+    long getConnectMillis() {
+        return connectMillis;
+    }
+
+    /**
+     * Tempo desde load() até o fim do aquecimento (-1 se ainda rodando)
+     */
+    long getTimeToReadyMillis() {
+        return timeToReadyMillis;
+    }
+
+    int getTemplatesEncoded() {
+        return templatesEncoded;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadedAtNanos);
+    }
+}
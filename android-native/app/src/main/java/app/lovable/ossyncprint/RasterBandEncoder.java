@@ -0,0 +1,306 @@
+package app.lovable.ossyncprint;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Renderização raster em faixas (bands) de altura fixa
+ *
+ * Em vez de montar o cupom inteiro num único bitmap (dezenas de MB nos
+ * tablets com pouca RAM), a imagem é lida, convertida para 1 bit
+ * (Floyd-Steinberg) e empacotada como GS v 0 uma faixa por vez. O erro
+ * de difusão da última linha é carregado para a faixa seguinte, então
+ * não aparecem emendas entre faixas.
+ *
+ * streamBands() usa dois buffers: enquanto uma faixa está sendo
+ * transferida, a próxima é processada numa thread de trabalho. A memória
+ * fica constante, independente do comprimento do cupom.
+ *
+ * Modelos sem GS v 0 (perfil com raster ESC_STAR) recebem cada faixa como
+ * ESC * 33: 24 linhas em colunas de 3 bytes, com espaçamento de 24 dots
+ * só durante a faixa.
+ */
+final class RasterBandEncoder {
+
+    /**
+     * Fornece os pixels ARGB de um intervalo de linhas já na largura final
+     */
+    interface BandSource {
+        void readRows(int y, int rows, int[] argb) throws IOException;
+    }
+
+    static final int DEFAULT_BAND_HEIGHT = 24;
+
+    private static final int HEADER_SIZE = 8;
+    // ESC * 33 imprime exatamente 24 linhas por comando
+    private static final int COLUMN_BAND_HEIGHT = 24;
+    // ESC 3 24 + ESC * 33 nL nH ... + LF + ESC 2
+    private static final int COLUMN_OVERHEAD = 3 + 5 + 1 + 2;
+    private static final int BLACK_THRESHOLD = 128;
+
+    // Marcador de fim/erro na fila de faixas prontas (comparado por referência)
+    private static final byte[] END_OF_BANDS = new byte[0];
+
+    private final int width;
+    private final int bytesPerRow;
+    private final PrinterProfile.RasterMode mode;
+    private int[] errorCurrent;
+    private int[] errorNext;
+    // ESC *: faixa em linhas de 1 bit antes da transposição para colunas
+    private byte[] rowBits;
+
+    RasterBandEncoder(int width) {
+        this(width, PrinterProfile.RasterMode.GSV0);
+    }
+
+    RasterBandEncoder(int width, PrinterProfile.RasterMode mode) {
+        this.width = width;
+        this.bytesPerRow = (width + 7) / 8;
+        this.mode = mode;
+        // +2 para o vizinho à esquerda/direita nas bordas
+        this.errorCurrent = new int[width + 2];
+        this.errorNext = new int[width + 2];
+    }
+
+    /**
+     * Altura de faixa efetiva: ESC * sempre usa 24 linhas
+     */
+    static int bandHeight(PrinterProfile.RasterMode mode, int requested) {
+        return mode == PrinterProfile.RasterMode.ESC_STAR ? COLUMN_BAND_HEIGHT : Math.max(1, requested);
+    }
+
+    int bandCapacity(int bandHeight) {
+        return bandLength(bandHeight);
+    }
+
+    /**
+     * Bytes de uma faixa com rows linhas
+     */
+    int bandLength(int rows) {
+        if (mode == PrinterProfile.RasterMode.ESC_STAR) {
+            return COLUMN_OVERHEAD + 3 * width;
+        }
+        return HEADER_SIZE + bytesPerRow * rows;
+    }
+
+    /**
+     * Total de bytes da imagem (para progresso/ETA)
+     */
+    static long imageLength(int width, int height, int bandHeight, PrinterProfile.RasterMode mode) {
+        int band = bandHeight(mode, bandHeight);
+        RasterBandEncoder encoder = new RasterBandEncoder(width, mode);
+        long bands = (height + band - 1) / band;
+        if (mode == PrinterProfile.RasterMode.ESC_STAR) {
+            return bands * encoder.bandLength(band);
+        }
+        return (long) encoder.bytesPerRow * height + (long) HEADER_SIZE * bands;
+    }
+
+    /**
+     * Converte uma faixa para 1 bit e grava no modo do encoder. Retorna o tamanho.
+     */
+    int encodeBand(int[] argb, int rows, byte[] out) {
+        if (mode == PrinterProfile.RasterMode.ESC_STAR) {
+            return encodeColumns(argb, rows, out);
+        }
+        out[0] = 0x1D;
+        out[1] = 0x76;
+        out[2] = 0x30;
+        out[3] = 0x00;
+        out[4] = (byte) (bytesPerRow & 0xFF);
+        out[5] = (byte) ((bytesPerRow >> 8) & 0xFF);
+        out[6] = (byte) (rows & 0xFF);
+        out[7] = (byte) ((rows >> 8) & 0xFF);
+        return dither(argb, rows, out, HEADER_SIZE);
+    }
+
+    /**
+     * ESC 3 24, ESC * 33 nL nH com 3 bytes por coluna (bit 7 = linha de cima), LF, ESC 2
+     */
+    private int encodeColumns(int[] argb, int rows, byte[] out) {
+        if (rowBits == null) {
+            rowBits = new byte[bytesPerRow * COLUMN_BAND_HEIGHT];
+        }
+        Arrays.fill(rowBits, (byte) 0);
+        dither(argb, Math.min(rows, COLUMN_BAND_HEIGHT), rowBits, 0);
+
+        int pos = 0;
+        out[pos++] = 0x1B;
+        out[pos++] = 0x33;
+        out[pos++] = COLUMN_BAND_HEIGHT;
+        out[pos++] = 0x1B;
+        out[pos++] = 0x2A;
+        out[pos++] = 33;
+        out[pos++] = (byte) (width & 0xFF);
+        out[pos++] = (byte) ((width >> 8) & 0xFF);
+        for (int x = 0; x < width; x++) {
+            int byteIndex = x >> 3;
+            int mask = 0x80 >> (x & 7);
+            for (int k = 0; k < 3; k++) {
+                int column = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    if ((rowBits[(k * 8 + bit) * bytesPerRow + byteIndex] & mask) != 0) {
+                        column |= 0x80 >> bit;
+                    }
+                }
+                out[pos++] = (byte) column;
+            }
+        }
+        out[pos++] = 0x0A;
+        out[pos++] = 0x1B;
+        out[pos++] = 0x32;
+        return pos;
+    }
+
+    /**
+     * Floyd-Steinberg das linhas da faixa, empacotadas 8 pixels por byte a partir de pos
+     */
+    private int dither(int[] argb, int rows, byte[] out, int pos) {
+        for (int y = 0; y < rows; y++) {
+            int[] err = errorCurrent;
+            int[] next = errorNext;
+            Arrays.fill(next, 0);
+
+            int rowBase = y * width;
+            int packed = 0;
+            for (int x = 0; x < width; x++) {
+                int gray = luminance(argb[rowBase + x]) + err[x + 1] / 16;
+                int value = gray < BLACK_THRESHOLD ? 0 : 255;
+                int e = gray - value;
+
+                // Floyd-Steinberg: 7/16 direita, 3/16 baixo-esq, 5/16 baixo, 1/16 baixo-dir
+                err[x + 2] += e * 7;
+                next[x] += e * 3;
+                next[x + 1] += e * 5;
+                next[x + 2] += e;
+
+                packed <<= 1;
+                if (value == 0) {
+                    packed |= 1;
+                }
+                if ((x & 7) == 7) {
+                    out[pos++] = (byte) packed;
+                    packed = 0;
+                }
+            }
+            if ((width & 7) != 0) {
+                out[pos++] = (byte) (packed << (8 - (width & 7)));
+            }
+
+            // A linha "próxima" vira a atual, inclusive entre faixas
+            errorCurrent = next;
+            errorNext = err;
+        }
+        return pos;
+    }
+
+    /**
+     * Luminância com alpha composto sobre papel branco
+     */
+    private static int luminance(int argb) {
+        int a = (argb >>> 24) & 0xFF;
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        int lum = (r * 299 + g * 587 + b * 114) / 1000;
+        return 255 - (a * (255 - lum)) / 255;
+    }
+
+    /**
+     * Codifica a imagem inteira em out, faixa a faixa (usado quando a
+     * codificação já roda fora da thread de transferência, ex.: printBatch)
+     */
+    static void encodeAll(BandSource source, int width, int height, int bandHeight, EscPosBuffer out)
+            throws IOException {
+        encodeAll(source, width, height, bandHeight, PrinterProfile.RasterMode.GSV0, out);
+    }
+
+    static void encodeAll(BandSource source, int width, int height, int bandHeight,
+                          PrinterProfile.RasterMode mode, EscPosBuffer out) throws IOException {
+        int band = bandHeight(mode, bandHeight);
+        RasterBandEncoder encoder = new RasterBandEncoder(width, mode);
+        int[] argb = new int[width * band];
+        byte[] buffer = new byte[encoder.bandCapacity(band)];
+        for (int y = 0; y < height; y += band) {
+            int rows = Math.min(band, height - y);
+            source.readRows(y, rows, argb);
+            out.write(buffer, 0, encoder.encodeBand(argb, rows, buffer));
+        }
+    }
+
+    /**
+     * Processa e transfere a imagem faixa a faixa com dois buffers
+     * reutilizáveis. Retorna o total de bytes enviados.
+     */
+    static long streamBands(final BandSource source, final int width, final int height, int bandHeight,
+                            PrinterProfile.RasterMode mode, PrintStreamSession.ChunkWriter writer)
+            throws IOException, InterruptedException {
+        final int band = bandHeight(mode, bandHeight);
+        final RasterBandEncoder encoder = new RasterBandEncoder(width, mode);
+        final ArrayBlockingQueue<byte[]> free = new ArrayBlockingQueue<>(2);
+        final ArrayBlockingQueue<byte[]> ready = new ArrayBlockingQueue<>(3);
+        free.add(new byte[encoder.bandCapacity(band)]);
+        free.add(new byte[encoder.bandCapacity(band)]);
+
+        // Qualquer falha do worker (inclusive RuntimeException/OOM do
+        // decoder de bitmap) precisa chegar ao job, senão o END_OF_BANDS
+        // do finally pareceria um fim normal da imagem
+        final Throwable[] failure = new Throwable[1];
+        Thread worker = new Thread(() -> {
+            int[] argb = new int[width * band];
+            try {
+                for (int y = 0; y < height; y += band) {
+                    int rows = Math.min(band, height - y);
+                    byte[] buffer = free.take();
+                    source.readRows(y, rows, argb);
+                    encoder.encodeBand(argb, rows, buffer);
+                    ready.put(buffer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                failure[0] = t;
+            } finally {
+                ready.offer(END_OF_BANDS);
+            }
+        }, "RasterBands");
+        worker.setDaemon(true);
+        worker.start();
+
+        long total = 0;
+        boolean truncated = false;
+        try {
+            for (int y = 0; y < height; y += band) {
+                byte[] buffer = ready.take();
+                if (buffer == END_OF_BANDS) {
+                    truncated = true;
+                    break;
+                }
+                int rows = Math.min(band, height - y);
+                int length = encoder.bandLength(rows);
+                writer.write(length == buffer.length ? buffer : Arrays.copyOf(buffer, length));
+                total += length;
+                free.put(buffer);
+            }
+        } finally {
+            worker.interrupt();
+            worker.join();
+        }
+
+        Throwable error = failure[0];
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new IOException("Falha ao codificar faixa: " + error, error);
+        }
+        if (truncated) {
+            throw new IOException("Imagem interrompida após " + total + " bytes");
+        }
+        return total;
+    }
+}
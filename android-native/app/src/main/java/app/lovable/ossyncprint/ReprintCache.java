@@ -0,0 +1,361 @@
+package app.lovable.ossyncprint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache dos bytes finais dos últimos jobs impressos ("segunda via")
+ *
+ * Jobs enviados com orderId têm os bytes transferidos copiados durante a
+ * própria escrita (Capture) e guardados aqui, identificados pelo orderId
+ * e pelo SHA-256 do conteúdo. reprint() reenvia esses bytes sem recodificar
+ * nada e sem o documento atravessar o bridge de novo.
+ *
+ * LRU limitado em número de entradas e em bytes na memória. Ao passar do
+ * limite de memória as entradas mais antigas vão para arquivo (nomeado
+ * pelo hash, então conteúdo repetido ocupa um arquivo só) ou, sem
+ * diretório de spill, são descartadas.
+ */
+final class ReprintCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 32;
+    static final long DEFAULT_MAX_MEMORY_BYTES = 4L * 1024 * 1024;
+    static final int DEFAULT_MAX_ENTRY_BYTES = 2 * 1024 * 1024;
+
+    private static final String EXTENSION = ".bin";
+
+    static final class Entry {
+        final String orderId;
+        final String hash;
+        final int size;
+        final long createdAt;
+        private byte[] data;
+        private int reprints = 0;
+
+        Entry(String orderId, String hash, byte[] data) {
+            this.orderId = orderId;
+            this.hash = hash;
+            this.size = data.length;
+            this.createdAt = System.currentTimeMillis();
+            this.data = data;
+        }
+
+        boolean isSpilled() {
+            return data == null;
+        }
+
+        int getReprints() {
+            return reprints;
+        }
+    }
+
+    /**
+     * Copia o que o job transfere (só o que o transporte aceitou). Passa do
+     * limite de entrada: para de copiar e o job não vai para o cache.
+     */
+    static final class Capture implements PrinterTransport {
+        private final int maxBytes;
+        private final EscPosBuffer buffer = new EscPosBuffer(4096);
+        private PrinterTransport delegate;
+        private boolean overflow = false;
+
+        Capture(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        Capture wrap(PrinterTransport transport) {
+            delegate = transport;
+            buffer.reset();
+            overflow = false;
+            return this;
+        }
+
+        @Override
+        public int write(byte[] data, int offset, int length, int timeoutMs) {
+            int sent = delegate.write(data, offset, length, timeoutMs);
+            if (sent > 0 && !overflow) {
+                if (buffer.size() + sent > maxBytes) {
+                    overflow = true;
+                    buffer.reset();
+                } else {
+                    buffer.write(data, offset, sent);
+                }
+            }
+            return sent;
+        }
+
+        @Override
+        public int maxChunk() {
+            return delegate.maxChunk();
+        }
+
+        /**
+         * Bytes capturados ou null (nada transferido ou acima do limite)
+         */
+        byte[] toByteArray() {
+            return overflow || buffer.size() == 0 ? null : buffer.toByteArray();
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxMemoryBytes;
+    private final int maxEntryBytes;
+    private final File spillDir;
+
+    // Ordem de acesso: o primeiro é o menos usado recentemente
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * spillDir null: sem arquivo, entradas que não cabem na memória são descartadas
+     */
+    ReprintCache(int maxEntries, long maxMemoryBytes, int maxEntryBytes, File spillDir) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxMemoryBytes = Math.max(0, maxMemoryBytes);
+        this.maxEntryBytes = Math.max(1, maxEntryBytes);
+        this.spillDir = spillDir;
+        purgeSpillDir();
+    }
+
+    Capture capture() {
+        return new Capture(maxEntryBytes);
+    }
+
+    /**
+     * Guarda os bytes de um job. Mesmo orderId com o mesmo conteúdo só
+     * renova a entrada; conteúdo diferente substitui a via anterior.
+     */
+    synchronized Entry put(String orderId, byte[] data) {
+        String hash = sha256(data);
+        Entry existing = entries.get(orderId);
+        if (existing != null) {
+            if (existing.hash.equals(hash)) {
+                return existing;
+            }
+            release(entries.remove(orderId));
+        }
+
+        Entry entry = new Entry(orderId, hash, data);
+        entries.put(orderId, entry);
+        memoryBytes += entry.size;
+        trim();
+        return entry;
+    }
+
+    /**
+     * Metadados da entrada (sem ler arquivo) ou null. hash opcional:
+     * se informado, precisa ser a mesma versão.
+     */
+    synchronized Entry find(String orderId, String hash) {
+        Entry entry = entries.get(orderId);
+        if (entry == null || (hash != null && !hash.isEmpty() && !entry.hash.equals(hash))) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry;
+    }
+
+    /**
+     * Bytes da entrada (lidos do arquivo se foi para o disco). Roda na
+     * thread escritora, fora do bridge.
+     */
+    byte[] load(Entry entry) throws IOException {
+        File file;
+        synchronized (this) {
+            entry.reprints++;
+            if (entry.data != null) {
+                return entry.data;
+            }
+            file = spillFile(entry.hash);
+        }
+        if (file == null || !file.isFile()) {
+            throw new IOException("Via não encontrada no cache: " + entry.orderId);
+        }
+        byte[] data = readFile(file);
+        // Conteúdo endereçado pelo hash: arquivo truncado/alterado não é impresso
+        if (!sha256(data).equals(entry.hash)) {
+            synchronized (this) {
+                // Só se ainda é a mesma via (pode ter sido substituída nesse meio tempo)
+                if (entries.get(entry.orderId) == entry) {
+                    release(entries.remove(entry.orderId));
+                }
+            }
+            throw new IOException("Via corrompida no cache: " + entry.orderId);
+        }
+        return data;
+    }
+
+    synchronized List<Entry> entries() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        // Mais recente primeiro
+        java.util.Collections.reverse(list);
+        return list;
+    }
+
+    synchronized void clear() {
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            release(entries.remove(entry.orderId));
+        }
+        memoryBytes = 0;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    int getMaxEntries() {
+        return maxEntries;
+    }
+
+    boolean isSpillEnabled() {
+        return spillDir != null;
+    }
+
+    // ==================== LIMITES ====================
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            release(eldest);
+        }
+
+        it = entries.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (eldest.data == null) {
+                continue;
+            }
+            if (spill(eldest)) {
+                memoryBytes -= eldest.size;
+                eldest.data = null;
+            } else {
+                it.remove();
+                release(eldest);
+            }
+        }
+    }
+
+    private boolean spill(Entry entry) {
+        File file = spillFile(entry.hash);
+        if (file == null) {
+            return false;
+        }
+        if (file.isFile() && file.length() == entry.size) {
+            return true;
+        }
+        if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+            return false;
+        }
+        File tmp = new File(spillDir, entry.hash + EXTENSION + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(entry.data);
+        } catch (IOException e) {
+            tmp.delete();
+            return false;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Entrada já removida do mapa: libera memória e o arquivo, se nenhuma
+     * outra entrada usa o mesmo conteúdo. Uma entrada ainda em memória
+     * também pode ter arquivo: outra via com o mesmo hash foi para o disco
+     * antes e já saiu do cache.
+     */
+    private void release(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (entry.data != null) {
+            memoryBytes -= entry.size;
+            entry.data = null;
+        }
+        for (Entry other : entries.values()) {
+            if (other.hash.equals(entry.hash)) {
+                return;
+            }
+        }
+        File file = spillFile(entry.hash);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+     * O índice só existe em memória: arquivos de uma execução anterior
+     * não têm mais entrada que aponte para eles
+     */
+    private void purgeSpillDir() {
+        File[] files = spillDir == null ? null : spillDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private File spillFile(String hash) {
+        return spillDir == null ? null : new File(spillDir, hash + EXTENSION);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int off = 0;
+            while (off < data.length) {
+                int read = in.read(data, off, data.length - off);
+                if (read < 0) {
+                    throw new IOException("Arquivo de cache truncado: " + file.getName());
+                }
+                off += read;
+            }
+        }
+        return data;
+    }
+
+    static String sha256(byte[] data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(data);
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
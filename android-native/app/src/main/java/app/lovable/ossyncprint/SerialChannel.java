@@ -0,0 +1,64 @@
+package app.lovable.ossyncprint;
+
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbEndpoint;
+
+/**
+ * Operações USB de que os drivers USB-serial precisam
+ *
+ * Separado de UsbDeviceConnection para que Ch340SerialTransport e
+ * CdcAcmSerialTransport rodem contra um adaptador simulado
+ * (VirtualSerialAdapter) que registra os controlTransfer enviados.
+ */
+interface SerialChannel {
+
+    /**
+     * Mesma semântica de UsbDeviceConnection.controlTransfer
+     */
+    int controlTransfer(int requestType, int request, int value, int index, byte[] buffer, int length,
+                        int timeoutMs);
+
+    /**
+     * bulkTransfer no endpoint OUT: bytes aceitos ou negativo em erro/timeout
+     */
+    int bulkOut(byte[] data, int offset, int length, int timeoutMs);
+
+    /**
+     * bulkTransfer no endpoint IN (XON/XOFF vindos da impressora):
+     * bytes lidos, 0 ou negativo se nada chegou no prazo
+     */
+    int bulkIn(byte[] buffer, int length, int timeoutMs);
+
+    /**
+     * false quando o adaptador não tem endpoint IN (sem XON/XOFF)
+     */
+    boolean hasInput();
+
+    static SerialChannel usb(final UsbDeviceConnection connection, final UsbEndpoint endpointOut,
+                             final UsbEndpoint endpointIn) {
+        return new SerialChannel() {
+            @Override
+            public int controlTransfer(int requestType, int request, int value, int index, byte[] buffer,
+                                       int length, int timeoutMs) {
+                return connection.controlTransfer(requestType, request, value, index, buffer, length, timeoutMs);
+            }
+
+            @Override
+            public int bulkOut(byte[] data, int offset, int length, int timeoutMs) {
+                return connection.bulkTransfer(endpointOut, data, offset, length, timeoutMs);
+            }
+
+            @Override
+            public int bulkIn(byte[] buffer, int length, int timeoutMs) {
+                // timeout 0 no Android é espera infinita
+                return endpointIn == null ? -1
+                    : connection.bulkTransfer(endpointIn, buffer, 0, length, Math.max(1, timeoutMs));
+            }
+
+            @Override
+            public boolean hasInput() {
+                return endpointIn != null;
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package app.lovable.ossyncprint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Segmentos fixos de cupom (cabeçalho, logo, rodapé) salvos pelo JS
+ *
+ * A definição (JSON no formato de um job de printBatch) fica em disco no
+ * armazenamento do app; os bytes ESC/POS codificados ficam em memória.
+ * O aquecimento em load() codifica todos antes do primeiro cupom, então
+ * um logo raster não é pontilhado de novo a cada impressão.
+ */
+final class TemplateStore {
+
+    private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String EXTENSION = ".json";
+
+    private final File dir;
+    private final Map<String, byte[]> encoded = new ConcurrentHashMap<>();
+
+    TemplateStore(File dir) {
+        this.dir = dir;
+    }
+
+    static boolean isValidName(String name) {
+        return name != null && VALID_NAME.matcher(name).matches();
+    }
+
+    void save(String name, String definition) throws IOException {
+        checkName(name);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Não foi possível criar " + dir);
+        }
+        File tmp = new File(dir, name + EXTENSION + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(definition.getBytes(StandardCharsets.UTF_8));
+        }
+        if (!tmp.renameTo(new File(dir, name + EXTENSION))) {
+            tmp.delete();
+            throw new IOException("Falha ao salvar template " + name);
+        }
+        encoded.remove(name);
+    }
+
+    String read(String name) throws IOException {
+        checkName(name);
+        File file = new File(dir, name + EXTENSION);
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int off = 0;
+            while (off < data.length) {
+                int read = in.read(data, off, data.length - off);
+                if (read < 0) {
+                    break;
+                }
+                off += read;
+            }
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    boolean delete(String name) {
+        if (!isValidName(name)) {
+            return false;
+        }
+        encoded.remove(name);
+        return new File(dir, name + EXTENSION).delete();
+    }
+
+    List<String> names() {
+        List<String> names = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String fileName = file.getName();
+                if (fileName.endsWith(EXTENSION)) {
+                    names.add(fileName.substring(0, fileName.length() - EXTENSION.length()));
+                }
+            }
+        }
+        return names;
+    }
+
+    byte[] getEncoded(String name) {
+        return encoded.get(name);
+    }
+
+    void putEncoded(String name, byte[] data) {
+        encoded.put(name, data);
+    }
+
+    /**
+     * Descarta os bytes codificados (ex.: largura de impressão mudou)
+     */
+    void invalidate() {
+        encoded.clear();
+    }
+
+    int encodedCount() {
+        return encoded.size();
+    }
+
+    private static void checkName(String name) throws IOException {
+        if (!isValidName(name)) {
+            throw new IOException("Nome de template inválido: " + name);
+        }
+    }
+}
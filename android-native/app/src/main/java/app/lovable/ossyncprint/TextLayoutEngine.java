@@ -0,0 +1,399 @@
+package app.lovable.ossyncprint;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Layout de texto em colunas da impressora conectada
+ *
+ * Recebe linhas lógicas (parágrafo, chave/valor, tabela, separador) e
+ * grava direto no EscPosBuffer já alinhadas às colunas do perfil
+ * (PrinterProfile.columns na fonte normal), com quebra por palavra.
+ * Substitui o preenchimento com espaços feito no JS contra uma largura
+ * fixa de 40 colunas, que quebrava em impressoras de 32 e 48 colunas.
+ *
+ * Larguras vêm de tabelas pré-calculadas (colunas por byte Latin-1 e
+ * multiplicador por tamanho de fonte); o texto é percorrido por índices,
+ * sem substring nem String intermediária.
+ */
+final class TextLayoutEngine {
+
+    enum Align {
+        LEFT,
+        CENTER,
+        RIGHT
+    }
+
+    /**
+     * Tamanho via ESC ! (mesmos bits de CMD_NORMAL_SIZE/CMD_DOUBLE_SIZE)
+     */
+    enum Size {
+        NORMAL(0x00, 1),
+        TALL(0x10, 1),
+        WIDE(0x20, 2),
+        DOUBLE(0x30, 2);
+
+        final int mode;
+        final int widthScale;
+
+        Size(int mode, int widthScale) {
+            this.mode = mode;
+            this.widthScale = widthScale;
+        }
+    }
+
+    // Colunas ocupadas por byte Latin-1 na fonte A: controles não imprimem
+    private static final byte[] WIDTHS = new byte[256];
+
+    static {
+        for (int c = 0; c < 256; c++) {
+            WIDTHS[c] = (byte) (c < 0x20 || (c >= 0x7F && c < 0xA0) ? 0 : 1);
+        }
+    }
+
+    private final EscPosBuffer out;
+    private final int columns;
+    // null = desconhecido: um job anterior pode ter deixado outro tamanho/negrito
+    private Size size = null;
+    private Boolean bold = null;
+
+    /**
+     * @param columns colunas na fonte normal (PrinterProfile.columns)
+     */
+    TextLayoutEngine(EscPosBuffer out, int columns) {
+        this.out = out;
+        this.columns = Math.max(1, columns);
+    }
+
+    /**
+     * Colunas disponíveis no tamanho de fonte informado
+     */
+    int columns(Size size) {
+        return Math.max(1, columns / size.widthScale);
+    }
+
+    /**
+     * Parágrafo com quebra por palavra; '\n' no texto força nova linha
+     */
+    void text(CharSequence text, Align align, Size size, boolean bold) {
+        style(size, bold);
+        int width = columns(size);
+        int pos = 0;
+        int end = text.length();
+        do {
+            int lineEnd = lineEnd(text, pos, end, width);
+            writeAligned(text, pos, trimEnd(text, pos, lineEnd), width, align);
+            out.write('\n');
+            pos = nextLine(text, lineEnd, end);
+        } while (pos < end);
+    }
+
+    /**
+     * Chave à esquerda, valor à direita. Se não cabem na mesma linha, o
+     * valor vai alinhado à direita nas linhas seguintes.
+     */
+    void keyValue(CharSequence key, CharSequence value, Size size, boolean bold) {
+        style(size, bold);
+        int width = columns(size);
+        int keyWidth = width(key, 0, key.length());
+        int valueWidth = width(value, 0, value.length());
+        if (keyWidth + 1 + valueWidth <= width) {
+            writeRange(key, 0, key.length());
+            pad(width - keyWidth - valueWidth);
+            writeRange(value, 0, value.length());
+            out.write('\n');
+            return;
+        }
+        text(key, Align.LEFT, size, bold);
+        if (value.length() > 0) {
+            text(value, Align.RIGHT, size, bold);
+        }
+    }
+
+    /**
+     * Linha de tabela: cada célula quebra dentro da própria coluna e a
+     * linha lógica ocupa quantas linhas físicas a célula mais longa precisar.
+     *
+     * @param weights larguras relativas das colunas (null = iguais)
+     * @param aligns  alinhamento por coluna (null = esquerda; a última à direita)
+     */
+    void columns(CharSequence[] cells, int[] weights, Align[] aligns, Size size, boolean bold) {
+        int count = cells.length;
+        if (count == 0) {
+            return;
+        }
+        style(size, bold);
+        int[] widths = columnWidths(count, weights, columns(size));
+        int[] pos = new int[count];
+        boolean pending = true;
+        while (pending) {
+            pending = false;
+            for (int i = 0; i < count; i++) {
+                CharSequence cell = cells[i];
+                int end = cell.length();
+                int lineEnd = lineEnd(cell, pos[i], end, widths[i]);
+                Align align = aligns != null && i < aligns.length && aligns[i] != null ? aligns[i]
+                    : (i == count - 1 && count > 1 ? Align.RIGHT : Align.LEFT);
+                boolean last = i == count - 1;
+                // Última coluna sem preenchimento à direita
+                writeCell(cell, pos[i], trimEnd(cell, pos[i], lineEnd), widths[i], align, !last);
+                if (!last) {
+                    out.write(' ');
+                }
+                pos[i] = pos[i] < end ? nextLine(cell, lineEnd, end) : end;
+                pending |= pos[i] < end;
+            }
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Linha inteira de um caractere ('-' ou '=' nos cupons)
+     */
+    void separator(char c, Size size) {
+        style(size, false);
+        int width = columns(size);
+        byte b = (byte) (c <= 0xFF && WIDTHS[c] != 0 ? c : '-');
+        for (int i = 0; i < width; i++) {
+            out.write(b);
+        }
+        out.write('\n');
+    }
+
+    void feed(int lines) {
+        for (int i = 0; i < lines; i++) {
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Início do documento: alinhamento à esquerda (o alinhamento aqui é
+     * feito com espaços) e fonte normal sem negrito, sem depender do que
+     * jobs anteriores deixaram ligado
+     */
+    void begin() {
+        out.write(0x1B).write(0x61).write(0x00);
+        size = null;
+        bold = null;
+        style(Size.NORMAL, false);
+    }
+
+    /**
+     * Volta a fonte normal sem negrito (fim do documento)
+     */
+    void reset() {
+        style(Size.NORMAL, false);
+    }
+
+    /**
+     * Linhas vindas do JS (printLayout, job "layout" do printBatch):
+     *
+     * { type: "text", text, align?, size?, bold? }
+     * { type: "keyValue", key, value, size?, bold? }
+     * { type: "columns", cells: [...], widths?: [...], align?: [...], size?, bold? }
+     * { type: "separator", char?: "-" }
+     * { type: "feed", lines?: 1 }
+     */
+    void rows(JSONArray rows) throws JSONException {
+        begin();
+        for (int i = 0; i < rows.length(); i++) {
+            JSONObject row = rows.getJSONObject(i);
+            String type = row.optString("type", "text");
+            Size size = parseSize(row.optString("size", "normal"));
+            boolean bold = row.optBoolean("bold", false);
+            switch (type) {
+                case "text":
+                    text(row.optString("text", ""), parseAlign(row.optString("align", "left")), size, bold);
+                    break;
+                case "keyValue":
+                    keyValue(row.optString("key", ""), row.optString("value", ""), size, bold);
+                    break;
+                case "columns":
+                    JSONArray cells = row.getJSONArray("cells");
+                    JSONArray widths = row.optJSONArray("widths");
+                    JSONArray aligns = row.optJSONArray("align");
+                    CharSequence[] texts = new CharSequence[cells.length()];
+                    int[] weights = widths == null ? null : new int[widths.length()];
+                    Align[] alignments = aligns == null ? null : new Align[aligns.length()];
+                    for (int c = 0; c < texts.length; c++) {
+                        texts[c] = cells.optString(c, "");
+                    }
+                    for (int c = 0; weights != null && c < weights.length; c++) {
+                        weights[c] = widths.optInt(c, 1);
+                    }
+                    for (int c = 0; alignments != null && c < alignments.length; c++) {
+                        alignments[c] = parseAlign(aligns.optString(c, "left"));
+                    }
+                    columns(texts, weights, alignments, size, bold);
+                    break;
+                case "separator":
+                    String c = row.optString("char", "-");
+                    separator(c.isEmpty() ? '-' : c.charAt(0), size);
+                    break;
+                case "feed":
+                    feed(Math.max(0, Math.min(255, row.optInt("lines", 1))));
+                    break;
+                default:
+                    throw new JSONException("Tipo de linha desconhecido: " + type);
+            }
+        }
+        reset();
+    }
+
+    // ==================== MEDIDA E QUEBRA ====================
+
+    static int width(CharSequence text, int start, int end) {
+        int width = 0;
+        for (int i = start; i < end; i++) {
+            width += charWidth(text.charAt(i));
+        }
+        return width;
+    }
+
+    private static int charWidth(char c) {
+        // Fora do Latin-1 vira '?' (ver EscPosBuffer.writeLatin1)
+        return c <= 0xFF ? WIDTHS[c] : 1;
+    }
+
+    /**
+     * Fim (exclusivo) da linha que começa em start: último espaço que cabe
+     * em width colunas, ou corte no meio da palavra se ela sozinha não cabe
+     */
+    static int lineEnd(CharSequence text, int start, int end, int width) {
+        int used = 0;
+        int lastSpace = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                return i;
+            }
+            int w = charWidth(c);
+            if (used + w > width) {
+                if (c == ' ') {
+                    return i;
+                }
+                return lastSpace > start ? lastSpace : Math.max(i, start + 1);
+            }
+            used += w;
+            if (c == ' ') {
+                lastSpace = i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Início da próxima linha: pula os espaços da quebra e um '\n'
+     */
+    private static int nextLine(CharSequence text, int pos, int end) {
+        while (pos < end && text.charAt(pos) == ' ') {
+            pos++;
+        }
+        if (pos < end && text.charAt(pos) == '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end) {
+        while (end > start && text.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Distribui width entre as colunas (1 espaço entre elas) pelos pesos;
+     * a sobra do arredondamento vai para a última
+     */
+    static int[] columnWidths(int count, int[] weights, int width) {
+        int usable = Math.max(count, width - (count - 1));
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += weight(weights, i);
+        }
+        int[] widths = new int[count];
+        int assigned = 0;
+        for (int i = 0; i < count - 1; i++) {
+            widths[i] = Math.max(1, usable * weight(weights, i) / total);
+            assigned += widths[i];
+        }
+        widths[count - 1] = Math.max(1, usable - assigned);
+        return widths;
+    }
+
+    private static int weight(int[] weights, int index) {
+        return weights != null && index < weights.length && weights[index] > 0 ? weights[index] : 1;
+    }
+
+    // ==================== ESCRITA ====================
+
+    private void style(Size size, boolean bold) {
+        if (size != this.size) {
+            out.write(0x1B).write(0x21).write(size.mode);
+            this.size = size;
+        }
+        if (this.bold == null || bold != this.bold) {
+            out.write(0x1B).write(0x45).write(bold ? 1 : 0);
+            this.bold = bold;
+        }
+    }
+
+    private void writeAligned(CharSequence text, int start, int end, int width, Align align) {
+        writeCell(text, start, end, width, align, false);
+    }
+
+    private void writeCell(CharSequence text, int start, int end, int width, Align align, boolean padRight) {
+        if (start == end && !padRight) {
+            return;
+        }
+        int free = Math.max(0, width - width(text, start, end));
+        int left = align == Align.RIGHT ? free : align == Align.CENTER ? free / 2 : 0;
+        pad(left);
+        writeRange(text, start, end);
+        if (padRight) {
+            pad(free - left);
+        }
+    }
+
+    private void writeRange(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c > 0xFF) {
+                out.write('?');
+            } else if (WIDTHS[c] != 0) {
+                out.write(c);
+            }
+        }
+    }
+
+    private void pad(int count) {
+        for (int i = 0; i < count; i++) {
+            out.write(' ');
+        }
+    }
+
+    static Align parseAlign(String value) {
+        if ("center".equalsIgnoreCase(value)) {
+            return Align.CENTER;
+        }
+        if ("right".equalsIgnoreCase(value)) {
+            return Align.RIGHT;
+        }
+        return Align.LEFT;
+    }
+
+    static Size parseSize(String value) {
+        if ("double".equalsIgnoreCase(value) || "large".equalsIgnoreCase(value)) {
+            return Size.DOUBLE;
+        }
+        if ("tall".equalsIgnoreCase(value)) {
+            return Size.TALL;
+        }
+        if ("wide".equalsIgnoreCase(value)) {
+            return Size.WIDE;
+        }
+        return Size.NORMAL;
+    }
+}
@@ -0,0 +1,154 @@
+package app.lovable.ossyncprint;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer de eventos de trace estruturados
+ *
+ * Substitui Log.d com concatenação de strings nos caminhos de transferência.
+ * record() não aloca nada: grava código do evento, timestamp e dois
+ * argumentos primitivos em arrays pré-alocados. Sem lock (seqlock por
+ * slot): cada escritor reserva um slot com getAndIncrement, marca o slot
+ * como em escrita (-(seq + 1)) antes de mexer no conteúdo e publica
+ * seq + 1 por último; o leitor só aceita o evento se encontrar o mesmo
+ * seq + 1 antes e depois de copiar o conteúdo. A decodificação (nomes,
+ * hex, JSON) só acontece em forEach(), quando o JS pede dumpTrace.
+ */
+final class TraceBuffer {
+
+    // ===== Códigos de evento (argumentos a / b) =====
+    static final int EV_CONNECT_ATTEMPT = 1;    // tentativa / máximo
+    static final int EV_CONNECT_OK = 2;         // VID / PID
+    static final int EV_CONNECT_FAIL = 3;       // tentativa / -
+    static final int EV_CONTROL_TRANSFER = 4;   // request / resultado
+    static final int EV_CLAIM = 5;              // estratégia / claimed (1/0)
+    static final int EV_INTERFACE = 6;          // índice / classe
+    static final int EV_ENDPOINT = 7;           // endereço / (tipo << 16) | maxPacket
+    static final int EV_BULK_WRITE = 8;         // tamanho pedido / bytes enviados
+    static final int EV_BULK_FAIL = 9;          // tamanho pedido / código de erro
+    static final int EV_STREAM_OPEN = 10;       // id do stream / máximo de blocos pendentes
+    static final int EV_STREAM_CHUNK = 11;      // seq / tamanho
+    static final int EV_STREAM_CLOSE = 12;      // blocos / bytes
+    static final int EV_DETACH = 13;            // VID / PID
+    static final int EV_DISCONNECT = 14;        // - / -
+    static final int EV_WARM_UP = 15;           // fase / ms desde load()
+    static final int EV_SERIAL_CONFIG = 16;     // velocidade / controle de fluxo (-1 = falhou)
+    static final int EV_INFLATE = 17;           // bytes compactados / descompactados
+
+    private static final String[] EVENT_NAMES = {
+        "unknown",
+        "connectAttempt",
+        "connectOk",
+        "connectFail",
+        "controlTransfer",
+        "claim",
+        "interface",
+        "endpoint",
+        "bulkWrite",
+        "bulkFail",
+        "streamOpen",
+        "streamChunk",
+        "streamClose",
+        "detach",
+        "disconnect",
+        "warmUp",
+        "serialConfig",
+        "inflate",
+    };
+
+    /**
+     * Recebe os eventos decodificados, do mais antigo ao mais recente
+     */
+    interface Visitor {
+        void onEvent(long seq, long timeMillis, String event, long a, long b);
+    }
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final int mask;
+    private final long[] timestamps;
+    private final int[] codes;
+    private final long[] argsA;
+    private final long[] argsB;
+    // seq + 1 do evento publicado em cada slot (0 = vazio, negativo = em escrita)
+    private final AtomicLongArray published;
+    private final AtomicLong cursor = new AtomicLong();
+
+    // Base para converter System.nanoTime() em horário de parede no dump
+    private final long baseWallMillis = System.currentTimeMillis();
+    private final long baseNanos = System.nanoTime();
+
+    TraceBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        timestamps = new long[size];
+        codes = new int[size];
+        argsA = new long[size];
+        argsB = new long[size];
+        published = new AtomicLongArray(size);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    void record(int code, long a, long b) {
+        long seq = cursor.getAndIncrement();
+        int slot = (int) (seq & mask);
+        // getAndSet (leitura volátil): as escritas abaixo não sobem para antes da marca
+        published.getAndSet(slot, -(seq + 1));
+        timestamps[slot] = System.nanoTime();
+        codes[slot] = code;
+        argsA[slot] = a;
+        argsB[slot] = b;
+        published.lazySet(slot, seq + 1);
+    }
+
+    /**
+     * Total de eventos gravados desde o último clear (inclusive os já sobrescritos)
+     */
+    long totalRecorded() {
+        return cursor.get();
+    }
+
+    void clear() {
+        for (int i = 0; i <= mask; i++) {
+            published.set(i, 0);
+        }
+        cursor.set(0);
+    }
+
+    /**
+     * Decodifica os eventos ainda presentes no buffer
+     */
+    void forEach(Visitor visitor) {
+        long end = cursor.get();
+        long start = Math.max(0, end - capacity());
+
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int) (seq & mask);
+            if (published.get(slot) != seq + 1) {
+                continue; // ainda não publicado ou já sobrescrito
+            }
+            long ts = timestamps[slot];
+            int code = codes[slot];
+            long a = argsA[slot];
+            long b = argsB[slot];
+            // CAS como validação (escrita volátil): as leituras acima não descem
+            // para depois dela; falha se outro escritor marcou ou republicou o slot
+            if (!published.compareAndSet(slot, seq + 1, seq + 1)) {
+                continue; // sobrescrito durante a leitura
+            }
+            long timeMillis = baseWallMillis + (ts - baseNanos) / 1_000_000L;
+            visitor.onEvent(seq, timeMillis, eventName(code), a, b);
+        }
+    }
+
+    static String eventName(int code) {
+        if (code > 0 && code < EVENT_NAMES.length) {
+            return EVENT_NAMES[code];
+        }
+        return EVENT_NAMES[0];
+    }
+}
@@ -0,0 +1,31 @@
+package app.lovable.ossyncprint;
+
+import android.hardware.usb.UsbDeviceConnection;
+import android.hardware.usb.UsbEndpoint;
+
+/**
+ * Transporte USB: bulkTransfer no endpoint OUT da interface de impressora,
+ * em blocos do tamanho preferido pelo modelo (PrinterProfile.chunkSize)
+ */
+final class UsbPrinterTransport implements PrinterTransport {
+
+    private final UsbDeviceConnection connection;
+    private final UsbEndpoint endpointOut;
+    private final int chunkSize;
+
+    UsbPrinterTransport(UsbDeviceConnection connection, UsbEndpoint endpointOut, int chunkSize) {
+        this.connection = connection;
+        this.endpointOut = endpointOut;
+        this.chunkSize = Math.max(1, Math.min(MAX_BULK_CHUNK, chunkSize));
+    }
+
+    @Override
+    public int write(byte[] data, int offset, int length, int timeoutMs) {
+        return connection.bulkTransfer(endpointOut, data, offset, length, timeoutMs);
+    }
+
+    @Override
+    public int maxChunk() {
+        return chunkSize;
+    }
+}
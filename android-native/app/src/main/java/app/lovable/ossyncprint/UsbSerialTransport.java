@@ -0,0 +1,272 @@
+package app.lovable.ossyncprint;
+
+import android.hardware.usb.UsbConstants;
+import android.hardware.usb.UsbDevice;
+import android.hardware.usb.UsbInterface;
+
+import java.io.IOException;
+
+/**
+ * Transporte para impressoras atrás de conversor USB-serial (CH340, CDC-ACM)
+ *
+ * Sem a configuração de linha o conversor fica na velocidade de fábrica
+ * (normalmente 9600) ou em velocidade diferente da impressora, e o que
+ * chega na impressora é lixo. open() envia os controlTransfer do chip
+ * (velocidade, bits de dados, paridade, stop bits) e liga DTR/RTS.
+ *
+ * Controle de fluxo: o buffer da impressora serial é pequeno e a UART não
+ * tem NAK como o endpoint USB de impressora. Com RTS/CTS ou XON/XOFF os
+ * blocos ficam limitados a FLOW_CHUNK e cada write espera a impressora
+ * liberar (CTS ativo / sem XOFF pendente), até o timeout do write.
+ */
+abstract class UsbSerialTransport implements PrinterTransport {
+
+    enum Kind {
+        CH340,
+        CDC_ACM
+    }
+
+    enum FlowControl {
+        NONE,
+        RTS_CTS,
+        XON_XOFF
+    }
+
+    static final int VENDOR_QINHENG = 0x1A86;
+
+    // Com controle de fluxo a impressora precisa conseguir parar no meio do bloco
+    static final int FLOW_CHUNK = 256;
+
+    static final int XON = 0x11;
+    static final int XOFF = 0x13;
+
+    static final int CONTROL_TIMEOUT_MS = 1000;
+    private static final long FLOW_POLL_MILLIS = 2;
+
+    /**
+     * Configuração da UART (mesmos códigos de paridade do CDC SET_LINE_CODING)
+     */
+    static final class LineConfig {
+        static final int PARITY_NONE = 0;
+        static final int PARITY_ODD = 1;
+        static final int PARITY_EVEN = 2;
+        static final int PARITY_MARK = 3;
+        static final int PARITY_SPACE = 4;
+        static final String[] PARITY_NAMES = {"none", "odd", "even", "mark", "space"};
+
+        static final LineConfig DEFAULT = new LineConfig(9600, 8, PARITY_NONE, 1, FlowControl.NONE);
+
+        final int baudRate;
+        final int dataBits;
+        final int parity;
+        final int stopBits;
+        final FlowControl flowControl;
+
+        LineConfig(int baudRate, int dataBits, int parity, int stopBits, FlowControl flowControl) {
+            this.baudRate = baudRate;
+            this.dataBits = dataBits;
+            this.parity = parity;
+            this.stopBits = stopBits;
+            this.flowControl = flowControl;
+        }
+
+        LineConfig withBaudRate(int baudRate) {
+            return new LineConfig(baudRate, dataBits, parity, stopBits, flowControl);
+        }
+
+        LineConfig withFlowControl(FlowControl flowControl) {
+            return new LineConfig(baudRate, dataBits, parity, stopBits, flowControl);
+        }
+
+        /**
+         * "none" | "rtsCts" | "xonXoff"; null para valor desconhecido
+         */
+        static FlowControl parseFlowControl(String value) {
+            if ("none".equalsIgnoreCase(value)) {
+                return FlowControl.NONE;
+            }
+            if ("rtsCts".equalsIgnoreCase(value)) {
+                return FlowControl.RTS_CTS;
+            }
+            if ("xonXoff".equalsIgnoreCase(value)) {
+                return FlowControl.XON_XOFF;
+            }
+            return null;
+        }
+
+        static String flowControlName(FlowControl flowControl) {
+            switch (flowControl) {
+                case RTS_CTS:
+                    return "rtsCts";
+                case XON_XOFF:
+                    return "xonXoff";
+                default:
+                    return "none";
+            }
+        }
+
+        /**
+         * "none" | "odd" | "even" | "mark" | "space"; -1 para valor desconhecido
+         */
+        static int parseParity(String value) {
+            for (int i = 0; i < PARITY_NAMES.length; i++) {
+                if (PARITY_NAMES[i].equalsIgnoreCase(value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            return baudRate + " " + dataBits + "NOEMS".charAt(parity) + stopBits + " " + flowControlName(flowControl);
+        }
+    }
+
+    protected final SerialChannel channel;
+    protected final LineConfig config;
+    private final int chunkSize;
+    private final FlowControl flowControl;
+    private final byte[] inBuffer = new byte[64];
+    private boolean xoff = false;
+
+    UsbSerialTransport(SerialChannel channel, LineConfig config, int chunkSize) {
+        this.channel = channel;
+        this.config = config;
+        // XON/XOFF sem endpoint IN: não há como receber o XOFF
+        this.flowControl = config.flowControl == FlowControl.XON_XOFF && !channel.hasInput()
+            ? FlowControl.NONE : config.flowControl;
+        int max = flowControl == FlowControl.NONE ? chunkSize : Math.min(chunkSize, FLOW_CHUNK);
+        this.chunkSize = Math.max(1, Math.min(MAX_BULK_CHUNK, max));
+    }
+
+    /**
+     * Chip do conversor ou null se o dispositivo não é USB-serial
+     */
+    static Kind detect(UsbDevice device) {
+        if (device.getVendorId() == VENDOR_QINHENG) {
+            int pid = device.getProductId();
+            if (pid == 0x7523 || pid == 0x5523 || pid == 0x7522) {
+                return Kind.CH340;
+            }
+        }
+        for (int i = 0; i < device.getInterfaceCount(); i++) {
+            UsbInterface intf = device.getInterface(i);
+            if (intf.getInterfaceClass() == UsbConstants.USB_CLASS_COMM && intf.getInterfaceSubclass() == 2) {
+                return Kind.CDC_ACM;
+            }
+        }
+        return null;
+    }
+
+    static UsbSerialTransport create(Kind kind, SerialChannel channel, LineConfig config, int chunkSize,
+                                     int controlInterface) {
+        return kind == Kind.CH340
+            ? new Ch340SerialTransport(channel, config, chunkSize)
+            : new CdcAcmSerialTransport(channel, config, chunkSize, controlInterface);
+    }
+
+    abstract Kind kind();
+
+    /**
+     * Velocidade, formato do caractere e inicialização do chip
+     */
+    protected abstract void configure() throws IOException;
+
+    protected abstract void setControlLines(boolean dtr, boolean rts) throws IOException;
+
+    /**
+     * CTS atual ou null quando o chip não informa (o conversor trata sozinho)
+     */
+    protected abstract Boolean clearToSend() throws IOException;
+
+    void open() throws IOException {
+        configure();
+        setControlLines(true, true);
+        xoff = false;
+    }
+
+    /**
+     * Derruba DTR/RTS; a conexão USB é fechada pelo plugin
+     */
+    void close() {
+        try {
+            setControlLines(false, false);
+        } catch (IOException ignored) {
+            // Dispositivo já removido
+        }
+    }
+
+    FlowControl getFlowControl() {
+        return flowControl;
+    }
+
+    LineConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public int write(byte[] data, int offset, int length, int timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        try {
+            while (!readyToSend()) {
+                long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                if (remaining <= 0) {
+                    return -1;
+                }
+                Thread.sleep(Math.min(FLOW_POLL_MILLIS, remaining));
+            }
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+        int remaining = (int) Math.max(1, (deadline - System.nanoTime()) / 1_000_000L);
+        return channel.bulkOut(data, offset, length, remaining);
+    }
+
+    @Override
+    public int maxChunk() {
+        return chunkSize;
+    }
+
+    private boolean readyToSend() throws IOException {
+        switch (flowControl) {
+            case RTS_CTS:
+                Boolean cts = clearToSend();
+                return cts == null || cts;
+            case XON_XOFF:
+                pollFlowBytes();
+                return !xoff;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Lê o que a impressora mandou: o último XON/XOFF recebido vale
+     */
+    private void pollFlowBytes() {
+        int read;
+        while ((read = channel.bulkIn(inBuffer, inBuffer.length, 1)) > 0) {
+            for (int i = 0; i < read; i++) {
+                int b = inBuffer[i] & 0xFF;
+                if (b == XOFF) {
+                    xoff = true;
+                } else if (b == XON) {
+                    xoff = false;
+                }
+            }
+        }
+    }
+
+    protected final void control(int requestType, int request, int value, int index, byte[] buffer,
+                                 int length) throws IOException {
+        int result = channel.controlTransfer(requestType, request, value, index, buffer, length,
+            CONTROL_TIMEOUT_MS);
+        if (result < 0) {
+            throw new IOException(String.format("controlTransfer 0x%02X falhou (%d)", request, result));
+        }
+    }
+}
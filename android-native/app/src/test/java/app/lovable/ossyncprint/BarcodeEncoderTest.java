@@ -0,0 +1,144 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Escolha de subconjunto do CODE128 e dígitos verificadores GTIN/ITF/CODE39
+ */
+public class BarcodeEncoderTest {
+
+    @Test
+    public void evenDigitsUseSetC() {
+        assertArrayEquals(new byte[] {'{', 'C', 12, 34, 56}, BarcodeEncoder.code128("123456"));
+    }
+
+    @Test
+    public void textUsesSetB() {
+        assertArrayEquals(ascii("{BPed"), BarcodeEncoder.code128("Ped"));
+    }
+
+    @Test
+    public void digitRunSwitchesToSetC() {
+        byte[] payload = BarcodeEncoder.code128("PED123456");
+
+        // Maiúsculas cabem em A e em B: o empate fica com A
+        assertArrayEquals(new byte[] {'{', 'A', 'P', 'E', 'D', '{', 'C', 12, 34, 56}, payload);
+        // Início, 3 letras, troca e 3 pares; em B seriam 10
+        assertEquals(8, BarcodeEncoder.code128Symbols(payload));
+    }
+
+    @Test
+    public void oddDigitCountCostsOneExtraSymbolOnly() {
+        byte[] payload = BarcodeEncoder.code128("12345");
+
+        // Dois pares em C, uma troca e o último dígito em B (ou o contrário)
+        assertEquals(5, BarcodeEncoder.code128Symbols(payload));
+        assertEquals(11 * 6 + 13, BarcodeEncoder.code128Modules(payload));
+    }
+
+    @Test
+    public void singleControlCharUsesShift() {
+        // SHIFT (2 símbolos) sai mais barato que trocar para A e voltar para B
+        assertArrayEquals(ascii("{Bab{S\tcd"), BarcodeEncoder.code128("ab\tcd"));
+    }
+
+    @Test
+    public void braceIsEscaped() {
+        byte[] payload = BarcodeEncoder.code128("a{b");
+
+        assertArrayEquals(ascii("{Ba{{b"), payload);
+        assertEquals(4, BarcodeEncoder.code128Symbols(payload));
+    }
+
+    @Test
+    public void code128RejectsNonAscii() {
+        try {
+            BarcodeEncoder.code128("Pedido nº 1");
+            fail("não ASCII aceito");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("posição 8"));
+        }
+    }
+
+    @Test
+    public void gtinCheckDigitIsAppended() {
+        assertArrayEquals(ascii("4006381333931"), encode(BarcodeEncoder.Symbology.EAN13, "400638133393"));
+        assertArrayEquals(ascii("96385074"), encode(BarcodeEncoder.Symbology.EAN8, "9638507"));
+        assertArrayEquals(ascii("036000291452"), encode(BarcodeEncoder.Symbology.UPCA, "03600029145"));
+    }
+
+    @Test
+    public void gtinWithCheckDigitIsVerified() {
+        assertArrayEquals(ascii("4006381333931"), encode(BarcodeEncoder.Symbology.EAN13, "4006381333931"));
+        try {
+            encode(BarcodeEncoder.Symbology.EAN13, "4006381333932");
+            fail("verificador errado aceito");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("esperado 1"));
+        }
+    }
+
+    @Test
+    public void gtinRejectsWrongLengthAndLetters() {
+        for (String data : new String[] {"12345", "40063813339A"}) {
+            try {
+                encode(BarcodeEncoder.Symbology.EAN13, data);
+                fail(data + " aceito");
+            } catch (IllegalArgumentException expected) {
+                // esperado
+            }
+        }
+    }
+
+    @Test
+    public void itfPadsToEvenLengthAndAddsCheckDigit() {
+        assertArrayEquals(ascii("012345"), BarcodeEncoder.encode(BarcodeEncoder.Symbology.ITF, "12345", false));
+        // 1234567 + verificador 0: já par
+        assertArrayEquals(ascii("12345670"), BarcodeEncoder.encode(BarcodeEncoder.Symbology.ITF, "1234567", true));
+    }
+
+    @Test
+    public void code39Mod43CheckDigit() {
+        // C=12 O=24 D=13 E=14 3=3 9=9: 75 % 43 = 32 = 'W'
+        assertArrayEquals(ascii("CODE39W"), BarcodeEncoder.encode(BarcodeEncoder.Symbology.CODE39, "code39", true));
+        assertArrayEquals(ascii("CODE39"), BarcodeEncoder.encode(BarcodeEncoder.Symbology.CODE39, "code39", false));
+        try {
+            BarcodeEncoder.encode(BarcodeEncoder.Symbology.CODE39, "A*B", false);
+            fail("'*' aceito no CODE39");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("'*'"));
+        }
+    }
+
+    @Test
+    public void commandCarriesSymbologyAndLength() {
+        EscPosBuffer out = new EscPosBuffer();
+        byte[] payload = BarcodeEncoder.encode(BarcodeEncoder.Symbology.CODE128, "123456", false);
+
+        BarcodeEncoder.writeCommand(out, BarcodeEncoder.Symbology.CODE128, payload);
+
+        assertArrayEquals(new byte[] {0x1D, 0x6B, 73, 5, '{', 'C', 12, 34, 56}, out.toByteArray());
+    }
+
+    @Test
+    public void parseTypeAcceptsAliases() {
+        assertEquals(BarcodeEncoder.Symbology.EAN13, BarcodeEncoder.parseType("ean-13"));
+        assertEquals(BarcodeEncoder.Symbology.ITF, BarcodeEncoder.parseType("ITF_14"));
+        assertEquals(BarcodeEncoder.Symbology.CODE128, BarcodeEncoder.parseType(null));
+    }
+
+    private static byte[] encode(BarcodeEncoder.Symbology symbology, String data) {
+        return BarcodeEncoder.encode(symbology, data, false);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
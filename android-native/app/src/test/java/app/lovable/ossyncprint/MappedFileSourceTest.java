@@ -0,0 +1,155 @@
+package app.lovable.ossyncprint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * resolve() só pode devolver arquivos dentro do armazenamento do app e
+ * fora dos diretórios internos do plugin, qualquer que seja o caminho
+ * mandado pelo JS
+ */
+public class MappedFileSourceTest {
+
+    private static final byte[] CONTENT = "Relatorio\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private Path base;
+    private File files;
+    private File cache;
+    private File[] roots;
+    private File[] excluded;
+
+    @Before
+    public void createDirs() throws IOException {
+        base = Files.createTempDirectory("mapped");
+        files = Files.createDirectory(base.resolve("files")).toFile();
+        cache = Files.createDirectory(base.resolve("cache")).toFile();
+        File templates = Files.createDirectory(base.resolve("files/templates")).toFile();
+        File spill = Files.createDirectory(base.resolve("cache/reprint")).toFile();
+        roots = new File[] {files, cache, null};
+        excluded = new File[] {templates, spill};
+    }
+
+    @After
+    public void deleteDirs() throws IOException {
+        try (Stream<Path> paths = Files.walk(base)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void fileInsideRootResolves() throws IOException {
+        File job = write("files/jobs/relatorio.txt");
+
+        assertEquals(job.getCanonicalFile(), resolve(job.getPath()));
+        assertEquals(job.getCanonicalFile(), resolve(job.toURI().toString()));
+    }
+
+    @Test
+    public void dotDotInsideRootResolves() throws IOException {
+        File job = write("cache/relatorio.txt");
+
+        assertEquals(job.getCanonicalFile(), resolve(cache.getPath() + "/jobs/../relatorio.txt"));
+    }
+
+    @Test
+    public void dotDotEscapingRootIsRejected() throws IOException {
+        write("fora.txt");
+
+        assertRejected(files.getPath() + "/../fora.txt", "fora do armazenamento");
+        assertRejected("file://" + files.getPath() + "/jobs/../../fora.txt", "fora do armazenamento");
+    }
+
+    @Test
+    public void symlinkPointingOutsideIsRejected() throws IOException {
+        File outside = write("fora.txt");
+        Path link = base.resolve("files/link.txt");
+        Files.createSymbolicLink(link, outside.toPath());
+
+        assertRejected(link.toString(), "fora do armazenamento");
+    }
+
+    @Test
+    public void symlinkedDirectoryOutsideIsRejected() throws IOException {
+        write("outro/relatorio.txt");
+        Files.createSymbolicLink(base.resolve("cache/outro"), base.resolve("outro"));
+
+        assertRejected(cache.getPath() + "/outro/relatorio.txt", "fora do armazenamento");
+    }
+
+    @Test
+    public void pluginDirectoriesAreRejected() throws IOException {
+        write("files/templates/cupom.bin");
+        write("cache/reprint/abc.bin");
+
+        assertRejected(files.getPath() + "/templates/cupom.bin", "fora do armazenamento");
+        assertRejected(cache.getPath() + "/reprint/abc.bin", "fora do armazenamento");
+        assertRejected(files.getPath() + "/jobs/../templates/cupom.bin", "fora do armazenamento");
+    }
+
+    @Test
+    public void siblingWithRootPrefixIsRejected() throws IOException {
+        Files.createDirectory(base.resolve("files2"));
+        write("files2/relatorio.txt");
+
+        assertRejected(base.resolve("files2/relatorio.txt").toString(), "fora do armazenamento");
+    }
+
+    @Test
+    public void missingFileAndDirectoryAreRejected() throws IOException {
+        assertRejected(files.getPath() + "/nao-existe.txt", "não encontrado");
+        Files.createDirectory(base.resolve("files/jobs"));
+        assertRejected(files.getPath() + "/jobs", "não encontrado");
+        assertRejected("", "não informado");
+    }
+
+    @Test
+    public void streamDeliversFileInChunks() throws IOException {
+        File job = write("files/relatorio.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] calls = {0};
+
+        long size = MappedFileSource.stream(job, new byte[3], (data, offset, length) -> {
+            assertTrue(length <= 3);
+            calls[0]++;
+            out.write(data, offset, length);
+        });
+
+        assertEquals(CONTENT.length, size);
+        assertEquals((CONTENT.length + 2) / 3, calls[0]);
+        assertArrayEquals(CONTENT, out.toByteArray());
+    }
+
+    private File resolve(String path) throws IOException {
+        return MappedFileSource.resolve(path, roots, excluded);
+    }
+
+    private void assertRejected(String path, String message) {
+        try {
+            resolve(path);
+            fail(path + " aceito");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(message));
+        }
+    }
+
+    private File write(String relative) throws IOException {
+        Path path = base.resolve(relative);
+        Files.createDirectories(path.getParent());
+        return Files.write(path, CONTENT).toFile();
+    }
+}
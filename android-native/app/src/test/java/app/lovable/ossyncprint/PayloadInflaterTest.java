@@ -0,0 +1,178 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Descompactação em fluxo: a entrada chega em pedaços arbitrários (blocos
+ * do printStream), inclusive no meio do cabeçalho e do trailer gzip
+ */
+public class PayloadInflaterTest {
+
+    private static final byte[] REPORT = report();
+
+    @Test
+    public void gzipFedByteByByte() throws Exception {
+        assertArrayEquals(REPORT, inflate(gzip(REPORT), PayloadInflater.Format.GZIP, 1));
+    }
+
+    @Test
+    public void gzipWithFileNameHeaderSplitAcrossFeeds() throws Exception {
+        byte[] payload = gzipWithName(REPORT, "relatorio.txt");
+        for (int chunk : new int[] {3, 11, 17, 4096}) {
+            assertArrayEquals("bloco " + chunk, REPORT, inflate(payload, PayloadInflater.Format.GZIP, chunk));
+        }
+    }
+
+    @Test
+    public void zlibAndRawDeflateInChunks() throws Exception {
+        assertArrayEquals(REPORT, inflate(deflate(REPORT, false), PayloadInflater.Format.DEFLATE, 7));
+        assertArrayEquals(REPORT, inflate(deflate(REPORT, true), PayloadInflater.Format.DEFLATE_RAW, 7));
+    }
+
+    @Test
+    public void gzipCrcMismatchFails() throws Exception {
+        byte[] payload = gzip(REPORT);
+        payload[payload.length - 8] ^= 0x01;
+        try {
+            inflate(payload, PayloadInflater.Format.GZIP, 64);
+            fail("CRC corrompido aceito");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("CRC"));
+        }
+    }
+
+    @Test
+    public void truncatedTrailerFails() throws Exception {
+        byte[] payload = gzip(REPORT);
+        try {
+            inflate(Arrays.copyOf(payload, payload.length - 3), PayloadInflater.Format.GZIP, 64);
+            fail("trailer incompleto aceito");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("incompleto"));
+        }
+    }
+
+    @Test
+    public void notGzipFails() throws Exception {
+        try {
+            inflate(deflate(REPORT, false), PayloadInflater.Format.GZIP, 64);
+            fail("zlib aceito como gzip");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("gzip"));
+        }
+    }
+
+    @Test
+    public void inflaterIsReusedAcrossPayloads() throws Exception {
+        PayloadInflater inflater = new PayloadInflater();
+        try {
+            for (PayloadInflater.Format format : new PayloadInflater.Format[] {
+                    PayloadInflater.Format.GZIP, PayloadInflater.Format.DEFLATE_RAW, PayloadInflater.Format.DEFLATE}) {
+                byte[] payload = format == PayloadInflater.Format.GZIP ? gzip(REPORT)
+                    : deflate(REPORT, format == PayloadInflater.Format.DEFLATE_RAW);
+                assertArrayEquals(format.name(), REPORT, inflate(inflater, payload, format, 100));
+                assertEquals(REPORT.length, inflater.getTotalOut());
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] payload, PayloadInflater.Format format, int chunk) throws IOException {
+        PayloadInflater inflater = new PayloadInflater();
+        try {
+            return inflate(inflater, payload, format, chunk);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] inflate(PayloadInflater inflater, byte[] payload, PayloadInflater.Format format, int chunk)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        inflater.reset(format);
+        for (int offset = 0; offset < payload.length; offset += chunk) {
+            // Cópia: o inflater não pode depender do array do bloco anterior
+            byte[] part = Arrays.copyOfRange(payload, offset, Math.min(payload.length, offset + chunk));
+            inflater.feed(part, 0, part.length, out::write);
+        }
+        inflater.finish();
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * gzip com FNAME (o GZIPOutputStream não grava nome de arquivo)
+     */
+    private static byte[] gzipWithName(byte[] data, String name) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x1F);
+        out.write(0x8B);
+        out.write(8);
+        out.write(0x08);
+        for (int i = 0; i < 6; i++) {
+            out.write(0);
+        }
+        byte[] fileName = name.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(fileName, 0, fileName.length);
+        out.write(0);
+        byte[] body = deflate(data, true);
+        out.write(body, 0, body.length);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writeLe32(out, crc.getValue());
+        writeLe32(out, data.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static void writeLe32(ByteArrayOutputStream out, long value) {
+        for (int i = 0; i < 4; i++) {
+            out.write((int) (value >> (8 * i)) & 0xFF);
+        }
+    }
+
+    /**
+     * Maior que o buffer de 16KB do inflater, para sair em vários blocos
+     */
+    private static byte[] report() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 3 * PayloadInflater.BUFFER_SIZE; i++) {
+            text.append(String.format("Item %-4d Servico tecnico %7.2f\n", i, 10.0 + i % 97));
+        }
+        return text.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,216 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Sequência de blocos, backpressure sem bloquear quem chama e
+ * encerramento (close, abort) do stream
+ */
+public class PrintStreamSessionTest {
+
+    @Test
+    public void chunksArriveInOrderAndCloseCompletesAfterTransfer() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStreamSession stream = new PrintStreamSession("s", 4, data -> out.write(data, 0, data.length));
+        stream.start();
+
+        assertTrue(stream.append(0, bytes("AB"), error -> { }));
+        assertTrue(stream.append(1, bytes("CD"), error -> { }));
+        Done closed = new Done();
+        stream.close(closed);
+
+        assertTrue(closed.await());
+        assertNull(closed.error.get());
+        assertArrayEquals(bytes("ABCD"), out.toByteArray());
+        assertEquals(4, stream.getBytesWritten());
+        assertEquals(2, stream.getChunksWritten());
+        assertTrue(stream.isDone());
+    }
+
+    @Test
+    public void duplicateSeqIsIgnored() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStreamSession stream = new PrintStreamSession("s", 4, data -> out.write(data, 0, data.length));
+        stream.start();
+
+        assertTrue(stream.append(0, bytes("AB"), error -> { }));
+        assertFalse(stream.append(0, bytes("AB"), error -> fail("retransmissão não completa")));
+        assertEquals(1, stream.getNextSeq());
+        Done closed = new Done();
+        stream.close(closed);
+
+        assertTrue(closed.await());
+        assertArrayEquals(bytes("AB"), out.toByteArray());
+    }
+
+    @Test
+    public void seqGapIsRejected() throws Exception {
+        PrintStreamSession stream = new PrintStreamSession("s", 4, data -> { });
+        assertTrue(stream.append(0, bytes("AB"), error -> { }));
+        try {
+            stream.append(2, bytes("EF"), error -> { });
+            fail("lacuna aceita");
+        } catch (IllegalStateException expected) {
+            assertEquals(1, stream.getNextSeq());
+        }
+    }
+
+    /**
+     * Fila cheia: o bloco fica reservado sem bloquear, um segundo é
+     * recusado na hora e o reservado completa quando a impressora anda
+     */
+    @Test
+    public void fullQueueParksOneChunkWithoutBlocking() throws Exception {
+        CountDownLatch printerFree = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStreamSession stream = new PrintStreamSession("s", 1, data -> {
+            writing.countDown();
+            try {
+                printerFree.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            out.write(data, 0, data.length);
+        });
+        stream.start();
+
+        // seq 0 vai para a impressora (parada), seq 1 ocupa a fila
+        Done first = new Done();
+        stream.append(0, bytes("A"), first);
+        assertTrue(first.await());
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        stream.append(1, bytes("B"), error -> { });
+
+        Done parked = new Done();
+        assertTrue(stream.append(2, bytes("C"), parked));
+        assertEquals(1, parked.latch.getCount());
+        try {
+            stream.append(3, bytes("D"), error -> { });
+            fail("segundo bloco reservado aceito");
+        } catch (IOException expected) {
+            assertEquals(3, stream.getNextSeq());
+        }
+
+        printerFree.countDown();
+        assertTrue(parked.await());
+        assertNull(parked.error.get());
+        Done closed = new Done();
+        stream.close(closed);
+        assertTrue(closed.await());
+        assertArrayEquals(bytes("ABC"), out.toByteArray());
+    }
+
+    @Test
+    public void abortCompletesParkedChunkWithError() throws Exception {
+        CountDownLatch never = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        PrintStreamSession stream = new PrintStreamSession("s", 1, data -> {
+            writing.countDown();
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stream.start();
+        stream.append(0, bytes("A"), error -> { });
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        stream.append(1, bytes("B"), error -> { });
+        Done parked = new Done();
+        stream.append(2, bytes("C"), parked);
+
+        stream.abort();
+
+        assertTrue(parked.await());
+        assertNotNull(parked.error.get());
+        assertNotNull(stream.getFailure());
+    }
+
+    /**
+     * Abortado antes do primeiro bloco: o starter (job do escritor) nunca
+     * roda e quem acompanha o job é avisado pelo cancelledBeforeStart
+     */
+    @Test
+    public void abortBeforeStartNeverRunsStarterAndReportsCancel() throws Exception {
+        PrintStreamSession stream = new PrintStreamSession("s", 4, data -> { });
+        AtomicInteger started = new AtomicInteger();
+        stream.setStarter(started::incrementAndGet);
+        Done cancelled = new Done();
+        stream.setCancelledBeforeStart(cancelled);
+
+        stream.abort();
+
+        assertTrue(cancelled.await());
+        assertNotNull(cancelled.error.get());
+        assertTrue(stream.isDone());
+        Done closed = new Done();
+        stream.close(closed);
+        assertTrue(closed.await());
+        assertNotNull(closed.error.get());
+        assertEquals(0, started.get());
+    }
+
+    @Test
+    public void firstAppendRunsStarterOnceAndDisarmsCancel() throws Exception {
+        PrintStreamSession stream = new PrintStreamSession("s", 4, data -> { });
+        AtomicInteger started = new AtomicInteger();
+        stream.setStarter(started::incrementAndGet);
+        Done cancelled = new Done();
+        stream.setCancelledBeforeStart(cancelled);
+
+        stream.append(0, bytes("A"), error -> { });
+        stream.append(1, bytes("B"), error -> { });
+        stream.abort();
+
+        assertEquals(1, started.get());
+        assertEquals(1, cancelled.latch.getCount());
+    }
+
+    @Test
+    public void idleBeforeStartOnlyWithoutChunks() throws Exception {
+        PrintStreamSession idle = new PrintStreamSession("a", 4, data -> { });
+        PrintStreamSession active = new PrintStreamSession("b", 4, data -> { });
+        active.append(0, bytes("A"), error -> { });
+        Thread.sleep(20);
+
+        assertTrue(idle.isIdleBeforeStart(10));
+        assertFalse(idle.isIdleBeforeStart(60000));
+        assertFalse(active.isIdleBeforeStart(10));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static final class Done implements PrintStreamSession.Completion {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<IOException> error = new AtomicReference<>();
+
+        @Override
+        public void onDone(IOException e) {
+            error.set(e);
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drenagem da sessão com um job em execução: o transporte só pode ser
+ * liberado depois que o escritor sai do job, e nada enfileirado antes do
+ * drain pode rodar numa conexão nova
+ */
+public class PrinterSessionTest {
+
+    private static final PrinterTransport SINK = (data, offset, length, timeoutMs) -> length;
+
+    @Test
+    public void drainInterruptsJobAfterTimeout() throws Exception {
+        PrinterSession session = connectedSession();
+        CountDownLatch running = new CountDownLatch(1);
+        Result result = new Result();
+        session.submit(t -> {
+            running.countDown();
+            Thread.sleep(60000);
+            return 0;
+        }, result);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        assertTrue(session.drain(100));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(result.done.await(5, TimeUnit.SECONDS));
+        assertTrue(result.error.get() instanceof InterruptedException);
+        assertEquals(PrinterSession.State.DISCONNECTED, session.getState());
+        session.shutdown();
+    }
+
+    /**
+     * Simula um bulkTransfer que ignora a interrupção: drain não pode
+     * retornar (e liberar a conexão) com o escritor ainda dentro do job
+     */
+    @Test
+    public void drainWaitsForUninterruptibleJobToLeave() throws Exception {
+        PrinterSession session = connectedSession();
+        CountDownLatch running = new CountDownLatch(1);
+        AtomicBoolean left = new AtomicBoolean();
+        session.submit(t -> {
+            running.countDown();
+            spin(400);
+            left.set(true);
+            return 0;
+        }, new Result());
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        assertTrue(session.drain(50));
+
+        assertTrue(left.get());
+        assertNull(session.getTransport());
+        session.shutdown();
+    }
+
+    @Test
+    public void jobsQueuedBeforeDrainNeverRunAfterReconnect() throws Exception {
+        PrinterSession session = connectedSession();
+        CountDownLatch running = new CountDownLatch(1);
+        session.submit(t -> {
+            running.countDown();
+            spin(300);
+            return 0;
+        }, new Result());
+        AtomicBoolean staleRan = new AtomicBoolean();
+        Result stale = new Result();
+        session.submit(t -> {
+            staleRan.set(true);
+            return 0;
+        }, stale);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        assertTrue(session.drain(50));
+        assertTrue(session.beginConnect());
+        session.connected(SINK);
+
+        Result fresh = new Result();
+        session.submit(t -> 7, fresh);
+        assertTrue(fresh.done.await(5, TimeUnit.SECONDS));
+        assertEquals(7, fresh.bytes);
+
+        assertTrue(stale.done.await(0, TimeUnit.SECONDS));
+        assertTrue(stale.error.get() != null);
+        assertFalse(staleRan.get());
+        session.shutdown();
+    }
+
+    @Test
+    public void drainWithoutSessionDoesNothing() throws Exception {
+        PrinterSession session = new PrinterSession();
+        assertFalse(session.drain(10));
+        session.shutdown();
+    }
+
+    private static PrinterSession connectedSession() {
+        PrinterSession session = new PrinterSession();
+        assertTrue(session.beginConnect());
+        session.connected(SINK);
+        return session;
+    }
+
+    private static void spin(long millis) {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (System.nanoTime() < end) {
+            // ocupado, sem ponto de interrupção
+        }
+    }
+
+    private static final class Result implements PrinterSession.Callback {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        volatile long bytes = -1;
+
+        @Override
+        public void onComplete(long bytesTransferred) {
+            bytes = bytesTransferred;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            error.set(e);
+            done.countDown();
+        }
+    }
+}
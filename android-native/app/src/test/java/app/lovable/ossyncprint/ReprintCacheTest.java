@@ -0,0 +1,197 @@
+package app.lovable.ossyncprint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * LRU, spill para arquivo e verificação do hash das vias guardadas
+ */
+public class ReprintCacheTest {
+
+    private File spillDir;
+
+    @Before
+    public void createSpillDir() throws IOException {
+        spillDir = Files.createTempDirectory("reprint").toFile();
+    }
+
+    @After
+    public void deleteSpillDir() {
+        File[] files = spillDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        spillDir.delete();
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        ReprintCache cache = new ReprintCache(2, 1024, 1024, null);
+        cache.put("a", job('a', 10));
+        cache.put("b", job('b', 10));
+        assertNotNull(cache.find("a", null));
+
+        cache.put("c", job('c', 10));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.find("a", null));
+        assertNull(cache.find("b", null));
+        assertNotNull(cache.find("c", null));
+    }
+
+    @Test
+    public void sameContentOnlyRenewsEntry() {
+        ReprintCache cache = new ReprintCache(4, 1024, 1024, null);
+        ReprintCache.Entry first = cache.put("a", job('a', 10));
+
+        assertTrue(first == cache.put("a", job('a', 10)));
+        assertEquals(10, cache.getMemoryBytes());
+
+        ReprintCache.Entry second = cache.put("a", job('x', 12));
+        assertFalse(first.hash.equals(second.hash));
+        assertEquals(12, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void overMemoryLimitSpillsOldestToDisk() throws IOException {
+        ReprintCache cache = new ReprintCache(8, 100, 1024, spillDir);
+        byte[] a = job('a', 80);
+        cache.put("a", a);
+        cache.put("b", job('b', 80));
+
+        ReprintCache.Entry entry = cache.find("a", null);
+        assertTrue(entry.isSpilled());
+        assertTrue(spillFile(a).isFile());
+        assertEquals(80, cache.getMemoryBytes());
+        assertArrayEquals(a, cache.load(entry));
+        assertEquals(1, entry.getReprints());
+    }
+
+    @Test
+    public void withoutSpillDirOldestIsDropped() {
+        ReprintCache cache = new ReprintCache(8, 100, 1024, null);
+        cache.put("a", job('a', 80));
+        cache.put("b", job('b', 80));
+
+        assertNull(cache.find("a", null));
+        assertNotNull(cache.find("b", null));
+        assertEquals(80, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void findWithOtherHashMisses() {
+        ReprintCache cache = new ReprintCache(8, 1024, 1024, null);
+        byte[] a = job('a', 10);
+        cache.put("a", a);
+
+        assertNull(cache.find("a", ReprintCache.sha256(job('b', 10))));
+        assertNotNull(cache.find("a", ReprintCache.sha256(a)));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void corruptedSpillFileIsNotPrinted() throws IOException {
+        ReprintCache cache = new ReprintCache(8, 100, 1024, spillDir);
+        byte[] a = job('a', 80);
+        cache.put("a", a);
+        cache.put("b", job('b', 80));
+        ReprintCache.Entry entry = cache.find("a", null);
+        assertTrue(entry.isSpilled());
+
+        // Mesmo tamanho, conteúdo diferente
+        try (FileOutputStream out = new FileOutputStream(spillFile(a))) {
+            out.write(job('z', 80));
+        }
+
+        try {
+            cache.load(entry);
+            fail("via corrompida impressa");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("corrompida"));
+        }
+        assertNull(cache.find("a", null));
+        assertFalse(spillFile(a).exists());
+    }
+
+    /**
+     * "a" vai para o disco; "d", com o mesmo conteúdo, fica em memória e
+     * herda o arquivo. Quando "d" sai, o arquivo precisa sair junto.
+     */
+    @Test
+    public void releasingInMemoryEntryDeletesSharedSpillFile() {
+        ReprintCache cache = new ReprintCache(8, 200, 1024, spillDir);
+        byte[] shared = job('s', 80);
+        cache.put("a", shared);
+        cache.put("b", job('b', 80));
+        cache.put("c", job('c', 80));
+        assertTrue(cache.find("a", null).isSpilled());
+        cache.put("d", shared);
+        assertFalse(cache.find("d", null).isSpilled());
+
+        // "a" sai, mas "d" ainda usa o conteúdo
+        cache.put("a", job('x', 10));
+        assertTrue(spillFile(shared).isFile());
+
+        cache.put("d", job('y', 10));
+
+        assertFalse(spillFile(shared).exists());
+    }
+
+    @Test
+    public void clearRemovesSpillFiles() {
+        ReprintCache cache = new ReprintCache(8, 100, 1024, spillDir);
+        cache.put("a", job('a', 80));
+        cache.put("b", job('b', 80));
+        cache.put("c", job('c', 80));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryBytes());
+        assertEquals(0, spillDir.listFiles().length);
+    }
+
+    @Test
+    public void captureStopsAboveEntryLimit() {
+        ReprintCache cache = new ReprintCache(8, 1024, 16, null);
+        PrinterTransport sink = (data, offset, length, timeoutMs) -> length;
+        ReprintCache.Capture capture = cache.capture().wrap(sink);
+
+        capture.write(job('a', 10), 0, 10, 1000);
+        assertArrayEquals(job('a', 10), capture.toByteArray());
+        capture.write(job('a', 10), 0, 10, 1000);
+        assertNull(capture.toByteArray());
+
+        // Reaproveitado no próximo job
+        capture.wrap(sink).write(job('b', 4), 0, 4, 1000);
+        assertArrayEquals(job('b', 4), capture.toByteArray());
+    }
+
+    private File spillFile(byte[] data) {
+        return new File(spillDir, ReprintCache.sha256(data) + ".bin");
+    }
+
+    private static byte[] job(char fill, int size) {
+        byte[] data = new byte[size];
+        Arrays.fill(data, (byte) fill);
+        return data;
+    }
+}
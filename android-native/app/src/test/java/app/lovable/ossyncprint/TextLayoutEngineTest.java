@@ -0,0 +1,133 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Diagramação nas larguras reais das Bematech (32 e 48 colunas): quebra
+ * por palavra, chave/valor e larguras de tabela
+ */
+public class TextLayoutEngineTest {
+
+    @Test
+    public void textWrapsAtWordBoundary() {
+        String text = "Troca de tela com garantia de noventa dias para defeitos de fabrica";
+
+        assertEquals(Arrays.asList(
+            "Troca de tela com garantia de",
+            "noventa dias para defeitos de",
+            "fabrica"), layout(32, e -> e.text(text, TextLayoutEngine.Align.LEFT, TextLayoutEngine.Size.NORMAL, false)));
+        assertEquals(Arrays.asList(
+            "Troca de tela com garantia de noventa dias para",
+            "defeitos de fabrica"), layout(48, e -> e.text(text, TextLayoutEngine.Align.LEFT, TextLayoutEngine.Size.NORMAL, false)));
+    }
+
+    @Test
+    public void wordLongerThanLineIsCut() {
+        assertEquals(Arrays.asList("ABCDEFGHIJKLMNOPQRSTUVWXYZ012345", "6789"),
+            layout(32, e -> e.text("ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789", TextLayoutEngine.Align.LEFT,
+                TextLayoutEngine.Size.NORMAL, false)));
+    }
+
+    @Test
+    public void centerAndDoubleSizeUseHalfTheColumns() {
+        List<String> lines = layout(32, e -> e.text("O.S. #123", TextLayoutEngine.Align.CENTER,
+            TextLayoutEngine.Size.DOUBLE, true));
+
+        // 16 colunas em fonte dupla: (16 - 9) / 2 = 3 espaços
+        assertEquals(Arrays.asList("   O.S. #123"), lines);
+    }
+
+    @Test
+    public void keyValueFillsTheLine() {
+        assertEquals(Arrays.asList("Total" + spaces(32 - 5 - 8) + "R$ 10,00"),
+            layout(32, e -> e.keyValue("Total", "R$ 10,00", TextLayoutEngine.Size.NORMAL, false)));
+        assertEquals(Arrays.asList("Total" + spaces(48 - 5 - 8) + "R$ 10,00"),
+            layout(48, e -> e.keyValue("Total", "R$ 10,00", TextLayoutEngine.Size.NORMAL, false)));
+    }
+
+    @Test
+    public void keyValueThatDoesNotFitMovesValueRight() {
+        String value = "Rua das Palmeiras 100";
+        List<String> lines = layout(32, e -> e.keyValue("Endereco de entrega", value,
+            TextLayoutEngine.Size.NORMAL, false));
+
+        assertEquals(Arrays.asList("Endereco de entrega", spaces(32 - value.length()) + value), lines);
+    }
+
+    @Test
+    public void separatorSpansTheColumns() {
+        assertEquals(Arrays.asList(repeat('=', 32)),
+            layout(32, e -> e.separator('=', TextLayoutEngine.Size.NORMAL)));
+        assertEquals(Arrays.asList(repeat('-', 48)),
+            layout(48, e -> e.separator('-', TextLayoutEngine.Size.NORMAL)));
+    }
+
+    @Test
+    public void columnWidthsFollowWeights() {
+        // 32 colunas, 2 espaços entre 3 colunas: 30 úteis
+        assertArrayEquals(new int[] {5, 20, 5}, TextLayoutEngine.columnWidths(3, new int[] {1, 4, 1}, 32));
+        // 48 colunas: 46 úteis; a sobra do arredondamento vai para a última
+        assertArrayEquals(new int[] {7, 30, 9}, TextLayoutEngine.columnWidths(3, new int[] {1, 4, 1}, 48));
+        assertArrayEquals(new int[] {15, 16}, TextLayoutEngine.columnWidths(2, null, 32));
+    }
+
+    @Test
+    public void columnsWrapInsideTheirCell() {
+        List<String> lines = layout(32, e -> e.columns(
+            new CharSequence[] {"2x", "Pelicula de vidro temperado", "30,00"},
+            new int[] {1, 4, 1}, null, TextLayoutEngine.Size.NORMAL, false));
+
+        assertEquals(Arrays.asList(
+            "2x    Pelicula de vidro    30,00",
+            // Célula do meio preenchida até a largura; a última, vazia, não
+            "      temperado" + spaces(20 - 9 + 1)), lines);
+        for (String line : lines) {
+            assertTrue(line, line.length() <= 32);
+        }
+    }
+
+    private interface Rows {
+        void write(TextLayoutEngine engine);
+    }
+
+    /**
+     * Linhas impressas, sem os comandos ESC a/ESC !/ESC E (3 bytes cada)
+     */
+    private static List<String> layout(int columns, Rows rows) {
+        EscPosBuffer buffer = new EscPosBuffer();
+        TextLayoutEngine engine = new TextLayoutEngine(buffer, columns);
+        engine.begin();
+        rows.write(engine);
+        byte[] data = buffer.toByteArray();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == 0x1B) {
+                i += 2;
+            } else {
+                text.write(data[i]);
+            }
+        }
+        String printed = new String(text.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(printed.endsWith("\n"));
+        return Arrays.asList(printed.substring(0, printed.length() - 1).split("\n", -1));
+    }
+
+    private static String spaces(int count) {
+        return repeat(' ', count);
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
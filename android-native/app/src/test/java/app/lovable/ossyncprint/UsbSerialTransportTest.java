@@ -0,0 +1,112 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static app.lovable.ossyncprint.VirtualPrinterLoadTest.buildReceipt;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Transportes seriais (CH340 e CDC-ACM) contra o adaptador virtual: a
+ * configuração da linha por controlTransfer e o controle de fluxo que
+ * impede a impressora de perder bytes
+ */
+public class UsbSerialTransportTest {
+
+    private static final int LINES_PER_JOB = 30;
+    private static final int SPEED_MM_PER_SEC = 250;
+    private static final double TIME_SCALE = 0.001;
+    // Impressoras seriais costumam ter buffer de recepção bem menor que as USB
+    private static final int SERIAL_BUFFER_BYTES = 1024;
+    private static final int SERIAL_JOBS = 20;
+
+    /**
+     * CH340 a 115200 com RTS/CTS: sequência de controlTransfer do driver
+     * e nenhum byte perdido
+     */
+    @Test
+    public void ch340ConfiguresLineAndDropsNothing() throws Exception {
+        VirtualSerialAdapter ch340 = serialAdapter(false);
+        printSerial(new Ch340SerialTransport(ch340, rtsCts(), 2048), ch340);
+
+        List<VirtualSerialAdapter.Control> controls = ch340.getControls();
+        // 115200: fator 0x10000 - 13304 = 0xCC08, divisor 3 | 0x80
+        assertControl(controls, 0, 0xC0, 0x5F, 0x0000, 0x0000);
+        assertControl(controls, 1, 0x40, 0xA1, 0x0000, 0x0000);
+        assertControl(controls, 2, 0x40, 0x9A, 0x1312, 0xCC83);
+        assertControl(controls, 3, 0x40, 0x9A, 0x0F2C, 0x0008);
+        assertControl(controls, 4, 0x40, 0x9A, 0x2518, 0x00C3);
+        assertControl(controls, 5, 0x40, 0xA4, 0xFF9F, 0x0000);
+        assertEquals(0, ch340.getDroppedBytes());
+        assertEquals(SERIAL_JOBS, ch340.getPrinter().getCuts());
+        assertEquals(0, ch340.getPrinter().getUnknownCommands());
+    }
+
+    /**
+     * CDC-ACM com XON/XOFF: SET_LINE_CODING, SET_CONTROL_LINE_STATE e
+     * nenhum byte perdido
+     */
+    @Test
+    public void cdcAcmConfiguresLineAndDropsNothing() throws Exception {
+        VirtualSerialAdapter cdc = serialAdapter(true);
+        printSerial(new CdcAcmSerialTransport(cdc,
+            rtsCts().withFlowControl(UsbSerialTransport.FlowControl.XON_XOFF), 2048, 0), cdc);
+
+        List<VirtualSerialAdapter.Control> controls = cdc.getControls();
+        assertControl(controls, 0, 0x21, 0x20, 0x0000, 0x0000);
+        assertControl(controls, 1, 0x21, 0x22, 0x0003, 0x0000);
+        assertArrayEquals(new byte[] {0x00, (byte) 0xC2, 0x01, 0x00, 0x00, 0x00, 0x08}, controls.get(0).data);
+        assertEquals(0, cdc.getDroppedBytes());
+        assertEquals(SERIAL_JOBS, cdc.getPrinter().getCuts());
+        assertEquals(0, cdc.getPrinter().getUnknownCommands());
+    }
+
+    /**
+     * Sem controle de fluxo o buffer da impressora estoura: confirma que
+     * o adaptador simulado de fato perde bytes (os testes acima valem algo)
+     */
+    @Test
+    public void withoutFlowControlBytesAreDropped() throws Exception {
+        VirtualSerialAdapter none = serialAdapter(false);
+        printSerial(new Ch340SerialTransport(none,
+            rtsCts().withFlowControl(UsbSerialTransport.FlowControl.NONE), 2048), none);
+
+        assertTrue(none.getDroppedBytes() > 0);
+    }
+
+    private static UsbSerialTransport.LineConfig rtsCts() {
+        return new UsbSerialTransport.LineConfig(115200, 8,
+            UsbSerialTransport.LineConfig.PARITY_NONE, 1, UsbSerialTransport.FlowControl.RTS_CTS);
+    }
+
+    private static VirtualSerialAdapter serialAdapter(boolean hasInput) {
+        VirtualEscPosPrinter printer = new VirtualEscPosPrinter(SERIAL_BUFFER_BYTES, SPEED_MM_PER_SEC, TIME_SCALE);
+        printer.setRecordOutput(false);
+        return new VirtualSerialAdapter(printer, SERIAL_BUFFER_BYTES, 2 * UsbSerialTransport.FLOW_CHUNK, hasInput);
+    }
+
+    private static void printSerial(UsbSerialTransport transport, VirtualSerialAdapter adapter) throws IOException {
+        TraceBuffer trace = new TraceBuffer(TraceBuffer.DEFAULT_CAPACITY);
+        transport.open();
+        for (int i = 0; i < SERIAL_JOBS; i++) {
+            byte[] receipt = buildReceipt(i, LINES_PER_JOB);
+            PrinterTransport.writeFully(transport, receipt, 0, receipt.length, 10000, trace);
+        }
+        transport.close();
+        assertTrue(adapter.getPrinter().awaitIdle(60000));
+    }
+
+    private static void assertControl(List<VirtualSerialAdapter.Control> controls, int index, int requestType,
+                                      int request, int value, int wIndex) {
+        assertTrue("controlTransfer " + index + " ausente", index < controls.size());
+        VirtualSerialAdapter.Control control = controls.get(index);
+        String message = String.format("controlTransfer %d esperado %02X %02X %04X %04X, recebido %s",
+            index, requestType, request, value, wIndex, control);
+        assertTrue(message, control.requestType == requestType && control.request == request
+            && control.value == value && control.index == wIndex);
+    }
+}
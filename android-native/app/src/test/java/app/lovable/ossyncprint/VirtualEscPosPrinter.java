@@ -0,0 +1,500 @@
+package app.lovable.ossyncprint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Impressora ESC/POS virtual para testes de carga e throughput
+ *
+ * Ocupa o lugar do endpoint USB (PrinterTransport) e interpreta o stream
+ * gerado pelo plugin: CMD_INIT, alinhamento/estilo, ESC d, GS ( k (QR),
+ * GS k (códigos de barras), GS v 0 (raster), FS p (logo NV) e GS V (corte).
+ *
+ * Simula um buffer de entrada de tamanho fixo que esvazia na velocidade
+ * de impressão configurada (mm/s a 8 dots/mm). Com o buffer cheio,
+ * write() bloqueia como um NAK USB e retorna -1 no timeout, igual ao
+ * bulkTransfer. Estados de ocupado e sem papel congelam a impressão.
+ * Não depende de Android: roda numa JVM comum.
+ */
+final class VirtualEscPosPrinter implements PrinterTransport {
+
+    private static final int DOTS_PER_MM = 8;
+    private static final int DEFAULT_LINE_HEIGHT_DOTS = 30;
+    private static final int DEFAULT_BARCODE_HEIGHT_DOTS = 162;
+    // Altura assumida para o logo NV (a imagem gravada na impressora não é conhecida)
+    private static final int NV_LOGO_HEIGHT_DOTS = 120;
+    private static final int CUT_MILLIS = 250;
+    private static final int MAX_RECORDED_ITEMS = 10000;
+    private static final int MAX_QR_PAYLOAD = 7089;
+
+    // Estados do parser
+    private static final int ST_TEXT = 0;
+    private static final int ST_ESC = 1;
+    private static final int ST_GS = 2;
+    private static final int ST_DLE = 3;
+    private static final int ST_PARAMS = 4;
+    private static final int ST_PAYLOAD = 5;
+    private static final int ST_PAYLOAD_NUL = 6;
+    private static final int ST_FS = 7;
+
+    private final int inputBufferSize;
+    private final int printSpeedMmPerSec;
+    private final double timeScale;
+    private boolean recordOutput = true;
+
+    // Buffer de entrada simulado: segmentos {bytes, instante de conclusão em nanos}
+    private final ArrayDeque<long[]> pending = new ArrayDeque<>();
+    private long buffered = 0;
+    private long lastDoneAt = 0;
+    private long segmentBytes = 0;
+
+    private boolean busy = false;
+    private boolean paperOut = false;
+    private long pausedSince = 0;
+
+    // Parser
+    private int state = ST_TEXT;
+    private int prefix;
+    private int code;
+    private final int[] params = new int[8];
+    private int paramCount;
+    private int paramsNeeded;
+    private long payloadRemaining;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder payload = new StringBuilder();
+    private boolean doubleHeight = false;
+    private int barcodeHeight = DEFAULT_BARCODE_HEIGHT_DOTS;
+    private int qrModuleSize = 3;
+    private String storedQr = "";
+
+    // Estatísticas e saída gravada
+    private long bytesReceived;
+    private long linesPrinted;
+    private long cuts;
+    private long qrCodes;
+    private long barcodes;
+    private long nvLogos;
+    private long rasterRows;
+    private long unknownCommands;
+    private long fedDots;
+    private final List<String> printedLines = new ArrayList<>();
+    private final List<String> recordedQrCodes = new ArrayList<>();
+    private final List<String> recordedBarcodes = new ArrayList<>();
+
+    /**
+     * @param inputBufferSize    tamanho do buffer de recepção em bytes
+     * @param printSpeedMmPerSec velocidade de impressão (ex.: 250 na MP-4200 TH)
+     * @param timeScale          fator aplicado a todos os tempos simulados
+     *                           (0.01 = 100x mais rápido que a impressora real)
+     */
+    VirtualEscPosPrinter(int inputBufferSize, int printSpeedMmPerSec, double timeScale) {
+        this.inputBufferSize = Math.max(1, inputBufferSize);
+        this.printSpeedMmPerSec = Math.max(1, printSpeedMmPerSec);
+        this.timeScale = timeScale;
+    }
+
+    // ==================== TRANSPORTE ====================
+
+    @Override
+    public synchronized int write(byte[] data, int offset, int length, int timeoutMs) {
+        long now = System.nanoTime();
+        long deadline = now + timeoutMs * 1_000_000L;
+        int accepted = 0;
+
+        while (accepted < length) {
+            now = System.nanoTime();
+            releaseCompleted(now);
+
+            long free = inputBufferSize - buffered - segmentBytes;
+            if (free <= 0) {
+                if (now >= deadline) {
+                    break;
+                }
+                long wakeAt = deadline;
+                if (!isPaused() && !pending.isEmpty()) {
+                    wakeAt = Math.min(deadline, pending.peekFirst()[1]);
+                }
+                waitNanos(Math.max(1, wakeAt - now));
+                continue;
+            }
+
+            int n = (int) Math.min(free, length - accepted);
+            for (int i = 0; i < n; i++) {
+                long cost = consume(data[offset + accepted + i] & 0xFF);
+                segmentBytes++;
+                if (cost > 0) {
+                    closeSegment(now, cost);
+                }
+            }
+            accepted += n;
+            closeSegment(now, 0);
+        }
+
+        bytesReceived += accepted;
+        return accepted > 0 ? accepted : -1;
+    }
+
+    // ==================== ESTADOS SIMULADOS ====================
+
+    synchronized void setBusy(boolean busy) {
+        boolean wasPaused = isPaused();
+        this.busy = busy;
+        onPauseChanged(wasPaused);
+    }
+
+    synchronized void setPaperOut(boolean paperOut) {
+        boolean wasPaused = isPaused();
+        this.paperOut = paperOut;
+        onPauseChanged(wasPaused);
+    }
+
+    synchronized boolean isPaperOut() {
+        return paperOut;
+    }
+
+    synchronized boolean isBusy() {
+        return busy;
+    }
+
+    synchronized void setRecordOutput(boolean recordOutput) {
+        this.recordOutput = recordOutput;
+    }
+
+    /**
+     * Bloqueia até o buffer de entrada esvaziar (tudo impresso)
+     */
+    synchronized boolean awaitIdle(long timeoutMs) {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000L;
+        while (true) {
+            long now = System.nanoTime();
+            releaseCompleted(now);
+            if (pending.isEmpty()) {
+                return true;
+            }
+            if (now >= deadline) {
+                return false;
+            }
+            long wakeAt = isPaused() ? deadline : Math.min(deadline, pending.peekFirst()[1]);
+            waitNanos(Math.max(1, wakeAt - now));
+        }
+    }
+
+    synchronized void reset() {
+        pending.clear();
+        buffered = 0;
+        segmentBytes = 0;
+        lastDoneAt = 0;
+        state = ST_TEXT;
+        line.setLength(0);
+        payload.setLength(0);
+        resetModes();
+        bytesReceived = linesPrinted = cuts = qrCodes = barcodes = nvLogos = rasterRows = unknownCommands = fedDots = 0;
+        printedLines.clear();
+        recordedQrCodes.clear();
+        recordedBarcodes.clear();
+        notifyAll();
+    }
+
+    // ==================== O QUE FOI "IMPRESSO" ====================
+
+    synchronized long getBytesReceived() { return bytesReceived; }
+    synchronized long getBufferedBytes() { releaseCompleted(System.nanoTime()); return buffered + segmentBytes; }
+    synchronized long getLinesPrinted() { return linesPrinted; }
+    synchronized long getCuts() { return cuts; }
+    synchronized long getQrCodes() { return qrCodes; }
+    synchronized long getBarcodes() { return barcodes; }
+    synchronized long getNvLogos() { return nvLogos; }
+    synchronized long getRasterRows() { return rasterRows; }
+    synchronized long getUnknownCommands() { return unknownCommands; }
+    synchronized long getPaperFedMm() { return fedDots / DOTS_PER_MM; }
+    synchronized List<String> getPrintedLines() { return new ArrayList<>(printedLines); }
+    synchronized List<String> getRecordedQrCodes() { return new ArrayList<>(recordedQrCodes); }
+    synchronized List<String> getRecordedBarcodes() { return new ArrayList<>(recordedBarcodes); }
+
+    // ==================== SIMULAÇÃO DO BUFFER ====================
+
+    private boolean isPaused() {
+        return busy || paperOut;
+    }
+
+    private void onPauseChanged(boolean wasPaused) {
+        long now = System.nanoTime();
+        if (!wasPaused && isPaused()) {
+            releaseCompleted(now);
+            pausedSince = now;
+        } else if (wasPaused && !isPaused()) {
+            // Empurra a conclusão dos segmentos pelo tempo em que ficou parada
+            long shift = now - pausedSince;
+            for (long[] segment : pending) {
+                segment[1] += shift;
+            }
+            lastDoneAt += shift;
+        }
+        notifyAll();
+    }
+
+    private void releaseCompleted(long now) {
+        if (isPaused()) {
+            return;
+        }
+        while (!pending.isEmpty() && pending.peekFirst()[1] <= now) {
+            buffered -= pending.pollFirst()[0];
+        }
+    }
+
+    private void closeSegment(long now, long costNanos) {
+        if (segmentBytes == 0 && costNanos == 0) {
+            return;
+        }
+        long start = Math.max(isPaused() ? pausedSince : now, lastDoneAt);
+        lastDoneAt = start + costNanos;
+        pending.addLast(new long[] {segmentBytes, lastDoneAt});
+        buffered += segmentBytes;
+        segmentBytes = 0;
+    }
+
+    private void waitNanos(long nanos) {
+        try {
+            wait(nanos / 1_000_000L, (int) (nanos % 1_000_000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long dotsCost(long dots) {
+        fedDots += dots;
+        double seconds = (double) dots / (printSpeedMmPerSec * DOTS_PER_MM);
+        return (long) (seconds * 1e9 * timeScale);
+    }
+
+    private long millisCost(long millis) {
+        return (long) (millis * 1e6 * timeScale);
+    }
+
+    // ==================== PARSER ESC/POS ====================
+
+    /**
+     * Processa um byte e retorna o custo de impressão em nanos (0 = nenhum)
+     */
+    private long consume(int b) {
+        switch (state) {
+            case ST_TEXT:
+                return onText(b);
+            case ST_ESC:
+            case ST_GS:
+            case ST_DLE:
+            case ST_FS:
+                prefix = state;
+                code = b;
+                paramCount = 0;
+                paramsNeeded = paramsFor(prefix, code);
+                if (paramsNeeded < 0) {
+                    unknownCommands++;
+                    state = ST_TEXT;
+                    return 0;
+                }
+                state = ST_PARAMS;
+                return paramsNeeded == 0 ? onCommand() : 0;
+            case ST_PARAMS:
+                params[paramCount++] = b;
+                return paramCount >= paramsNeeded ? onCommand() : 0;
+            case ST_PAYLOAD:
+                // Dados raster/bit image só avançam o papel, não são gravados
+                if (code != 'v' && code != '*' && payload.length() < MAX_QR_PAYLOAD) {
+                    payload.append((char) b);
+                }
+                return --payloadRemaining <= 0 ? onPayloadDone() : 0;
+            case ST_PAYLOAD_NUL:
+                if (b == 0x00) {
+                    return onPayloadDone();
+                }
+                payload.append((char) b);
+                return 0;
+            default:
+                state = ST_TEXT;
+                return 0;
+        }
+    }
+
+    private long onText(int b) {
+        switch (b) {
+            case 0x1B: state = ST_ESC; return 0;
+            case 0x1D: state = ST_GS; return 0;
+            case 0x10: state = ST_DLE; return 0;
+            case 0x1C: state = ST_FS; return 0;
+            case 0x0A: return printLine(1);
+            case 0x0D: return 0;
+            case 0x09: line.append(' '); return 0;
+            default:
+                if (b >= 0x20) {
+                    line.append((char) b);
+                }
+                return 0;
+        }
+    }
+
+    /**
+     * Quantidade de parâmetros fixos de cada comando (-1 = desconhecido)
+     */
+    private static int paramsFor(int prefix, int code) {
+        if (prefix == ST_ESC) {
+            switch (code) {
+                case '@': case '2': return 0;
+                case 'a': case 'E': case '!': case 'd': case 'J': case '-':
+                case 'M': case 't': case 'R': case '3': case 'G': case 'V':
+                case '{':
+                    return 1;
+                case 'c': return 2;
+                case 'p': case '*': return 3;
+                default: return -1;
+            }
+        }
+        if (prefix == ST_GS) {
+            switch (code) {
+                case 'V': case 'h': case 'w': case 'H': case 'f': case '!':
+                case 'B': case 'k': case 'r': case 'a':
+                    return 1;
+                case 'L': case 'W': case 'P': return 2;
+                case '(': return 3;
+                case 'v': return 6;
+                default: return -1;
+            }
+        }
+        if (prefix == ST_DLE && code == 0x04) {
+            return 1;
+        }
+        if (prefix == ST_FS && code == 'p') {
+            return 2;
+        }
+        return -1;
+    }
+
+    private long onCommand() {
+        state = ST_TEXT;
+        int p0 = paramCount > 0 ? params[0] : 0;
+
+        if (prefix == ST_ESC) {
+            switch (code) {
+                case '@': resetModes(); return 0;
+                case '!': doubleHeight = (p0 & 0x10) != 0; return 0;
+                case 'd': return printLine(Math.max(1, p0));
+                case 'J': return flushLine() + dotsCost(p0);
+                case '*': {
+                    long width = params[1] + (params[2] << 8);
+                    return startPayload(width * (p0 < 2 ? 1 : 3));
+                }
+                default: return 0;
+            }
+        }
+
+        if (prefix == ST_GS) {
+            switch (code) {
+                case 'V':
+                    if ((p0 == 65 || p0 == 66) && paramCount == 1) {
+                        state = ST_PARAMS;
+                        paramsNeeded = 2;
+                        return 0;
+                    }
+                    cuts++;
+                    return flushLine() + (paramCount > 1 ? dotsCost(params[1]) : 0) + millisCost(CUT_MILLIS);
+                case 'h':
+                    barcodeHeight = p0;
+                    return 0;
+                case 'k':
+                    if (p0 <= 6) {
+                        payload.setLength(0);
+                        state = ST_PAYLOAD_NUL;
+                        return 0;
+                    }
+                    if (paramCount == 1) {
+                        state = ST_PARAMS;
+                        paramsNeeded = 2;
+                        return 0;
+                    }
+                    return startPayload(params[1]);
+                case '(':
+                    return startPayload(params[1] + (params[2] << 8));
+                case 'v':
+                    return startPayload((long) (params[2] + (params[3] << 8)) * (params[4] + (params[5] << 8)));
+                default:
+                    return 0;
+            }
+        }
+
+        if (prefix == ST_FS) {
+            // FS p n m: logo gravado na memória NV
+            nvLogos++;
+            return flushLine() + dotsCost(NV_LOGO_HEIGHT_DOTS);
+        }
+
+        return 0; // DLE EOT: status em tempo real não tem canal de resposta aqui
+    }
+
+    private long startPayload(long length) {
+        payload.setLength(0);
+        if (length <= 0) {
+            return onPayloadDone();
+        }
+        payloadRemaining = length;
+        state = ST_PAYLOAD;
+        return 0;
+    }
+
+    private long onPayloadDone() {
+        state = ST_TEXT;
+
+        if (prefix == ST_GS && code == 'k') {
+            barcodes++;
+            record(recordedBarcodes, payload.toString());
+            return flushLine() + dotsCost(barcodeHeight + DEFAULT_LINE_HEIGHT_DOTS);
+        }
+
+        if (prefix == ST_GS && code == '(' && params[0] == 'k' && payload.length() >= 2) {
+            int fn = payload.charAt(1);
+            if (fn == 0x43 && payload.length() >= 3) {
+                qrModuleSize = payload.charAt(2);
+            } else if (fn == 0x50) {
+                storedQr = payload.length() > 3 ? payload.substring(3) : "";
+            } else if (fn == 0x51) {
+                qrCodes++;
+                record(recordedQrCodes, storedQr);
+                // Aproximação da versão do QR pelo tamanho dos dados
+                int modules = 21 + 4 * (storedQr.length() / 14);
+                return flushLine() + dotsCost((long) modules * qrModuleSize);
+            }
+            return 0;
+        }
+
+        if (prefix == ST_GS && code == 'v') {
+            long rows = params[4] + (params[5] << 8);
+            rasterRows += rows;
+            return flushLine() + dotsCost(rows);
+        }
+
+        return 0;
+    }
+
+    private long printLine(int feedLines) {
+        linesPrinted++;
+        record(printedLines, line.toString());
+        line.setLength(0);
+        return dotsCost((long) feedLines * DEFAULT_LINE_HEIGHT_DOTS * (doubleHeight ? 2 : 1));
+    }
+
+    private long flushLine() {
+        return line.length() > 0 ? printLine(1) : 0;
+    }
+
+    private void resetModes() {
+        doubleHeight = false;
+        barcodeHeight = DEFAULT_BARCODE_HEIGHT_DOTS;
+        qrModuleSize = 3;
+    }
+
+    private void record(List<String> target, String value) {
+        if (recordOutput && target.size() < MAX_RECORDED_ITEMS) {
+            target.add(value);
+        }
+    }
+}
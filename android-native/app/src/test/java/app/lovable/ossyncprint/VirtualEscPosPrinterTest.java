@@ -0,0 +1,76 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static app.lovable.ossyncprint.VirtualPrinterLoadTest.text;
+import static app.lovable.ossyncprint.VirtualPrinterLoadTest.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parser da impressora virtual: se ele errar o tamanho de um comando, os
+ * bytes seguintes viram texto ou comandos desconhecidos e os testes de
+ * carga deixam de detectar intercalação entre jobs
+ */
+public class VirtualEscPosPrinterTest {
+
+    @Test
+    public void receiptParsesWithoutUnknownCommands() {
+        VirtualEscPosPrinter printer = print(VirtualPrinterLoadTest.buildReceipt(7, 3));
+
+        assertEquals(1, printer.getCuts());
+        assertEquals(1, printer.getQrCodes());
+        assertEquals(1, printer.getBarcodes());
+        assertEquals(0, printer.getUnknownCommands());
+        assertTrue(printer.getRecordedQrCodes().contains("100007"));
+        assertTrue(printer.getPrintedLines().contains("ORDEM DE SERVICO 100007"));
+    }
+
+    @Test
+    public void nvLogoParametersAreNotPrintedAsText() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // FS p n m: logo NV 1, modo normal ('p' seguido de bytes imprimíveis)
+        write(out, 0x1C, 0x70, 0x41, 0x30);
+        text(out, "OK\n");
+
+        VirtualEscPosPrinter printer = print(out.toByteArray());
+
+        assertEquals(1, printer.getNvLogos());
+        assertEquals(0, printer.getUnknownCommands());
+        assertEquals(Arrays.asList("OK"), printer.getPrintedLines());
+    }
+
+    @Test
+    public void escCTakesTwoParameters() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // ESC c 5 n: habilita/desabilita botões do painel
+        write(out, 0x1B, 0x63, 0x35, 0x41);
+        text(out, "OK\n");
+
+        VirtualEscPosPrinter printer = print(out.toByteArray());
+
+        assertEquals(0, printer.getUnknownCommands());
+        assertEquals(Arrays.asList("OK"), printer.getPrintedLines());
+    }
+
+    @Test
+    public void unknownCommandIsCounted() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, 0x1B, 0x7F);
+        text(out, "OK\n");
+
+        VirtualEscPosPrinter printer = print(out.toByteArray());
+
+        assertEquals(1, printer.getUnknownCommands());
+    }
+
+    private static VirtualEscPosPrinter print(byte[] data) {
+        VirtualEscPosPrinter printer = new VirtualEscPosPrinter(data.length, 250, 0.001);
+        assertEquals(data.length, printer.write(data, 0, data.length, 1000));
+        assertTrue(printer.awaitIdle(10000));
+        return printer;
+    }
+}
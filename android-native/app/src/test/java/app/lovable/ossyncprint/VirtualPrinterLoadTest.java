@@ -0,0 +1,194 @@
+package app.lovable.ossyncprint;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Teste de carga do caminho de impressão contra a VirtualEscPosPrinter
+ *
+ * Gera cupons ESC/POS em várias threads concorrentes e envia pelo mesmo
+ * PrinterSession (escritor único) e PrinterTransport.writeFully usados
+ * pelo plugin. Se dois jobs intercalassem bytes, o parser da impressora
+ * virtual acusaria comandos desconhecidos. Tempos simulados acelerados
+ * (TIME_SCALE) para rodar como teste unitário comum.
+ */
+public class VirtualPrinterLoadTest {
+
+    private static final int LINES_PER_JOB = 30;
+    private static final int BUFFER_BYTES = 4096;
+    private static final int SPEED_MM_PER_SEC = 250;
+    private static final double TIME_SCALE = 0.001;
+
+    @Test
+    public void concurrentJobsArriveWhole() throws Exception {
+        final int jobs = 200;
+        final int producers = 4;
+        VirtualEscPosPrinter printer = new VirtualEscPosPrinter(BUFFER_BYTES, SPEED_MM_PER_SEC, TIME_SCALE);
+        printer.setRecordOutput(false);
+        final TraceBuffer trace = new TraceBuffer(TraceBuffer.DEFAULT_CAPACITY);
+
+        final PrinterSession session = new PrinterSession();
+        session.beginConnect();
+        session.connected(printer);
+
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(jobs);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int first = p;
+            threads[p] = new Thread(() -> {
+                for (int i = first; i < jobs; i += producers) {
+                    final byte[] receipt = buildReceipt(i, LINES_PER_JOB);
+                    session.submit(t -> {
+                        PrinterTransport.writeFully(t, receipt, 0, receipt.length, 10000, trace);
+                        return receipt.length;
+                    }, new PrinterSession.Callback() {
+                        @Override
+                        public void onComplete(long bytesTransferred) {
+                            done.countDown();
+                        }
+
+                        @Override
+                        public void onError(Exception error) {
+                            failures.incrementAndGet();
+                            done.countDown();
+                        }
+                    });
+                }
+            }, "Producer-" + p);
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue("jobs não terminaram", done.await(60, TimeUnit.SECONDS));
+        assertTrue(printer.awaitIdle(60000));
+        session.drain(1000);
+        session.shutdown();
+
+        assertEquals(0, failures.get());
+        assertEquals(jobs, printer.getCuts());
+        assertEquals("bytes intercalados entre jobs", 0, printer.getUnknownCommands());
+    }
+
+    /**
+     * Lote de vias com logo raster: PrintPipeline (codificação do próximo
+     * job durante a transferência) imprime o mesmo que a sequência simples
+     */
+    @Test
+    public void pipelinePrintsSameAsSequential() throws Exception {
+        final int jobs = 50;
+        TraceBuffer trace = new TraceBuffer(TraceBuffer.DEFAULT_CAPACITY);
+        List<PrintPipeline.Encoder> encoders = new ArrayList<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            final int job = i;
+            encoders.add(() -> buildSlipWithLogo(job, LINES_PER_JOB));
+        }
+
+        VirtualEscPosPrinter sequential = new VirtualEscPosPrinter(BUFFER_BYTES, SPEED_MM_PER_SEC, TIME_SCALE);
+        sequential.setRecordOutput(false);
+        for (PrintPipeline.Encoder encoder : encoders) {
+            byte[] data = encoder.encode();
+            PrinterTransport.writeFully(sequential, data, 0, data.length, 10000, trace);
+        }
+        assertTrue(sequential.awaitIdle(60000));
+
+        VirtualEscPosPrinter pipelined = new VirtualEscPosPrinter(BUFFER_BYTES, SPEED_MM_PER_SEC, TIME_SCALE);
+        pipelined.setRecordOutput(false);
+        final AtomicInteger failures = new AtomicInteger();
+        PrintPipeline pipeline = new PrintPipeline(encoders, PrintPipeline.DEFAULT_QUEUE_DEPTH);
+        pipeline.start();
+        pipeline.transfer(pipelined, 10000, trace, (index, bytes, error) -> {
+            if (error != null) {
+                failures.incrementAndGet();
+            }
+        });
+        assertTrue(pipelined.awaitIdle(60000));
+
+        assertEquals(0, failures.get());
+        assertEquals(jobs, sequential.getCuts());
+        assertEquals(jobs, sequential.getNvLogos());
+        assertEquals(0, sequential.getUnknownCommands());
+        assertEquals(sequential.getCuts(), pipelined.getCuts());
+        assertEquals(sequential.getNvLogos(), pipelined.getNvLogos());
+        assertEquals(sequential.getRasterRows(), pipelined.getRasterRows());
+        assertEquals(0, pipelined.getUnknownCommands());
+    }
+
+    /**
+     * Via de entrega: logo raster 576x160 (degradê pontilhado), selo da
+     * loja gravado na impressora (FS p) + cupom
+     */
+    static byte[] buildSlipWithLogo(int orderNumber, int lines) throws IOException {
+        final int width = 576;
+        final int height = 160;
+        EscPosBuffer out = new EscPosBuffer(width / 8 * height + 64 * lines);
+        RasterBandEncoder.encodeAll((y, rows, argb) -> {
+            for (int r = 0; r < rows; r++) {
+                for (int x = 0; x < width; x++) {
+                    int gray = ((x + orderNumber) * 255 / width + (y + r)) & 0xFF;
+                    argb[r * width + x] = 0xFF000000 | (gray << 16) | (gray << 8) | gray;
+                }
+            }
+        }, width, height, RasterBandEncoder.DEFAULT_BAND_HEIGHT, out);
+        out.write(new byte[] {0x1C, 0x70, 0x01, 0x00});
+        out.write(buildReceipt(orderNumber, lines));
+        return out.toByteArray();
+    }
+
+    /**
+     * Cupom típico de OS: cabeçalho, itens, QR Code, CODE128 e corte
+     */
+    static byte[] buildReceipt(int orderNumber, int lines) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * lines);
+        String order = String.valueOf(100000 + orderNumber);
+
+        write(out, 0x1B, 0x40);
+        write(out, 0x1B, 0x61, 0x01);
+        write(out, 0x1B, 0x45, 0x01);
+        text(out, "ORDEM DE SERVICO " + order + "\n");
+        write(out, 0x1B, 0x45, 0x00);
+        write(out, 0x1B, 0x61, 0x00);
+        for (int i = 0; i < lines; i++) {
+            text(out, String.format("Item %-3d %-22s R$ %7.2f\n", i + 1, "Servico tecnico", 10.0 + i));
+        }
+
+        byte[] qr = order.getBytes(StandardCharsets.ISO_8859_1);
+        int len = qr.length + 3;
+        write(out, 0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x43, 0x06);
+        write(out, 0x1D, 0x28, 0x6B, len & 0xFF, (len >> 8) & 0xFF, 0x31, 0x50, 0x30);
+        out.write(qr, 0, qr.length);
+        write(out, 0x1D, 0x28, 0x6B, 0x03, 0x00, 0x31, 0x51, 0x30);
+
+        byte[] barcode = BarcodeEncoder.code128(order);
+        write(out, 0x1D, 0x68, 80);
+        write(out, 0x1D, 0x6B, BarcodeEncoder.Symbology.CODE128.m, barcode.length);
+        out.write(barcode, 0, barcode.length);
+
+        text(out, "\n\n\n");
+        write(out, 0x1D, 0x56, 0x41, 0x10);
+        return out.toByteArray();
+    }
+
+    static void write(ByteArrayOutputStream out, int... bytes) {
+        for (int b : bytes) {
+            out.write(b);
+        }
+    }
+
+    static void text(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(bytes, 0, bytes.length);
+    }
+}
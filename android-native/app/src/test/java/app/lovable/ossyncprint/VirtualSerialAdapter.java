@@ -0,0 +1,141 @@
+package app.lovable.ossyncprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Conversor USB-serial simulado na frente da VirtualEscPosPrinter
+ *
+ * Grava todos os controlTransfer recebidos (para conferir a sequência dos
+ * drivers CH340/CDC-ACM sem hardware) e simula a UART: o que chega com o
+ * buffer da impressora cheio é perdido (overrun), como numa impressora
+ * serial real sem controle de fluxo. A impressora derruba CTS e manda XOFF
+ * quando restam menos de highWater bytes livres, e libera (CTS/XON) quando
+ * o buffer esvazia até a metade.
+ */
+final class VirtualSerialAdapter implements SerialChannel {
+
+    /**
+     * Um controlTransfer recebido
+     */
+    static final class Control {
+        final int requestType;
+        final int request;
+        final int value;
+        final int index;
+        final byte[] data;
+
+        Control(int requestType, int request, int value, int index, byte[] data) {
+            this.requestType = requestType;
+            this.request = request;
+            this.value = value;
+            this.index = index;
+            this.data = data;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%02X %02X %04X %04X %s", requestType, request, value, index,
+                data == null ? "-" : Arrays.toString(data));
+        }
+    }
+
+    private final VirtualEscPosPrinter printer;
+    private final int bufferSize;
+    private final int highWater;
+    private final boolean hasInput;
+
+    private final List<Control> controls = new ArrayList<>();
+    private boolean stopped = false;
+    private boolean pendingFlowByte = false;
+    private long dropped = 0;
+    private long flowStops = 0;
+
+    /**
+     * @param bufferSize tamanho do buffer de recepção configurado na impressora
+     * @param highWater  bytes livres abaixo dos quais a impressora pede para parar
+     */
+    VirtualSerialAdapter(VirtualEscPosPrinter printer, int bufferSize, int highWater, boolean hasInput) {
+        this.printer = printer;
+        this.bufferSize = bufferSize;
+        this.highWater = highWater;
+        this.hasInput = hasInput;
+    }
+
+    @Override
+    public synchronized int controlTransfer(int requestType, int request, int value, int index, byte[] buffer,
+                                            int length, int timeoutMs) {
+        boolean in = (requestType & 0x80) != 0;
+        controls.add(new Control(requestType, request, value, index,
+            in || buffer == null ? null : Arrays.copyOf(buffer, length)));
+        if (in && buffer != null) {
+            Arrays.fill(buffer, 0, length, (byte) 0);
+            if (request == Ch340SerialTransport.REQ_READ_VERSION) {
+                buffer[0] = 0x30;
+            } else if (request == Ch340SerialTransport.REQ_READ_REG
+                && value == Ch340SerialTransport.REG_MODEM_STATUS) {
+                // Linhas de modem ativas em nível baixo
+                updateFlow();
+                buffer[0] = (byte) (stopped ? Ch340SerialTransport.STATUS_CTS : 0);
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public synchronized int bulkOut(byte[] data, int offset, int length, int timeoutMs) {
+        long free = bufferSize - printer.getBufferedBytes();
+        int accepted = (int) Math.max(0, Math.min(free, length));
+        if (accepted > 0 && printer.write(data, offset, accepted, timeoutMs) != accepted) {
+            return -1;
+        }
+        // O USB entregou tudo ao conversor; a UART perde o que não coube
+        dropped += length - accepted;
+        return length;
+    }
+
+    @Override
+    public synchronized int bulkIn(byte[] buffer, int length, int timeoutMs) {
+        updateFlow();
+        if (!pendingFlowByte || length < 1) {
+            return 0;
+        }
+        pendingFlowByte = false;
+        buffer[0] = (byte) (stopped ? UsbSerialTransport.XOFF : UsbSerialTransport.XON);
+        return 1;
+    }
+
+    @Override
+    public boolean hasInput() {
+        return hasInput;
+    }
+
+    private void updateFlow() {
+        long buffered = printer.getBufferedBytes();
+        boolean stop = stopped ? buffered > bufferSize / 2 : bufferSize - buffered < highWater;
+        if (stop != stopped) {
+            stopped = stop;
+            pendingFlowByte = true;
+            if (stop) {
+                flowStops++;
+            }
+        }
+    }
+
+    VirtualEscPosPrinter getPrinter() {
+        return printer;
+    }
+
+    synchronized List<Control> getControls() {
+        return new ArrayList<>(controls);
+    }
+
+    synchronized long getDroppedBytes() {
+        return dropped;
+    }
+
+    synchronized long getFlowStops() {
+        return flowStops;
+    }
+}
@@ -27,6 +27,8 @@ import { supabase } from '@/integrations/supabase/client';
 import { useAuth } from '@/contexts/AuthContext';
 import { useUSBPrinter } from '@/hooks/useUSBPrinter';
 import { unifiedPrinterService } from '@/services/unifiedPrinterService';
+import { textLineToRow } from '@/services/printContentService';
+import type { BematechLayoutRow } from '@/services/bematechNativePlugin';
 
 interface PrintJob {
   id: string;
@@ -332,26 +334,24 @@ export default function PrintBridge() {
     }
   };
 
-  // Print using Bematech SDK (native Android)
+  // Print using Bematech SDK (native Android): separators and key/value
+  // lines are laid out natively at the connected printer's width
   const printContentWithBematechSdk = async (content: string, bematechService: any) => {
-    const lines = content.split('\n');
-    
-    for (const line of lines) {
-      if (line.includes('========') || line.includes('--------')) {
-        await bematechService.printFormatted(line, { bold: true });
-      } else if (line.includes('*** VIA')) {
-        await bematechService.printFormatted(line, { align: 'center', bold: true, size: 'double' });
+    const rows: BematechLayoutRow[] = content.split('\n').map((line): BematechLayoutRow => {
+      if (line.includes('*** VIA')) {
+        return { type: 'text', text: line.trim(), align: 'center', bold: true, size: 'double' };
       } else if (line.includes('ORDEM DE SERVICO') || line.match(/^\s*#\d+/)) {
-        await bematechService.printFormatted(line, { align: 'center', bold: true });
+        return { type: 'text', text: line.trim(), align: 'center', bold: true };
       } else if (isSectionHeader(line)) {
-        await bematechService.printFormatted(line, { bold: true });
-      } else {
-        await bematechService.printText(line);
+        return { type: 'text', text: line.trim(), bold: true };
       }
+      return textLineToRow(line);
+    });
+    rows.push({ type: 'feed', lines: 3 });
+
+    if (!(await bematechService.printLayout(rows, true))) {
+      throw new Error('Falha ao imprimir na Bematech');
     }
-    
-    await bematechService.feedPaper(3);
-    await bematechService.cutPaper(true);
   };
 
   // Print using WebUSB (browser)
@@ -10,11 +10,56 @@ export interface BematechPrinterInfo {
   model: string;
   serialNumber: string;
   firmwareVersion: string;
+  /** Id do perfil de capacidades em uso (ver getPrinterProfile) */
+  profile?: string;
+  /** Presente quando a impressora está atrás de conversor USB-serial */
+  serial?: BematechSerialInfo;
+}
+
+export type BematechFlowControl = 'none' | 'rtsCts' | 'xonXoff';
+
+export interface BematechSerialInfo {
+  driver: 'ch340' | 'cdcAcm';
+  baudRate: number;
+  /** Ex.: "115200 8N1 rtsCts" */
+  lineFormat: string;
+  /** Controle de fluxo efetivo (xonXoff vira none sem endpoint de entrada) */
+  flowControl: BematechFlowControl;
+}
+
+export interface BematechUsbConnectOptions {
+  vid: number;
+  pid?: number;
+  /** Só conversores USB-serial (CH340/CDC-ACM); padrão: do perfil do modelo */
+  baudRate?: number;
+  flowControl?: BematechFlowControl;
 }
 
 export interface BematechPrintResult {
   success: boolean;
   error?: string;
+  /** Id do job nos eventos printProgress / printJobDone */
+  jobId?: string;
+  bytesTransferred?: number;
+  /** Jobs enviados com orderId: via guardada para reprint() */
+  orderId?: string;
+  contentHash?: string;
+}
+
+export interface BematechProgressEvent {
+  jobId: string;
+  bytesSent: number;
+  /** -1 quando o tamanho total não é conhecido (stream, lote) */
+  totalBytes: number;
+  chunks: number;
+  elapsedMs: number;
+  /** Tempo restante estimado pela vazão até agora (-1 sem estimativa) */
+  etaMs: number;
+}
+
+export interface BematechJobDoneEvent extends BematechProgressEvent {
+  success: boolean;
+  error?: string;
 }
 
 export interface BematechConnectionResult {
@@ -23,6 +68,124 @@ export interface BematechConnectionResult {
   error?: string;
 }
 
+export type BematechSessionState = 'DISCONNECTED' | 'CONNECTING' | 'READY' | 'PRINTING' | 'DRAINING';
+
+/**
+ * Payload compactado (CompressionStream no JS), enviado em base64:
+ * 'deflate' = zlib, 'deflate-raw' = sem cabeçalho, 'gzip'
+ */
+export type BematechCompression = 'deflate' | 'deflate-raw' | 'gzip';
+
+/** Destino do arquivo de printFile ao fim do job */
+export type BematechFileRetention = 'delete' | 'deleteOnSuccess' | 'keep';
+
+export type BematechLayoutAlign = 'left' | 'center' | 'right';
+export type BematechLayoutSize = 'normal' | 'tall' | 'wide' | 'double';
+
+/**
+ * Linha lógica do printLayout: diagramada no nativo pelas colunas da
+ * impressora conectada (32/48/...), com quebra por palavra
+ */
+export type BematechLayoutRow =
+  | { type: 'text'; text: string; align?: BematechLayoutAlign; size?: BematechLayoutSize; bold?: boolean }
+  | { type: 'keyValue'; key: string; value: string; size?: BematechLayoutSize; bold?: boolean }
+  | {
+      type: 'columns';
+      cells: string[];
+      /** Larguras relativas (ex.: [1, 4, 2]); padrão: iguais */
+      widths?: number[];
+      /** Padrão: esquerda, última coluna à direita */
+      align?: BematechLayoutAlign[];
+      size?: BematechLayoutSize;
+      bold?: boolean;
+    }
+  | { type: 'separator'; char?: string; size?: BematechLayoutSize }
+  | { type: 'feed'; lines?: number };
+
+export interface BematechBatchJob {
+  type: 'raw' | 'text' | 'image' | 'nvLogo' | 'layout';
+  /** raw/text: texto ISO-8859-1; image: PNG/JPEG em base64; nvLogo: número do logo (1-255); layout: não usado */
+  data: string;
+  /** layout: linhas a diagramar */
+  rows?: BematechLayoutRow[];
+  /** raw/text: data é base64 do conteúdo compactado */
+  compression?: BematechCompression;
+  cut?: boolean;
+  width?: number;
+  /** image: amplia imagens menores até width */
+  fitWidth?: boolean;
+  bandHeight?: number;
+}
+
+export interface BematechBatchResult {
+  success: boolean;
+  jobId?: string;
+  error?: string;
+  jobs?: { index: number; success: boolean; bytesTransferred?: number; error?: string }[];
+  succeeded?: number;
+  failed?: number;
+  bytesTransferred?: number;
+  elapsedMs?: number;
+  encodeMs?: number;
+  transferMs?: number;
+  jobsPerMinute?: number;
+}
+
+export interface BematechReprintEntry {
+  orderId: string;
+  /** SHA-256 dos bytes ESC/POS guardados */
+  contentHash: string;
+  size: number;
+  createdAt: number;
+  /** true quando a via saiu da memória para o arquivo de cache */
+  spilled: boolean;
+  reprints: number;
+}
+
+export interface BematechReprintCacheInfo {
+  success: boolean;
+  entries: BematechReprintEntry[];
+  maxEntries: number;
+  memoryBytes: number;
+  spill: boolean;
+  hits: number;
+  misses: number;
+}
+
+export interface BematechPrinterProfile {
+  id: string;
+  name?: string;
+  widthDots: number;
+  columns: number;
+  /** Maior bloco por bulkTransfer */
+  chunkSize: number;
+  features: {
+    /** QR via GS ( k; sem ele, imprima o QR como imagem */
+    nativeQr: boolean;
+    raster: 'gsv0' | 'escStar';
+    nvLogo: boolean;
+  };
+}
+
+export interface BematechWarmUpStatus {
+  state: 'DISABLED' | 'RUNNING' | 'READY' | 'NO_DEVICE' | 'NO_PERMISSION' | 'FAILED';
+  connected: boolean;
+  /** ms desde o load do plugin até o fim do aquecimento (-1 se não terminou) */
+  timeToReadyMs: number;
+  /** ms desde o load do plugin até a impressora conectada (-1 se não conectou) */
+  connectMs: number;
+  templatesEncoded: number;
+  error?: string;
+}
+
+export interface BematechTraceEvent {
+  seq: number;
+  time: number;
+  event: string;
+  a: number;
+  b: number;
+}
+
 export interface BematechNativePluginInterface {
   /**
    * Inicializa o SDK Bematech
@@ -40,12 +203,63 @@ export interface BematechNativePluginInterface {
    * Conecta via VID/PID específico
    * Substitui toda lógica de openDevice/claimInterface
    */
-  connectUsb(options: { vid: number; pid?: number }): Promise<BematechConnectionResult>;
+  connectUsb(options: BematechUsbConnectOptions): Promise<BematechConnectionResult>;
 
   /**
    * Envia comandos ESC/POS diretamente
    */
-  sendEscPos(options: { command: string }): Promise<{ success: boolean; bytesTransferred?: number; error?: string }>;
+  sendEscPos(options: {
+    command?: string;
+    /** Com compression: base64 dos bytes compactados (no lugar de command) */
+    data?: string;
+    compression?: BematechCompression;
+    jobId?: string;
+    orderId?: string;
+  }): Promise<BematechPrintResult>;
+
+  /**
+   * Imprime um job gravado em arquivo no armazenamento do app
+   * (Directory.Data/Cache/External); só o caminho atravessa o bridge
+   */
+  printFile(options: {
+    /** Caminho absoluto ou URI file:// (Filesystem.getUri) */
+    path: string;
+    /** Padrão 'delete' */
+    retention?: BematechFileRetention;
+    /** Arquivo é um payload compactado */
+    compression?: BematechCompression;
+    jobId?: string;
+    orderId?: string;
+  }): Promise<BematechPrintResult>;
+
+  /**
+   * Abre uma sessão de impressão incremental (streaming)
+   * A impressão começa no primeiro bloco, sem aguardar o documento inteiro
+   * Um stream aberto por vez; sem blocos por 15s o stream expira
+   */
+  openPrintStream(options?: {
+    maxPendingChunks?: number;
+    orderId?: string;
+    /**
+     * Um único payload compactado dividido em blocos (base64 em cada bloco);
+     * bytesTransferred do close conta os bytes compactados
+     */
+    compression?: BematechCompression;
+  }): Promise<{ success: boolean; streamId?: string; error?: string }>;
+
+  /**
+   * Envia um bloco numerado (seq começando em 0) para a sessão
+   * Retransmissões de seq já aceitos retornam duplicate=true
+   * Com a fila cheia só resolve quando a impressora consumir um bloco
+   * anterior: aguarde cada chamada antes de enviar o próximo bloco
+   */
+  appendPrintChunk(options: { streamId: string; seq: number; data: string }): Promise<{ success: boolean; duplicate?: boolean; nextSeq?: number; error?: string }>;
+
+  /**
+   * Fecha a sessão; resolve depois da transferência dos blocos pendentes.
+   * Com abort: true resolve na hora com success: false e aborted: true
+   */
+  closePrintStream(options: { streamId: string; abort?: boolean }): Promise<{ success: boolean; aborted?: boolean; bytesTransferred?: number; chunks?: number; error?: string }>;
 
   /**
    * Desconecta da impressora
@@ -53,9 +267,9 @@ export interface BematechNativePluginInterface {
   disconnect(): Promise<{ success: boolean }>;
 
   /**
-   * Verifica se está conectado
+   * Verifica se está conectado (state: estado da sessão nativa)
    */
-  isConnected(): Promise<{ connected: boolean }>;
+  isConnected(): Promise<{ connected: boolean; state?: BematechSessionState }>;
 
   /**
    * Obtém informações da impressora conectada
@@ -88,6 +302,19 @@ export interface BematechNativePluginInterface {
     size?: 'normal' | 'double' | 'large';
   }): Promise<BematechPrintResult>;
 
+  /**
+   * Imprime linhas lógicas (chave/valor, tabelas, parágrafos) diagramadas
+   * no nativo pelas colunas do perfil da impressora conectada
+   */
+  printLayout(options: {
+    rows: BematechLayoutRow[];
+    /** Padrão: colunas do perfil */
+    columns?: number;
+    cut?: boolean;
+    jobId?: string;
+    orderId?: string;
+  }): Promise<BematechPrintResult>;
+
   /**
    * Avança papel (line feed)
    */
@@ -108,9 +335,11 @@ export interface BematechNativePluginInterface {
    */
   printBarcode(options: { 
     data: string; 
-    type: 'CODE39' | 'CODE128' | 'EAN13' | 'EAN8' | 'UPCA' | 'UPCE';
+    type: 'CODE39' | 'CODE128' | 'EAN13' | 'EAN8' | 'UPCA' | 'UPCE' | 'ITF';
     height?: number;
     width?: number;
+    /** ITF / CODE39: acrescenta o dígito verificador (EAN/UPC sempre calculam) */
+    checkDigit?: boolean;
   }): Promise<BematechPrintResult>;
 
   /**
@@ -121,11 +350,91 @@ export interface BematechNativePluginInterface {
     size?: number;
   }): Promise<BematechPrintResult>;
 
+  /**
+   * Imprime imagem (PNG/JPEG em base64) como raster, em faixas de altura fixa
+   * A memória nativa fica constante independente do comprimento da imagem
+   */
+  printImage(options: {
+    data: string;
+    /** Largura máxima em dots (padrão: do perfil); imagens maiores são reduzidas */
+    width?: number;
+    /** Amplia imagens menores até width */
+    fitWidth?: boolean;
+    bandHeight?: number;
+    cut?: boolean;
+    jobId?: string;
+    orderId?: string;
+  }): Promise<BematechPrintResult & { heightDots?: number }>;
+
+  /**
+   * Imprime vários jobs em sequência, codificando o próximo enquanto o
+   * atual é transferido. queueDepth: jobs já codificados à espera da
+   * impressora (1 a 8, padrão 2)
+   */
+  printBatch(options: {
+    jobs: BematechBatchJob[];
+    queueDepth?: number;
+    jobId?: string;
+    orderId?: string;
+  }): Promise<BematechBatchResult>;
+
   /**
    * Teste de impressão
    */
   testPrint(): Promise<BematechPrintResult>;
 
+  /**
+   * Perfil de capacidades da impressora conectada (por VID/PID; genérico sem impressora)
+   */
+  getPrinterProfile(): Promise<{ success: boolean; profile?: BematechPrinterProfile; displayName?: string; knownProfiles?: number; error?: string }>;
+
+  /**
+   * Estado do aquecimento em segundo plano (warmUpOnLoad)
+   */
+  getWarmUpStatus(): Promise<BematechWarmUpStatus & { success: boolean; enabled: boolean }>;
+
+  /**
+   * Ativa/desativa o aquecimento nas próximas aberturas do app
+   * (alternativa a plugins.BematechNativePlugin.warmUpOnLoad no capacitor.config)
+   */
+  setWarmUpOnLoad(options: { enabled: boolean }): Promise<{ success: boolean; enabled: boolean }>;
+
+  /**
+   * Salva um segmento fixo de cupom (cabeçalho, logo, rodapé), codificado no aquecimento
+   */
+  saveTemplate(options: { name: string } & BematechBatchJob): Promise<BematechPrintResult>;
+
+  /**
+   * Remove um template salvo
+   */
+  deleteTemplate(options: { name: string }): Promise<{ success: boolean }>;
+
+  /**
+   * Imprime um template salvo (usa os bytes já codificados)
+   */
+  printTemplate(options: { name: string; jobId?: string; orderId?: string }): Promise<BematechPrintResult>;
+
+  /**
+   * Segunda via: reenvia os bytes guardados de um job impresso com orderId,
+   * sem recodificar. contentHash opcional exige a mesma versão do conteúdo.
+   */
+  reprint(options: { orderId: string; contentHash?: string; jobId?: string }): Promise<BematechPrintResult>;
+
+  /**
+   * Vias guardadas (mais recente primeiro) e uso do cache
+   */
+  getReprintCache(): Promise<BematechReprintCacheInfo>;
+
+  /**
+   * Descarta todas as vias guardadas (memória e arquivo)
+   */
+  clearReprintCache(): Promise<{ success: boolean }>;
+
+  /**
+   * Retorna o trace estruturado de conexão/transferência (diagnóstico)
+   */
+  dumpTrace(options?: { clear?: boolean }): Promise<{ success: boolean; events: BematechTraceEvent[]; totalRecorded: number; capacity: number }>;
+
   /**
    * Adiciona listener para eventos de conexão/desconexão
    */
@@ -133,6 +442,30 @@ export interface BematechNativePluginInterface {
     eventName: 'printerConnected' | 'printerDisconnected' | 'printerError',
     listenerFunc: (data: { message?: string }) => void
   ): Promise<{ remove: () => void }>;
+
+  /**
+   * Progresso de um job longo, no máximo a cada ~250ms
+   */
+  addListener(
+    eventName: 'printProgress',
+    listenerFunc: (event: BematechProgressEvent) => void
+  ): Promise<{ remove: () => void }>;
+
+  /**
+   * Evento terminal: exatamente um por job, com sucesso ou erro
+   */
+  addListener(
+    eventName: 'printJobDone',
+    listenerFunc: (event: BematechJobDoneEvent) => void
+  ): Promise<{ remove: () => void }>;
+
+  /**
+   * Fim do aquecimento em segundo plano
+   */
+  addListener(
+    eventName: 'printerReady',
+    listenerFunc: (status: BematechWarmUpStatus) => void
+  ): Promise<{ remove: () => void }>;
 }
 
 // Registra o plugin - será implementado no lado nativo Android
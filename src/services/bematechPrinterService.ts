@@ -2,7 +2,19 @@
 // Wrapper que usa o SDK nativo quando disponível, com fallback para capacitor-usb-serial
 
 import { Capacitor } from '@capacitor/core';
-import BematechNativePlugin, { BematechPrinterInfo, BematechConnectionResult } from './bematechNativePlugin';
+import BematechNativePlugin, {
+  BematechPrinterInfo,
+  BematechConnectionResult,
+  BematechBatchJob,
+  BematechBatchResult,
+  BematechProgressEvent,
+  BematechJobDoneEvent,
+  BematechPrinterProfile,
+  BematechUsbConnectOptions,
+  BematechLayoutRow,
+  BematechCompression,
+  BematechFileRetention
+} from './bematechNativePlugin';
 import { usbPermissionManager } from './usbPermissionManager';
 
 export interface BematechPrinterConfig {
@@ -21,6 +33,7 @@ class BematechPrinterService {
   private connectionListenerRemove: (() => void) | null = null;
   private disconnectionListenerRemove: (() => void) | null = null;
   private errorListenerRemove: (() => void) | null = null;
+  private readyListenerRemove: (() => void) | null = null;
 
   /**
    * Verifica se está rodando em Android nativo
@@ -98,6 +111,16 @@ class BematechPrinterService {
       });
       this.errorListenerRemove = errListener.remove;
 
+      // Aquecimento em segundo plano (warmUpOnLoad) já reconectou a impressora
+      const readyListener = await BematechNativePlugin.addListener('printerReady', (status) => {
+        console.log(`[BematechPrinterService] Aquecimento ${status.state} em ${status.timeToReadyMs}ms`);
+        if (status.connected) {
+          this.connected = true;
+          usbPermissionManager.setConnectionStatus('connected');
+        }
+      });
+      this.readyListenerRemove = readyListener.remove;
+
     } catch (error) {
       console.warn('[BematechPrinterService] Erro ao configurar listeners:', error);
     }
@@ -120,8 +143,10 @@ class BematechPrinterService {
 
   /**
    * Conecta à impressora Bematech via SDK nativo
+   * Com options conecta ao VID/PID informado (e, em conversor USB-serial,
+   * na velocidade/controle de fluxo pedidos)
    */
-  async connect(): Promise<BematechPrinterConfig | null> {
+  async connect(options?: BematechUsbConnectOptions): Promise<BematechPrinterConfig | null> {
     if (!this.isNative()) {
       throw new Error('SDK Bematech requer Android nativo');
     }
@@ -138,7 +163,9 @@ class BematechPrinterService {
     usbPermissionManager.setConnectionStatus('connecting');
 
     try {
-      const result: BematechConnectionResult = await BematechNativePlugin.connect();
+      const result: BematechConnectionResult = options
+        ? await BematechNativePlugin.connectUsb(options)
+        : await BematechNativePlugin.connect();
       
       if (result.success && result.printerInfo) {
         this.connected = true;
@@ -221,6 +248,16 @@ class BematechPrinterService {
     }
   }
 
+  /**
+   * Capacidades do modelo conectado (largura, colunas, QR nativo, modo raster)
+   */
+  async getPrinterProfile(): Promise<BematechPrinterProfile | null> {
+    if (!this.usingSdk) return null;
+
+    const result = await BematechNativePlugin.getPrinterProfile();
+    return result.success && result.profile ? result.profile : null;
+  }
+
   /**
    * Imprime texto simples
    */
@@ -301,6 +338,24 @@ class BematechPrinterService {
     }
   }
 
+  /**
+   * Imprime linhas lógicas diagramadas no nativo pela largura da
+   * impressora conectada (em vez de preencher strings no JS)
+   */
+  async printLayout(rows: BematechLayoutRow[], cut: boolean = false, orderId?: string): Promise<boolean> {
+    if (!this.connected) {
+      throw new Error('Impressora não conectada');
+    }
+
+    try {
+      const result = await BematechNativePlugin.printLayout({ rows, cut, orderId });
+      return result.success;
+    } catch (error: any) {
+      console.error('[BematechPrinterService] Erro ao imprimir layout:', error);
+      throw error;
+    }
+  }
+
   /**
    * Avança papel
    */
@@ -351,14 +406,15 @@ class BematechPrinterService {
    */
   async printBarcode(
     data: string,
-    type: 'CODE39' | 'CODE128' | 'EAN13' | 'EAN8' | 'UPCA' | 'UPCE' = 'CODE128',
+    type: 'CODE39' | 'CODE128' | 'EAN13' | 'EAN8' | 'UPCA' | 'UPCE' | 'ITF' = 'CODE128',
     height: number = 80,
-    width: number = 2
+    width: number = 2,
+    checkDigit: boolean = false
   ): Promise<boolean> {
     if (!this.connected) return false;
 
     try {
-      const result = await BematechNativePlugin.printBarcode({ data, type, height, width });
+      const result = await BematechNativePlugin.printBarcode({ data, type, height, width, checkDigit });
       return result.success;
     } catch (error) {
       console.error('[BematechPrinterService] Erro ao imprimir barcode:', error);
@@ -381,6 +437,151 @@ class BematechPrinterService {
     }
   }
 
+  /**
+   * Imprime um documento grande bloco a bloco (relatórios, fechamento de caixa)
+   * O primeiro bloco já é impresso enquanto os seguintes ainda são gerados
+   */
+  async printStreamed(chunks: Iterable<string> | AsyncIterable<string>, orderId?: string): Promise<boolean> {
+    if (!this.connected) {
+      throw new Error('Impressora não conectada');
+    }
+
+    const opened = await BematechNativePlugin.openPrintStream({ orderId });
+    if (!opened.success || !opened.streamId) {
+      throw new Error(opened.error || 'Falha ao abrir stream de impressão');
+    }
+
+    const streamId = opened.streamId;
+    let seq = 0;
+
+    try {
+      for await (const data of chunks) {
+        const result = await BematechNativePlugin.appendPrintChunk({ streamId, seq, data });
+        if (!result.success) {
+          throw new Error(result.error || 'Falha ao enviar bloco');
+        }
+        seq++;
+      }
+    } catch (error: any) {
+      console.error('[BematechPrinterService] Erro no stream:', error);
+      await BematechNativePlugin.closePrintStream({ streamId, abort: true });
+      throw error;
+    }
+
+    const closed = await BematechNativePlugin.closePrintStream({ streamId });
+    return closed.success;
+  }
+
+  /**
+   * Envia um documento grande (relatório) compactado com gzip: o bridge
+   * carrega ~1/3 dos bytes e o nativo descompacta direto para a impressora.
+   * Sem CompressionStream no WebView, envia sem compactar.
+   */
+  async printCompressed(content: string, orderId?: string): Promise<boolean> {
+    if (!this.connected) {
+      throw new Error('Impressora não conectada');
+    }
+
+    const data = await this.gzipLatin1(content);
+    const result = data
+      ? await BematechNativePlugin.sendEscPos({ data, compression: 'gzip', orderId })
+      : await BematechNativePlugin.sendEscPos({ command: content, orderId });
+    if (!result.success) {
+      console.error('[BematechPrinterService] Erro ao imprimir compactado:', result.error);
+    }
+    return result.success;
+  }
+
+  /**
+   * Imprime um job que já está em arquivo no armazenamento do app
+   * (relatórios grandes gravados pelo Filesystem), sem passar o conteúdo
+   * pelo bridge. retention 'delete' (padrão) apaga o arquivo ao final.
+   */
+  async printFile(
+    path: string,
+    options?: { retention?: BematechFileRetention; compression?: BematechCompression; orderId?: string }
+  ): Promise<boolean> {
+    if (!this.connected) {
+      throw new Error('Impressora não conectada');
+    }
+
+    const result = await BematechNativePlugin.printFile({ path, ...options });
+    if (!result.success) {
+      console.error('[BematechPrinterService] Erro ao imprimir arquivo:', result.error);
+    }
+    return result.success;
+  }
+
+  /**
+   * gzip + base64 de um texto ISO-8859-1 (fora do Latin-1 vira '?', como no nativo)
+   * null se o WebView não tem CompressionStream
+   */
+  private async gzipLatin1(content: string): Promise<string | null> {
+    if (typeof CompressionStream === 'undefined') {
+      return null;
+    }
+    const bytes = new Uint8Array(content.length);
+    for (let i = 0; i < content.length; i++) {
+      const code = content.charCodeAt(i);
+      bytes[i] = code <= 0xff ? code : 0x3f;
+    }
+    const stream = new Blob([bytes]).stream().pipeThrough(new CompressionStream('gzip'));
+    const compressed = new Uint8Array(await new Response(stream).arrayBuffer());
+    let binary = '';
+    for (let i = 0; i < compressed.length; i += 0x8000) {
+      binary += String.fromCharCode(...compressed.subarray(i, i + 0x8000));
+    }
+    return btoa(binary);
+  }
+
+  /**
+   * Imprime vários jobs de uma vez (reimpressões, vias de entrega)
+   * A codificação do próximo job é sobreposta à transferência do atual
+   */
+  async printBatch(jobs: BematechBatchJob[], orderId?: string): Promise<BematechBatchResult> {
+    if (!this.connected) {
+      throw new Error('Impressora não conectada');
+    }
+
+    const result = await BematechNativePlugin.printBatch({ jobs, orderId });
+    if (!result.success) {
+      console.error('[BematechPrinterService] Erro no lote:', result.error || `${result.failed} jobs falharam`);
+    }
+    return result;
+  }
+
+  /**
+   * Segunda via de uma O.S. já impressa com orderId (bytes guardados no nativo)
+   * Retorna false se a via não está mais no cache: gere o conteúdo de novo
+   */
+  async reprint(orderId: string): Promise<boolean> {
+    if (!this.connected) {
+      throw new Error('Impressora não conectada');
+    }
+
+    const result = await BematechNativePlugin.reprint({ orderId });
+    if (!result.success) {
+      console.warn('[BematechPrinterService] Segunda via indisponível:', result.error);
+    }
+    return result.success;
+  }
+
+  /**
+   * Acompanha o progresso de jobs longos (o nativo já agrega e limita a taxa)
+   * Retorna função para remover os listeners
+   */
+  async onPrintProgress(
+    onProgress: (event: BematechProgressEvent) => void,
+    onDone?: (event: BematechJobDoneEvent) => void
+  ): Promise<() => void> {
+    const progress = await BematechNativePlugin.addListener('printProgress', onProgress);
+    const done = onDone ? await BematechNativePlugin.addListener('printJobDone', onDone) : null;
+    return () => {
+      progress.remove();
+      done?.remove();
+    };
+  }
+
   /**
    * Executa teste de impressão
    */
@@ -411,6 +612,9 @@ class BematechPrinterService {
     if (this.errorListenerRemove) {
       this.errorListenerRemove();
     }
+    if (this.readyListenerRemove) {
+      this.readyListenerRemove();
+    }
   }
 }
 
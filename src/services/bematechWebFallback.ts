@@ -5,7 +5,18 @@ import type {
   BematechNativePluginInterface, 
   BematechPrinterInfo, 
   BematechPrintResult, 
-  BematechConnectionResult 
+  BematechConnectionResult,
+  BematechTraceEvent,
+  BematechSessionState,
+  BematechBatchJob,
+  BematechBatchResult,
+  BematechWarmUpStatus,
+  BematechReprintCacheInfo,
+  BematechPrinterProfile,
+  BematechUsbConnectOptions,
+  BematechLayoutRow,
+  BematechCompression,
+  BematechFileRetention
 } from './bematechNativePlugin';
 
 export class BematechWebFallback implements BematechNativePluginInterface {
@@ -23,22 +34,40 @@ export class BematechWebFallback implements BematechNativePluginInterface {
     return { success: false, error: 'SDK Bematech requer Android nativo' };
   }
 
-  async connectUsb(options: { vid: number; pid?: number }): Promise<BematechConnectionResult> {
+  async connectUsb(options: BematechUsbConnectOptions): Promise<BematechConnectionResult> {
     console.warn('[BematechWebFallback] connectUsb não disponível no ambiente web');
     return { success: false, error: 'SDK Bematech requer Android nativo' };
   }
 
-  async sendEscPos(options: { command: string }): Promise<{ success: boolean; bytesTransferred?: number; error?: string }> {
+  async sendEscPos(options: { command?: string; data?: string; compression?: BematechCompression; jobId?: string; orderId?: string }): Promise<BematechPrintResult> {
     console.warn('[BematechWebFallback] sendEscPos não disponível no ambiente web');
     return { success: false, error: 'SDK Bematech requer Android nativo' };
   }
 
+  async printFile(options: { path: string; retention?: BematechFileRetention; compression?: BematechCompression; jobId?: string; orderId?: string }): Promise<BematechPrintResult> {
+    console.warn('[BematechWebFallback] printFile não disponível no ambiente web');
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async openPrintStream(options?: { maxPendingChunks?: number; orderId?: string; compression?: BematechCompression }): Promise<{ success: boolean; streamId?: string; error?: string }> {
+    console.warn('[BematechWebFallback] openPrintStream não disponível no ambiente web');
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async appendPrintChunk(options: { streamId: string; seq: number; data: string }): Promise<{ success: boolean; duplicate?: boolean; nextSeq?: number; error?: string }> {
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async closePrintStream(options: { streamId: string; abort?: boolean }): Promise<{ success: boolean; aborted?: boolean; bytesTransferred?: number; chunks?: number; error?: string }> {
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
   async disconnect(): Promise<{ success: boolean }> {
     return { success: true };
   }
 
-  async isConnected(): Promise<{ connected: boolean }> {
-    return { connected: false };
+  async isConnected(): Promise<{ connected: boolean; state?: BematechSessionState }> {
+    return { connected: false, state: 'DISCONNECTED' };
   }
 
   async getPrinterInfo(): Promise<BematechPrinterInfo> {
@@ -75,6 +104,11 @@ export class BematechWebFallback implements BematechNativePluginInterface {
     return { success: false, error: 'SDK Bematech requer Android nativo' };
   }
 
+  async printLayout(options: { rows: BematechLayoutRow[]; columns?: number; cut?: boolean; jobId?: string; orderId?: string }): Promise<BematechPrintResult> {
+    console.log('[BematechWebFallback] printLayout:', options.rows.length, 'linhas');
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
   async feedPaper(options: { lines: number }): Promise<BematechPrintResult> {
     return { success: false, error: 'SDK Bematech requer Android nativo' };
   }
@@ -89,9 +123,11 @@ export class BematechWebFallback implements BematechNativePluginInterface {
 
   async printBarcode(options: { 
     data: string; 
-    type: 'CODE39' | 'CODE128' | 'EAN13' | 'EAN8' | 'UPCA' | 'UPCE';
+    type: 'CODE39' | 'CODE128' | 'EAN13' | 'EAN8' | 'UPCA' | 'UPCE' | 'ITF';
     height?: number;
     width?: number;
+    /** ITF / CODE39: acrescenta o dígito verificador (EAN/UPC sempre calculam) */
+    checkDigit?: boolean;
   }): Promise<BematechPrintResult> {
     console.log('[BematechWebFallback] printBarcode:', options);
     return { success: false, error: 'SDK Bematech requer Android nativo' };
@@ -105,14 +141,86 @@ export class BematechWebFallback implements BematechNativePluginInterface {
     return { success: false, error: 'SDK Bematech requer Android nativo' };
   }
 
+  async printImage(options: {
+    data: string;
+    width?: number;
+    fitWidth?: boolean;
+    bandHeight?: number;
+    cut?: boolean;
+    jobId?: string;
+    orderId?: string;
+  }): Promise<BematechPrintResult & { heightDots?: number }> {
+    console.log('[BematechWebFallback] printImage:', options.data.length, 'bytes');
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async printBatch(options: {
+    jobs: BematechBatchJob[];
+    queueDepth?: number;
+    jobId?: string;
+    orderId?: string;
+  }): Promise<BematechBatchResult> {
+    console.log('[BematechWebFallback] printBatch:', options.jobs.length, 'jobs');
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
   async testPrint(): Promise<BematechPrintResult> {
     console.log('[BematechWebFallback] testPrint');
     return { success: false, error: 'SDK Bematech requer Android nativo' };
   }
 
+  async getPrinterProfile(): Promise<{ success: boolean; profile?: BematechPrinterProfile; displayName?: string; knownProfiles?: number; error?: string }> {
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async getWarmUpStatus(): Promise<BematechWarmUpStatus & { success: boolean; enabled: boolean }> {
+    return {
+      success: false,
+      enabled: false,
+      state: 'DISABLED',
+      connected: false,
+      timeToReadyMs: -1,
+      connectMs: -1,
+      templatesEncoded: 0,
+      error: 'SDK Bematech requer Android nativo'
+    };
+  }
+
+  async setWarmUpOnLoad(options: { enabled: boolean }): Promise<{ success: boolean; enabled: boolean }> {
+    return { success: false, enabled: false };
+  }
+
+  async saveTemplate(options: { name: string } & BematechBatchJob): Promise<BematechPrintResult> {
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async deleteTemplate(options: { name: string }): Promise<{ success: boolean }> {
+    return { success: false };
+  }
+
+  async printTemplate(options: { name: string; jobId?: string; orderId?: string }): Promise<BematechPrintResult> {
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async reprint(options: { orderId: string; contentHash?: string; jobId?: string }): Promise<BematechPrintResult> {
+    return { success: false, error: 'SDK Bematech requer Android nativo' };
+  }
+
+  async getReprintCache(): Promise<BematechReprintCacheInfo> {
+    return { success: false, entries: [], maxEntries: 0, memoryBytes: 0, spill: false, hits: 0, misses: 0 };
+  }
+
+  async clearReprintCache(): Promise<{ success: boolean }> {
+    return { success: false };
+  }
+
+  async dumpTrace(options?: { clear?: boolean }): Promise<{ success: boolean; events: BematechTraceEvent[]; totalRecorded: number; capacity: number }> {
+    return { success: false, events: [], totalRecorded: 0, capacity: 0 };
+  }
+
   async addListener(
-    eventName: 'printerConnected' | 'printerDisconnected' | 'printerError',
-    listenerFunc: (data: { message?: string }) => void
+    eventName: 'printerConnected' | 'printerDisconnected' | 'printerError' | 'printerReady' | 'printProgress' | 'printJobDone',
+    listenerFunc: (data: any) => void
   ): Promise<{ remove: () => void }> {
     console.log('[BematechWebFallback] addListener:', eventName);
     return { remove: () => {} };
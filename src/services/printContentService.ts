@@ -1,5 +1,8 @@
 // Print Content Service - Generates formatted content for thermal printing
 // Includes: Company copy, Client copy with signature, and Checklist
+// Each copy is built as BematechLayoutRow[] and rendered to text for print_jobs
+
+import type { BematechLayoutAlign, BematechLayoutRow } from './bematechNativePlugin';
 
 export interface PrintOrderData {
   orderNumber: string;
@@ -32,8 +35,9 @@ export interface PrintOrderData {
   checklistData?: Record<string, string> | null;
 }
 
-const LINE = '----------------------------------------';
-const DOUBLE_LINE = '========================================';
+// Width of the plain-text copy stored in print_jobs (WebUSB/serial fallback);
+// the Bematech SDK lays the rows out natively at the printer's own width
+const TEXT_COLUMNS = 40;
 
 const STATUS_LABELS: Record<string, string> = {
   working: 'Funcionando',
@@ -111,14 +115,14 @@ const PASSWORD_TYPE_LABELS: Record<string, string> = {
 
 // Generate pattern drawing for pattern passwords
 const generatePatternGrid = (): string => {
-  // Simple 3x3 pattern grid representation
-  return `
-    [1]---[2]---[3]
-     |     |     |
-    [4]---[5]---[6]
-     |     |     |
-    [7]---[8]---[9]
-`;
+  // Simple 3x3 pattern grid, no leading spaces so it survives alignment
+  return [
+    '1---2---3',
+    '|   |   |',
+    '4---5---6',
+    '|   |   |',
+    '7---8---9',
+  ].join('\n');
 };
 
 const formatCurrency = (value: number): string => {
@@ -133,245 +137,286 @@ const formatDate = (dateString: string): string => {
   }
 };
 
-// Generate company/store copy
-export const generateCompanyCopy = (order: PrintOrderData): string => {
-  let content = '';
-  
-  // Header
-  content += `${DOUBLE_LINE}\n`;
-  content += `          ${order.storeName.toUpperCase()}\n`;
-  if (order.storePhone) content += `          Tel: ${order.storePhone}\n`;
-  if (order.storeAddress) content += `    ${order.storeAddress}\n`;
-  if (order.storeCnpj) content += `          CNPJ: ${order.storeCnpj}\n`;
-  content += `${DOUBLE_LINE}\n`;
-  content += `        *** VIA DA EMPRESA ***\n`;
-  content += `${DOUBLE_LINE}\n`;
-  content += `         ORDEM DE SERVICO\n`;
-  content += `             #${order.orderNumber}\n`;
-  content += `${DOUBLE_LINE}\n\n`;
-  
+const sectionRows = (title: string): BematechLayoutRow[] => [
+  { type: 'text', text: title, bold: true },
+  { type: 'separator', char: '-' },
+];
+
+const headerRows = (order: PrintOrderData, copyLabel: string): BematechLayoutRow[] => {
+  const rows: BematechLayoutRow[] = [
+    { type: 'separator', char: '=' },
+    { type: 'text', text: order.storeName.toUpperCase(), align: 'center', bold: true },
+  ];
+  if (order.storePhone) rows.push({ type: 'text', text: `Tel: ${order.storePhone}`, align: 'center' });
+  if (order.storeAddress) rows.push({ type: 'text', text: order.storeAddress, align: 'center' });
+  if (order.storeCnpj) rows.push({ type: 'text', text: `CNPJ: ${order.storeCnpj}`, align: 'center' });
+  rows.push(
+    { type: 'separator', char: '=' },
+    { type: 'text', text: `*** ${copyLabel} ***`, align: 'center', bold: true },
+    { type: 'separator', char: '=' },
+    { type: 'text', text: 'ORDEM DE SERVICO', align: 'center', bold: true },
+    { type: 'text', text: `#${order.orderNumber}`, align: 'center', bold: true },
+    { type: 'separator', char: '=' },
+    { type: 'feed' },
+  );
+  return rows;
+};
+
+const valuesRows = (order: PrintOrderData): BematechLayoutRow[] => [
+  ...sectionRows('VALORES'),
+  { type: 'keyValue', key: 'Valor do Servico', value: formatCurrency(order.serviceValue) },
+  { type: 'keyValue', key: 'Valor de Entrada', value: formatCurrency(order.entryValue) },
+  { type: 'keyValue', key: 'Valor Restante', value: formatCurrency(order.remainingValue), bold: true },
+  { type: 'feed' },
+];
+
+const deliveryRows = (order: PrintOrderData): BematechLayoutRow[] => {
+  if (!order.estimatedDelivery) return [];
+  return [
+    ...sectionRows('PREVISAO DE ENTREGA'),
+    { type: 'text', text: formatDate(order.estimatedDelivery) },
+    { type: 'feed' },
+  ];
+};
+
+const footerRows = (order: PrintOrderData): BematechLayoutRow[] => [
+  { type: 'separator', char: '=' },
+  { type: 'keyValue', key: 'Data', value: formatDate(order.createdAt) },
+  { type: 'keyValue', key: 'Atendente', value: order.attendantName },
+  { type: 'separator', char: '=' },
+  { type: 'feed', lines: 2 },
+];
+
+// Company/store copy
+export const buildCompanyCopyRows = (order: PrintOrderData): BematechLayoutRow[] => {
+  const rows = headerRows(order, 'VIA DA EMPRESA');
+
   // Client info
-  content += `DADOS DO CLIENTE\n`;
-  content += `${LINE}\n`;
-  content += `Nome: ${order.clientName}\n`;
-  content += `Telefone: ${order.clientPhone}\n`;
-  if (order.clientCpf) content += `CPF: ${order.clientCpf}\n`;
-  if (order.clientAddress) content += `Endereco: ${order.clientAddress}\n`;
-  content += `\n`;
-  
+  rows.push(
+    ...sectionRows('DADOS DO CLIENTE'),
+    { type: 'keyValue', key: 'Nome', value: order.clientName },
+    { type: 'keyValue', key: 'Telefone', value: order.clientPhone },
+  );
+  if (order.clientCpf) rows.push({ type: 'keyValue', key: 'CPF', value: order.clientCpf });
+  if (order.clientAddress) rows.push({ type: 'keyValue', key: 'Endereco', value: order.clientAddress });
+  rows.push({ type: 'feed' });
+
   // Device info
-  content += `DADOS DO APARELHO\n`;
-  content += `${LINE}\n`;
-  content += `Marca: ${order.brand}\n`;
-  content += `Modelo: ${order.model}\n`;
-  content += `Cor: ${order.deviceColor}\n`;
-  content += `Acessorios: ${order.accessories || 'Nenhum'}\n`;
-  content += `Condicao Fisica: ${order.physicalCondition || 'Nao informado'}\n`;
-  content += `\n`;
-  
+  rows.push(
+    ...sectionRows('DADOS DO APARELHO'),
+    { type: 'keyValue', key: 'Marca', value: order.brand },
+    { type: 'keyValue', key: 'Modelo', value: order.model },
+    { type: 'keyValue', key: 'Cor', value: order.deviceColor },
+    { type: 'keyValue', key: 'Acessorios', value: order.accessories || 'Nenhum' },
+    { type: 'keyValue', key: 'Condicao Fisica', value: order.physicalCondition || 'Nao informado' },
+    { type: 'feed' },
+  );
+
   // Problem and service
-  content += `PROBLEMA/SERVICO\n`;
-  content += `${LINE}\n`;
-  content += `Problema: ${order.problemDescription}\n`;
-  content += `Servico: ${order.possibleService || 'A definir'}\n`;
-  content += `\n`;
-  
+  rows.push(
+    ...sectionRows('PROBLEMA/SERVICO'),
+    { type: 'text', text: `Problema: ${order.problemDescription}` },
+    { type: 'text', text: `Servico: ${order.possibleService || 'A definir'}` },
+    { type: 'feed' },
+  );
+
   // Password
-  content += `SENHA DO APARELHO\n`;
-  content += `${LINE}\n`;
   const passwordLabel = PASSWORD_TYPE_LABELS[order.passwordType] || order.passwordType;
-  content += `Tipo: ${passwordLabel}\n`;
+  rows.push(...sectionRows('SENHA DO APARELHO'), { type: 'keyValue', key: 'Tipo', value: passwordLabel });
   if (order.passwordType === 'pattern') {
-    content += `Padrao: ${generatePatternGrid()}\n`;
+    rows.push({ type: 'text', text: 'Padrao:' }, { type: 'text', text: generatePatternGrid() });
   } else if (order.passwordValue) {
-    content += `Senha: ${order.passwordValue}\n`;
+    rows.push({ type: 'keyValue', key: 'Senha', value: order.passwordValue });
   }
-  content += `\n`;
-  
-  // Values
-  content += `VALORES\n`;
-  content += `${LINE}\n`;
-  content += `Valor do Servico: ${formatCurrency(order.serviceValue)}\n`;
-  content += `Valor de Entrada: ${formatCurrency(order.entryValue)}\n`;
-  content += `Valor Restante: ${formatCurrency(order.remainingValue)}\n`;
-  content += `\n`;
-  
-  // Delivery
-  if (order.estimatedDelivery) {
-    content += `PREVISAO DE ENTREGA\n`;
-    content += `${LINE}\n`;
-    content += `${formatDate(order.estimatedDelivery)}\n\n`;
-  }
-  
+  rows.push({ type: 'feed' });
+
+  rows.push(...valuesRows(order), ...deliveryRows(order));
+
   // Observations
   if (order.observations) {
-    content += `OBSERVACOES\n`;
-    content += `${LINE}\n`;
-    content += `${order.observations}\n\n`;
+    rows.push(...sectionRows('OBSERVACOES'), { type: 'text', text: order.observations }, { type: 'feed' });
   }
-  
-  // Footer
-  content += `${DOUBLE_LINE}\n`;
-  content += `Data: ${formatDate(order.createdAt)}\n`;
-  content += `Atendente: ${order.attendantName}\n`;
-  content += `${DOUBLE_LINE}\n\n\n`;
-  
-  return content;
+
+  rows.push(...footerRows(order));
+  return rows;
 };
 
-// Generate client copy with signature field
-export const generateClientCopy = (order: PrintOrderData): string => {
-  let content = '';
-  
-  // Header
-  content += `${DOUBLE_LINE}\n`;
-  content += `          ${order.storeName.toUpperCase()}\n`;
-  if (order.storePhone) content += `          Tel: ${order.storePhone}\n`;
-  if (order.storeAddress) content += `    ${order.storeAddress}\n`;
-  if (order.storeCnpj) content += `          CNPJ: ${order.storeCnpj}\n`;
-  content += `${DOUBLE_LINE}\n`;
-  content += `        *** VIA DO CLIENTE ***\n`;
-  content += `${DOUBLE_LINE}\n`;
-  content += `         ORDEM DE SERVICO\n`;
-  content += `             #${order.orderNumber}\n`;
-  content += `${DOUBLE_LINE}\n\n`;
-  
+// Client copy with signature field
+export const buildClientCopyRows = (order: PrintOrderData): BematechLayoutRow[] => {
+  const rows = headerRows(order, 'VIA DO CLIENTE');
+
   // Client info
-  content += `DADOS DO CLIENTE\n`;
-  content += `${LINE}\n`;
-  content += `Nome: ${order.clientName}\n`;
-  content += `Telefone: ${order.clientPhone}\n`;
-  if (order.clientCpf) content += `CPF: ${order.clientCpf}\n`;
-  content += `\n`;
-  
+  rows.push(
+    ...sectionRows('DADOS DO CLIENTE'),
+    { type: 'keyValue', key: 'Nome', value: order.clientName },
+    { type: 'keyValue', key: 'Telefone', value: order.clientPhone },
+  );
+  if (order.clientCpf) rows.push({ type: 'keyValue', key: 'CPF', value: order.clientCpf });
+  rows.push({ type: 'feed' });
+
   // Device info
-  content += `DADOS DO APARELHO\n`;
-  content += `${LINE}\n`;
-  content += `Marca: ${order.brand}\n`;
-  content += `Modelo: ${order.model}\n`;
-  content += `Cor: ${order.deviceColor}\n`;
-  content += `Acessorios: ${order.accessories || 'Nenhum'}\n`;
-  content += `\n`;
-  
+  rows.push(
+    ...sectionRows('DADOS DO APARELHO'),
+    { type: 'keyValue', key: 'Marca', value: order.brand },
+    { type: 'keyValue', key: 'Modelo', value: order.model },
+    { type: 'keyValue', key: 'Cor', value: order.deviceColor },
+    { type: 'keyValue', key: 'Acessorios', value: order.accessories || 'Nenhum' },
+    { type: 'feed' },
+  );
+
   // Problem
-  content += `PROBLEMA RELATADO\n`;
-  content += `${LINE}\n`;
-  content += `${order.problemDescription}\n\n`;
-  
-  // Values
-  content += `VALORES\n`;
-  content += `${LINE}\n`;
-  content += `Valor do Servico: ${formatCurrency(order.serviceValue)}\n`;
-  content += `Valor de Entrada: ${formatCurrency(order.entryValue)}\n`;
-  content += `Valor Restante: ${formatCurrency(order.remainingValue)}\n`;
-  content += `\n`;
-  
-  // Delivery
-  if (order.estimatedDelivery) {
-    content += `PREVISAO DE ENTREGA\n`;
-    content += `${LINE}\n`;
-    content += `${formatDate(order.estimatedDelivery)}\n\n`;
-  }
-  
+  rows.push(...sectionRows('PROBLEMA RELATADO'), { type: 'text', text: order.problemDescription }, { type: 'feed' });
+
+  rows.push(...valuesRows(order), ...deliveryRows(order));
+
   // Terms and conditions
   if (order.terms && order.terms.length > 0) {
-    content += `TERMOS E CONDICOES\n`;
-    content += `${LINE}\n`;
+    rows.push(...sectionRows('TERMOS E CONDICOES'));
     order.terms.forEach((term, index) => {
-      content += `${index + 1}. ${term}\n`;
+      rows.push({ type: 'text', text: `${index + 1}. ${term}` });
     });
-    content += `\n`;
+    rows.push({ type: 'feed' });
   }
-  
+
   // Signature area
-  content += `${DOUBLE_LINE}\n`;
-  content += `\n`;
-  content += `ASSINATURA DO CLIENTE:\n`;
-  content += `\n`;
-  content += `\n`;
-  content += `${LINE}\n`;
-  content += `${order.clientName}\n`;
-  content += `\n`;
-  
-  // Footer
-  content += `${DOUBLE_LINE}\n`;
-  content += `Data: ${formatDate(order.createdAt)}\n`;
-  content += `Atendente: ${order.attendantName}\n`;
-  content += `${DOUBLE_LINE}\n\n\n`;
-  
-  return content;
+  rows.push(
+    { type: 'separator', char: '=' },
+    { type: 'feed' },
+    { type: 'text', text: 'ASSINATURA DO CLIENTE:', bold: true },
+    { type: 'feed', lines: 2 },
+    { type: 'separator', char: '-' },
+    { type: 'text', text: order.clientName },
+    { type: 'feed' },
+  );
+
+  rows.push(...footerRows(order));
+  return rows;
 };
 
-// Generate checklist
-export const generateChecklistCopy = (order: PrintOrderData): string => {
+// Checklist
+export const buildChecklistRows = (order: PrintOrderData): BematechLayoutRow[] => {
   if (!order.checklistType || !order.checklistData) {
-    return '';
+    return [];
   }
-  
-  let content = '';
+
   const labels = order.checklistType === 'ios' ? IOS_CHECKLIST_LABELS : ANDROID_CHECKLIST_LABELS;
-  
+
   // Header
-  content += `${DOUBLE_LINE}\n`;
-  content += `        CHECKLIST DE ENTRADA\n`;
-  content += `     O.S. #${order.orderNumber}\n`;
-  content += `${DOUBLE_LINE}\n`;
-  content += `Sistema: ${order.checklistType.toUpperCase()}\n`;
-  content += `Aparelho: ${order.brand} ${order.model}\n`;
-  content += `Cliente: ${order.clientName}\n`;
-  content += `${LINE}\n\n`;
-  
+  const rows: BematechLayoutRow[] = [
+    { type: 'separator', char: '=' },
+    { type: 'text', text: 'CHECKLIST DE ENTRADA', align: 'center', bold: true },
+    { type: 'text', text: `O.S. #${order.orderNumber}`, align: 'center', bold: true },
+    { type: 'separator', char: '=' },
+    { type: 'keyValue', key: 'Sistema', value: order.checklistType.toUpperCase() },
+    { type: 'keyValue', key: 'Aparelho', value: `${order.brand} ${order.model}` },
+    { type: 'keyValue', key: 'Cliente', value: order.clientName },
+    { type: 'separator', char: '-' },
+    { type: 'feed' },
+  ];
+
   // Checklist items
-  content += `ITENS VERIFICADOS\n`;
-  content += `${LINE}\n`;
-  
+  rows.push(...sectionRows('ITENS VERIFICADOS'));
+
   Object.entries(order.checklistData).forEach(([key, value]) => {
     const label = labels[key] || key;
     const statusLabel = STATUS_LABELS[value] || value;
-    
+
     // Add indicator based on status
     let indicator = '[ ]';
     if (value === 'working') indicator = '[OK]';
     else if (value === 'defective') indicator = '[X]';
     else if (value === 'not_available') indicator = '[--]';
     else if (value === 'not_tested') indicator = '[?]';
-    
-    content += `${indicator} ${label}: ${statusLabel}\n`;
+
+    rows.push({ type: 'keyValue', key: `${indicator} ${label}`, value: statusLabel });
   });
-  
-  content += `\n`;
-  content += `${LINE}\n`;
-  content += `LEGENDA:\n`;
-  content += `[OK] Funcionando\n`;
-  content += `[X] Com Defeito\n`;
-  content += `[?] Nao Testado\n`;
-  content += `[--] Nao Possui\n`;
-  content += `${LINE}\n\n`;
-  
-  // Footer
-  content += `${DOUBLE_LINE}\n`;
-  content += `Data: ${formatDate(order.createdAt)}\n`;
-  content += `Atendente: ${order.attendantName}\n`;
-  content += `${DOUBLE_LINE}\n\n\n`;
-  
-  return content;
+
+  rows.push(
+    { type: 'feed' },
+    { type: 'separator', char: '-' },
+    { type: 'text', text: 'LEGENDA:', bold: true },
+    { type: 'text', text: '[OK] Funcionando' },
+    { type: 'text', text: '[X] Com Defeito' },
+    { type: 'text', text: '[?] Nao Testado' },
+    { type: 'text', text: '[--] Nao Possui' },
+    { type: 'separator', char: '-' },
+    { type: 'feed' },
+  );
+
+  rows.push(...footerRows(order));
+  return rows;
 };
 
-// Generate full print content (all copies)
-export const generateFullPrintContent = (order: PrintOrderData): string => {
+// Full layout (all copies)
+export const buildFullPrintRows = (order: PrintOrderData): BematechLayoutRow[] => [
+  ...buildCompanyCopyRows(order),
+  ...buildClientCopyRows(order),
+  ...buildChecklistRows(order),
+];
+
+const alignText = (line: string, align: BematechLayoutAlign | undefined, columns: number): string => {
+  const free = columns - line.length;
+  if (free <= 0 || !align || align === 'left') return line;
+  return ' '.repeat(align === 'right' ? free : Math.floor(free / 2)) + line;
+};
+
+// Render rows as plain text at a fixed width; used for print_jobs.content,
+// which also feeds printers without native layout
+export const renderRowsAsText = (rows: BematechLayoutRow[], columns: number = TEXT_COLUMNS): string => {
   let content = '';
-  
-  // Company copy
-  content += generateCompanyCopy(order);
-  
-  // Client copy with signature
-  content += generateClientCopy(order);
-  
-  // Checklist (if available)
-  const checklist = generateChecklistCopy(order);
-  if (checklist) {
-    content += checklist;
+  for (const row of rows) {
+    switch (row.type) {
+      case 'text':
+        row.text.split('\n').forEach((line) => {
+          content += `${alignText(line, row.align, columns)}\n`;
+        });
+        break;
+      case 'keyValue':
+        content += `${row.key}: ${row.value}\n`;
+        break;
+      case 'columns':
+        content += `${row.cells.join(' ')}\n`;
+        break;
+      case 'separator':
+        content += `${(row.char || '-').charAt(0).repeat(columns)}\n`;
+        break;
+      case 'feed':
+        content += '\n'.repeat(row.lines ?? 1);
+        break;
+    }
   }
-  
   return content;
 };
+
+// Parse one line of renderRowsAsText back into a row, so stored print_jobs
+// can be laid out natively: separators span the printer width, "Key: value"
+// lines that fit the text width become keyValue rows and indented lines
+// are centered
+const SEPARATOR_LINE = /^([-=])\1{7,}$/;
+const KEY_VALUE_LINE = /^([A-Za-z\[][^:]{0,30}): (.+)$/;
+
+export const textLineToRow = (line: string): BematechLayoutRow => {
+  const separator = SEPARATOR_LINE.exec(line);
+  if (separator) return { type: 'separator', char: separator[1] };
+  if (line.trim() === '') return { type: 'feed' };
+  if (/^\s/.test(line)) return { type: 'text', text: line.trim(), align: 'center' };
+  const keyValue = KEY_VALUE_LINE.exec(line);
+  if (keyValue && line.length <= TEXT_COLUMNS) return { type: 'keyValue', key: keyValue[1], value: keyValue[2] };
+  return { type: 'text', text: line };
+};
+
+// Generate company/store copy
+export const generateCompanyCopy = (order: PrintOrderData): string =>
+  renderRowsAsText(buildCompanyCopyRows(order));
+
+// Generate client copy with signature field
+export const generateClientCopy = (order: PrintOrderData): string =>
+  renderRowsAsText(buildClientCopyRows(order));
+
+// Generate checklist
+export const generateChecklistCopy = (order: PrintOrderData): string =>
+  renderRowsAsText(buildChecklistRows(order));
+
+// Generate full print content (all copies)
+export const generateFullPrintContent = (order: PrintOrderData): string =>
+  renderRowsAsText(buildFullPrintRows(order));
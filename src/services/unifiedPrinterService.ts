@@ -9,6 +9,7 @@ import { Capacitor } from '@capacitor/core';
 import { printerService } from './printerService';
 import { capacitorPrinterService, type CapacitorPrinterConfig } from './capacitorPrinterService';
 import { bematechPrinterService } from './bematechPrinterService';
+import type { BematechLayoutRow } from './bematechNativePlugin';
 import { usbPermissionManager } from './usbPermissionManager';
 import type { PrinterConfig } from './printerService';
 
@@ -335,84 +336,104 @@ class UnifiedPrinterService {
     createdAt: string;
     terms?: string[];
   }): Promise<void> {
-    // Header
-    await bematechPrinterService.printFormatted(order.storeName, { align: 'center', bold: true, size: 'double' });
+    // Separators and key/value rows are laid out natively at the printer's width
+    const rows: BematechLayoutRow[] = [
+      { type: 'text', text: order.storeName, align: 'center', bold: true, size: 'double' },
+    ];
     if (order.storePhone) {
-      await bematechPrinterService.printFormatted(order.storePhone, { align: 'center' });
+      rows.push({ type: 'text', text: order.storePhone, align: 'center' });
     }
     if (order.storeAddress) {
-      await bematechPrinterService.printFormatted(order.storeAddress, { align: 'center' });
+      rows.push({ type: 'text', text: order.storeAddress, align: 'center' });
     }
-    
-    await bematechPrinterService.printText('================================');
-    await bematechPrinterService.printFormatted(`O.S. #${order.orderNumber}`, { align: 'center', bold: true, size: 'double' });
-    await bematechPrinterService.printText('================================');
-    
+
+    rows.push(
+      { type: 'separator', char: '=' },
+      { type: 'text', text: `O.S. #${order.orderNumber}`, align: 'center', bold: true, size: 'double' },
+      { type: 'separator', char: '=' },
+    );
+
     // Client info
-    await bematechPrinterService.printFormatted('CLIENTE', { bold: true });
-    await bematechPrinterService.printText(`Nome: ${order.clientName}`);
-    await bematechPrinterService.printText(`Telefone: ${order.clientPhone}`);
-    
+    rows.push(
+      { type: 'text', text: 'CLIENTE', bold: true },
+      { type: 'keyValue', key: 'Nome', value: order.clientName },
+      { type: 'keyValue', key: 'Telefone', value: order.clientPhone },
+    );
+
     // Device info
-    await bematechPrinterService.printText('--------------------------------');
-    await bematechPrinterService.printFormatted('APARELHO', { bold: true });
-    await bematechPrinterService.printText(`${order.brand} ${order.model}`);
-    await bematechPrinterService.printText(`Cor: ${order.deviceColor}`);
-    await bematechPrinterService.printText(`Estado Físico: ${order.physicalCondition}`);
-    await bematechPrinterService.printText(`Acessórios: ${order.accessories}`);
-    
+    rows.push(
+      { type: 'separator' },
+      { type: 'text', text: 'APARELHO', bold: true },
+      { type: 'text', text: `${order.brand} ${order.model}` },
+      { type: 'keyValue', key: 'Cor', value: order.deviceColor },
+      { type: 'keyValue', key: 'Estado Físico', value: order.physicalCondition },
+      { type: 'keyValue', key: 'Acessórios', value: order.accessories },
+    );
+
     // Problem
-    await bematechPrinterService.printText('--------------------------------');
-    await bematechPrinterService.printFormatted('PROBLEMA', { bold: true });
-    await bematechPrinterService.printText(order.problemDescription);
-    
+    rows.push(
+      { type: 'separator' },
+      { type: 'text', text: 'PROBLEMA', bold: true },
+      { type: 'text', text: order.problemDescription },
+    );
+
     // Password
     if (order.passwordValue) {
-      await bematechPrinterService.printText('--------------------------------');
-      await bematechPrinterService.printText(`Senha (${order.passwordType}): ${order.passwordValue}`);
+      rows.push(
+        { type: 'separator' },
+        { type: 'keyValue', key: `Senha (${order.passwordType})`, value: order.passwordValue },
+      );
     }
-    
+
     // Values
-    await bematechPrinterService.printText('================================');
-    await bematechPrinterService.printFormatted('VALORES', { bold: true });
-    await bematechPrinterService.printText(`Serviço: R$ ${order.serviceValue.toFixed(2)}`);
-    await bematechPrinterService.printText(`Entrada: R$ ${order.entryValue.toFixed(2)}`);
-    await bematechPrinterService.printFormatted(`Restante: R$ ${order.remainingValue.toFixed(2)}`, { bold: true });
-    
+    rows.push(
+      { type: 'separator', char: '=' },
+      { type: 'text', text: 'VALORES', bold: true },
+      { type: 'keyValue', key: 'Serviço', value: `R$ ${order.serviceValue.toFixed(2)}` },
+      { type: 'keyValue', key: 'Entrada', value: `R$ ${order.entryValue.toFixed(2)}` },
+      { type: 'keyValue', key: 'Restante', value: `R$ ${order.remainingValue.toFixed(2)}`, bold: true },
+    );
+
     // Delivery
     if (order.estimatedDelivery) {
-      await bematechPrinterService.printText('--------------------------------');
-      await bematechPrinterService.printText(`Previsão: ${order.estimatedDelivery}`);
+      rows.push({ type: 'separator' }, { type: 'keyValue', key: 'Previsão', value: order.estimatedDelivery });
     }
-    
+
     // Observations
     if (order.observations) {
-      await bematechPrinterService.printText('--------------------------------');
-      await bematechPrinterService.printFormatted('OBSERVAÇÕES', { bold: true });
-      await bematechPrinterService.printText(order.observations);
+      rows.push(
+        { type: 'separator' },
+        { type: 'text', text: 'OBSERVAÇÕES', bold: true },
+        { type: 'text', text: order.observations },
+      );
     }
-    
+
     // Footer
-    await bematechPrinterService.printText('================================');
-    await bematechPrinterService.printFormatted(`Atendente: ${order.attendantName}`, { align: 'center' });
-    await bematechPrinterService.printFormatted(order.createdAt, { align: 'center' });
-    
+    rows.push(
+      { type: 'separator', char: '=' },
+      { type: 'text', text: `Atendente: ${order.attendantName}`, align: 'center' },
+      { type: 'text', text: order.createdAt, align: 'center' },
+    );
+
     // Terms
     if (order.terms && order.terms.length > 0) {
-      await bematechPrinterService.printText('--------------------------------');
-      await bematechPrinterService.printFormatted('TERMOS', { bold: true });
+      rows.push({ type: 'separator' }, { type: 'text', text: 'TERMOS', bold: true });
       for (const term of order.terms) {
-        await bematechPrinterService.printText(`• ${term}`);
+        rows.push({ type: 'text', text: `• ${term}` });
       }
     }
-    
+
     // Signature line
-    await bematechPrinterService.feedPaper(2);
-    await bematechPrinterService.printText('________________________________');
-    await bematechPrinterService.printFormatted('Assinatura do Cliente', { align: 'center' });
-    
-    await bematechPrinterService.feedPaper(3);
-    await bematechPrinterService.cutPaper(true);
+    rows.push(
+      { type: 'feed', lines: 2 },
+      { type: 'separator', char: '_' },
+      { type: 'text', text: 'Assinatura do Cliente', align: 'center' },
+      { type: 'feed', lines: 3 },
+    );
+
+    if (!(await bematechPrinterService.printLayout(rows, true))) {
+      throw new Error('Falha ao imprimir na Bematech');
+    }
   }
 
   // Get device info